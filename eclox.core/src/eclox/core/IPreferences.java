@@ -8,6 +8,8 @@
  *
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
+ *     Andre Bossert - marker volume preferences
+ *                   - maximum concurrent builds preference
  *
  ******************************************************************************/
 
@@ -30,4 +32,29 @@ public interface IPreferences {
      */
     public static final String CUSTOM_DOXYGENS = "doxygen.customs";
 
+    /**
+     * Constant definition for the files receiving markers, see MarkerMode.
+     */
+    public static final String MARKER_MODE = "markers.mode";
+
+    /**
+     * Constant definition for the aggregation of identical diagnostics of a file into a single marker.
+     */
+    public static final String MARKER_AGGREGATE = "markers.aggregate";
+
+    /**
+     * Constant definition for the maximum number of markers per file, 0 for no limit.
+     */
+    public static final String MARKER_LIMIT_FILE = "markers.limit.file";
+
+    /**
+     * Constant definition for the maximum number of markers per build, 0 for no limit.
+     */
+    public static final String MARKER_LIMIT_BUILD = "markers.limit.build";
+
+    /**
+     * Constant definition for the maximum number of concurrent doxygen builds, 0 for automatic.
+     */
+    public static final String BUILD_MAX_PROCESSES = "build.maxProcesses";
+
 }
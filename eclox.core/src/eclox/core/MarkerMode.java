@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - first implementation
+ *
+ ******************************************************************************/
+
+package eclox.core;
+
+public enum MarkerMode {
+    markerModeAllFiles("Create markers for all files"),
+    markerModeOpenedFiles("Create markers only for the files opened in an editor");
+    // attributes
+    private final String name;
+
+    // construct
+    MarkerMode(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static MarkerMode getFromEnum(String name) {
+        MarkerMode ret = markerModeAllFiles;
+        for (int i = 0; i < MarkerMode.values().length; i++) {
+            if (MarkerMode.values()[i].name().equals(name)) {
+                ret = MarkerMode.values()[i];
+                break;
+            }
+        }
+        return ret;
+    }
+
+}
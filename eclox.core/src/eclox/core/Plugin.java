@@ -10,6 +10,8 @@
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
  *     Andre Bossert - Improvement static declaration of plugin relative identifier
+ *                   - maintain the workspace doxyfile index
+ *                   - spill the build logs to the state location
  *
  ******************************************************************************/
 
@@ -18,12 +20,16 @@ package eclox.core;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.osgi.framework.BundleContext;
 
+import eclox.core.doxyfiles.DoxyfileIndex;
+import eclox.core.doxygen.BuildLog;
+
 /**
  * Implements the core eclox plugin
  *
@@ -36,6 +42,11 @@ public class Plugin extends org.eclipse.core.runtime.Plugin {
      */
     private static Plugin plugin;
 
+    /**
+     * the index of the doxyfiles of the workspace
+     */
+    private DoxyfileIndex doxyfileIndex;
+
     /**
      * The constructor.
      */
@@ -48,12 +59,23 @@ public class Plugin extends org.eclipse.core.runtime.Plugin {
      */
     public void start(BundleContext context) throws Exception {
         super.start(context);
+        BuildLog.setDirectory(getStateLocation().append("logs").toFile());
+        doxyfileIndex = new DoxyfileIndex(getBundle().getSymbolicName(), getStateLocation());
+        try {
+            doxyfileIndex.start();
+        } catch (CoreException e) {
+            log(e);
+        }
     }
 
     /**
      * This method is called when the plug-in is stopped
      */
     public void stop(BundleContext context) throws Exception {
+        if (doxyfileIndex != null) {
+            doxyfileIndex.stop();
+            doxyfileIndex = null;
+        }
         super.stop(context);
         plugin = null;
     }
@@ -65,6 +87,15 @@ public class Plugin extends org.eclipse.core.runtime.Plugin {
         return plugin;
     }
 
+    /**
+     * Retrieves the index of the doxyfiles of the workspace.
+     *
+     * @return	the doxyfile index, null when the plugin is not started
+     */
+    public DoxyfileIndex getDoxyfileIndex() {
+        return doxyfileIndex;
+    }
+
     /**
      * Adds the specified message into the plugin's log as a warning.
      *
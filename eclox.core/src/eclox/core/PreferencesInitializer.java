@@ -10,6 +10,8 @@
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
  *     Andre Bossert - Refactoring of deprecated API usage
+ *                   - marker volume preferences
+ *                   - maximum concurrent builds preference
  *
  ******************************************************************************/
 
@@ -43,6 +45,11 @@ public class PreferencesInitializer extends AbstractPreferenceInitializer {
     private void setDefaults(IEclipsePreferences defaultNode) {
         defaultNode.put(IPreferences.DEFAULT_DOXYGEN, new DefaultDoxygen().getIdentifier());
         defaultNode.put(IPreferences.CUSTOM_DOXYGENS, "");
+        defaultNode.put(IPreferences.MARKER_MODE, MarkerMode.markerModeAllFiles.name());
+        defaultNode.putBoolean(IPreferences.MARKER_AGGREGATE, false);
+        defaultNode.putInt(IPreferences.MARKER_LIMIT_FILE, 0);
+        defaultNode.putInt(IPreferences.MARKER_LIMIT_BUILD, 10000);
+        defaultNode.putInt(IPreferences.BUILD_MAX_PROCESSES, 0);
     }
 
 }
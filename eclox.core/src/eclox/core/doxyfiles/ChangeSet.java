@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *                   - record the settings added and removed on reload
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implements the set of changes done to a doxyfile during a transaction.
+ *
+ * Each setting appears only once, whatever the number of times it has been
+ * modified during the transaction. For properties, the last modification wins.
+ *
+ * @author Andre Bossert
+ *
+ * @see Doxyfile#beginTransaction()
+ */
+public class ChangeSet {
+
+    /**
+     * the settings whose value changed, in order of modification
+     */
+    private final Set<Setting> valueChanges = new LinkedHashSet<Setting>();
+
+    /**
+     * the changed properties by setting, each property mapped to true when it has been removed
+     */
+    private final Map<Setting, Map<String, Boolean>> propertyChanges = new LinkedHashMap<Setting, Map<String, Boolean>>();
+
+    /**
+     * the settings added to the doxyfile, in order of appearance
+     */
+    private final Set<Setting> addedSettings = new LinkedHashSet<Setting>();
+
+    /**
+     * the settings removed from the doxyfile
+     */
+    private final Set<Setting> removedSettings = new LinkedHashSet<Setting>();
+
+    /**
+     * Records a setting value change.
+     *
+     * @param	setting	the setting whose value changed
+     */
+    void addValueChange(Setting setting) {
+        valueChanges.add(setting);
+    }
+
+    /**
+     * Records a setting property change.
+     *
+     * @param	setting		the setting whose property changed
+     * @param	property	a string containing the property name
+     * @param	removed		true when the property has been removed
+     */
+    void addPropertyChange(Setting setting, String property, boolean removed) {
+        Map<String, Boolean> properties = propertyChanges.get(setting);
+        if (properties == null) {
+            properties = new LinkedHashMap<String, Boolean>(4);
+            propertyChanges.put(setting, properties);
+        }
+        properties.put(property, Boolean.valueOf(removed));
+    }
+
+    /**
+     * Records a setting added to the doxyfile.
+     *
+     * @param	setting	the added setting
+     */
+    void addSettingAdded(Setting setting) {
+        addedSettings.add(setting);
+    }
+
+    /**
+     * Records a setting removed from the doxyfile.
+     *
+     * @param	setting	the removed setting
+     */
+    void addSettingRemoved(Setting setting) {
+        if (addedSettings.remove(setting) == false) {
+            removedSettings.add(setting);
+        }
+        valueChanges.remove(setting);
+        propertyChanges.remove(setting);
+    }
+
+    /**
+     * Tells if the change set contains no change.
+     *
+     * @return	true or false
+     */
+    public boolean isEmpty() {
+        return valueChanges.isEmpty() && propertyChanges.isEmpty() && addedSettings.isEmpty() && removedSettings.isEmpty();
+    }
+
+    /**
+     * Tells if settings have been added to or removed from the doxyfile.
+     *
+     * @return	true or false
+     */
+    public boolean isStructureChanged() {
+        return addedSettings.isEmpty() == false || removedSettings.isEmpty() == false;
+    }
+
+    /**
+     * Retrieves the settings added to the doxyfile.
+     *
+     * @return	a set of settings
+     */
+    public Set<Setting> getAddedSettings() {
+        return Collections.unmodifiableSet(addedSettings);
+    }
+
+    /**
+     * Retrieves the settings removed from the doxyfile. Removed settings do not
+     * belong to the doxyfile anymore.
+     *
+     * @return	a set of settings
+     */
+    public Set<Setting> getRemovedSettings() {
+        return Collections.unmodifiableSet(removedSettings);
+    }
+
+    /**
+     * Retrieves all settings that changed, either their value or their properties.
+     *
+     * @return	a set of settings
+     */
+    public Set<Setting> getChangedSettings() {
+        if (propertyChanges.isEmpty()) {
+            return getValueChangedSettings();
+        }
+        Set<Setting> settings = new LinkedHashSet<Setting>(valueChanges);
+        settings.addAll(propertyChanges.keySet());
+        return Collections.unmodifiableSet(settings);
+    }
+
+    /**
+     * Retrieves the settings whose value changed.
+     *
+     * @return	a set of settings
+     */
+    public Set<Setting> getValueChangedSettings() {
+        return Collections.unmodifiableSet(valueChanges);
+    }
+
+    /**
+     * Retrieves the settings whose properties changed.
+     *
+     * @return	a set of settings
+     */
+    public Set<Setting> getPropertyChangedSettings() {
+        return Collections.unmodifiableSet(propertyChanges.keySet());
+    }
+
+    /**
+     * Tells if the value of the given setting changed.
+     *
+     * @param	setting	a setting
+     *
+     * @return	true or false
+     */
+    public boolean isValueChanged(Setting setting) {
+        return valueChanges.contains(setting);
+    }
+
+    /**
+     * Retrieves the names of the changed properties of the given setting.
+     *
+     * @param	setting	a setting
+     *
+     * @return	a set of property names, empty when none changed
+     */
+    public Set<String> getChangedProperties(Setting setting) {
+        Map<String, Boolean> properties = propertyChanges.get(setting);
+        return properties != null ? Collections.unmodifiableSet(properties.keySet()) : Collections.<String>emptySet();
+    }
+
+    /**
+     * Tells if the given property of the setting has been removed (rather than changed).
+     *
+     * @param	setting		a setting
+     * @param	property	a string containing a property name
+     *
+     * @return	true or false
+     */
+    public boolean isPropertyRemoved(Setting setting, String property) {
+        Map<String, Boolean> properties = propertyChanges.get(setting);
+        return properties != null && Boolean.TRUE.equals(properties.get(property));
+    }
+
+}
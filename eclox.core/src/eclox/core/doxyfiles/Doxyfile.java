@@ -10,6 +10,16 @@
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
  *     Andre Bossert - Add ability to use Doxyfile not in project scope
+ *                   - resolve @INCLUDE directives into an effective (layered) view
+ *                   - load files outside of the workspace through their channel
+ *                   - decode files outside of the workspace according to DOXYFILE_ENCODING
+ *                   - added transactions delivering coalesced change sets
+ *                   - dispatch the change sets through a doxyfile event bus
+ *                   - added immutable snapshots for concurrent readers
+ *                   - reload in place, reusing the unchanged chunks
+ *                   - patch changed regions in place through a line index
+ *                   - hash code consistent with equals
+ *                   - layer included doxyfiles at the position of their @INCLUDE directive
  *
  ******************************************************************************/
 
@@ -17,26 +27,31 @@ package eclox.core.doxyfiles;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.content.IContentType;
 
+import eclox.core.doxyfiles.io.IncludeCache;
+import eclox.core.doxyfiles.io.MappedLoader;
 import eclox.core.doxyfiles.io.Parser;
 
 /**
@@ -71,6 +86,56 @@ public class Doxyfile {
      */
     private Map<String, Group> groups = new LinkedHashMap<String, Group>();
 
+    /**
+     * the values of the @INCLUDE directives, in order of appearance
+     */
+    private List<String> includes = new ArrayList<String>();
+
+    /**
+     * the chunks holding the @INCLUDE directives, in the order of the directive values
+     */
+    private List<Chunk> includeChunks = new ArrayList<Chunk>();
+
+    /**
+     * the values of the @INCLUDE_PATH directives, in order of appearance
+     */
+    private List<String> includePaths = new ArrayList<String>();
+
+    /**
+     * the resolved included doxyfiles (shared and read-only) of each @INCLUDE directive, in order of appearance
+     */
+    private volatile List<List<Doxyfile>> includedDoxyfiles = Collections.emptyList();
+
+    /**
+     * the version of the model, incremented on each modification
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * the last taken snapshot, reused as long as the model does not change
+     */
+    private DoxyfileSnapshot lastSnapshot;
+
+    /**
+     * the event bus dispatching the change sets
+     */
+    private final DoxyfileEventBus eventBus = new DoxyfileEventBus();
+
+    /**
+     * the nesting depth of the running transactions
+     */
+    private int transactionDepth = 0;
+
+    /**
+     * the changes collected by the running transaction, null when none
+     */
+    private ChangeSet pendingChanges;
+
+    /**
+     * the index of the lines parsed by the last load, null when not loaded
+     */
+    private LineIndex lineIndex;
+
     /**
      * Tells if the given object is a doxyfile
      *
@@ -101,7 +166,18 @@ public class Doxyfile {
      * @return	<code>true</code> or <code>false</code>
      */
     public static boolean isDoxyfile(IFile file) {
-        String name = file.getName();
+        return isDoxyfileName(file.getName());
+    }
+
+    /**
+     * Tells if a file with the specified name is a doxyfile. Only the name
+     * based content type associations are taken into account.
+     *
+     * @param	name	the file name to test
+     *
+     * @return	<code>true</code> or <code>false</code>
+     */
+    public static boolean isDoxyfileName(String name) {
         IContentType contentType = Platform.getContentTypeManager().findContentTypeFor(name);
 
         return contentType != null ? contentType.getId().equals("org.gna.eclox.core.doxyfile") : false;
@@ -117,14 +193,705 @@ public class Doxyfile {
         this.file = file;
     }
 
+    /**
+     * Loads the doxyfile content. When the doxyfile has already been loaded, the content
+     * gets refreshed in place (see refresh), so loading several times is idempotent.
+     */
     public void load() throws CoreException, FileNotFoundException, IOException {
-        InputStream input;
+        boolean loaded;
+        synchronized (this) {
+            loaded = chunks.isEmpty() == false;
+        }
+        if (loaded) {
+            refresh();
+            return;
+        }
+        CharSequence text = readContent();
+        Parser parser = new Parser(text);
+        synchronized (this) {
+            includes.clear();
+            includeChunks.clear();
+            includePaths.clear();
+        }
+        parser.read(this);
+        synchronized (this) {
+            lineIndex = new LineIndex(text, parser.getLineChunks());
+        }
+        includedDoxyfiles = IncludeCache.resolveEach(this);
+        modelChanged();
+    }
+
+    /**
+     * Reloads the whole doxyfile content in place. The content is parsed into a separate
+     * model that gets merged into the current one: unchanged settings and raw texts are
+     * kept, existing settings are updated and listeners receive a single change set with
+     * the real changes only (including the added and removed settings).
+     */
+    public void reload() throws CoreException, FileNotFoundException, IOException {
+        reload(readContent());
+    }
+
+    /**
+     * Refreshes the doxyfile from the current content of its file, only parsing the
+     * statements that changed since the last load when possible.
+     *
+     * @see update
+     */
+    public void refresh() throws CoreException, FileNotFoundException, IOException {
+        update(readContent());
+    }
+
+    /**
+     * Updates the doxyfile with the given new content. The changed region is located by
+     * comparing the content with the last parsed one.
+     *
+     * @param	text	the new content of the doxyfile
+     *
+     * @see #update(CharSequence, int, int, int)
+     */
+    public void update(CharSequence text) throws IOException {
+        update(text, -1, 0, 0);
+    }
+
+    /**
+     * Updates the doxyfile with the given new content, where the given range of the last
+     * parsed content has been replaced. Only the statements of that region get parsed again
+     * and patched in place, using the line index of the doxyfile. When the region cannot be
+     * handled on its own (@INCLUDE directives, settings assigned several times, misplaced
+     * continuations...), the whole content gets reloaded.
+     *
+     * @param	text		the new content of the doxyfile
+     * @param	offset		the offset of the replaced range, or -1 to compare the whole content
+     * @param	oldLength	the length of the range in the last parsed content
+     * @param	newLength	the length of the range in the new content
+     */
+    public void update(CharSequence text, int offset, int oldLength, int newLength) throws IOException {
+        boolean updated;
+        beginTransaction();
+        try {
+            updated = updateRegion(text, offset, oldLength, newLength);
+        } finally {
+            commitTransaction();
+        }
+        if (updated) {
+            modelChanged();
+        } else {
+            reload(text);
+        }
+    }
+
+    private CharSequence readContent() throws CoreException, IOException {
         if (ifile != null)
-            input = ifile.getContents();
+            return MappedLoader.load(ifile.getContents(), MappedLoader.getCharset(ifile));
         else
-            input = new BufferedInputStream(new FileInputStream(file));
-        Parser parser = new Parser(input);
-        parser.read(this);
+            return MappedLoader.load(file);
+    }
+
+    private void reload(CharSequence text) throws IOException {
+        Doxyfile parsed = new Doxyfile(ifile, file);
+        Parser parser = new Parser(text);
+        parser.read(parsed);
+        beginTransaction();
+        try {
+            synchronized (this) {
+                Map<Chunk, Chunk> merged = new IdentityHashMap<Chunk, Chunk>();
+                setChunks(mergeChunks(chunks, parsed.chunks, merged));
+                includes = new ArrayList<String>(parsed.includes);
+                includeChunks = mapChunks(parsed.includeChunks, merged);
+                includePaths = new ArrayList<String>(parsed.includePaths);
+                lineIndex = new LineIndex(text, mapChunks(parser.getLineChunks(), merged));
+            }
+        } finally {
+            commitTransaction();
+        }
+        includedDoxyfiles = IncludeCache.resolveEach(this);
+        modelChanged();
+    }
+
+    /**
+     * Parses again the changed region of the given text and patches the model in place.
+     * Must be called within a transaction.
+     *
+     * @return	true on success, false when the whole content must be reloaded
+     *
+     * @see #update(CharSequence, int, int, int)
+     */
+    private synchronized boolean updateRegion(CharSequence content, int offset, int oldLength, int newLength) throws IOException {
+        if (lineIndex == null || lineIndex.getLineCount() == 0) {
+            return false;
+        }
+
+        // Locates the changed characters, between the unchanged prefix and suffix.
+        String oldText = lineIndex.getText();
+        String text = content.toString();
+        int oldTextLength = oldText.length();
+        int newTextLength = text.length();
+        int prefix;
+        int suffix;
+        if (offset >= 0) {
+            if (offset + oldLength > oldTextLength || newTextLength - newLength != oldTextLength - oldLength) {
+                return false;
+            }
+            prefix = offset;
+            suffix = oldTextLength - offset - oldLength;
+        } else {
+            prefix = getCommonPrefixLength(oldText, text);
+            if (prefix == oldTextLength && prefix == newTextLength) {
+                lineIndex.replace(0, -1, text, Collections.<Chunk>emptyList());
+                return true;
+            }
+            suffix = getCommonSuffixLength(oldText, text, Math.min(oldTextLength, newTextLength) - prefix);
+        }
+
+        // Extends the changed lines to whole statements, plus the neighbour statements,
+        // so the region starts and ends on the same chunk boundaries than a full parse.
+        // The line before the change is included for a carriage return followed by an
+        // inserted line feed.
+        int firstLine = lineIndex.getLine(Math.max(prefix - 1, 0));
+        int lastLine = lineIndex.getLine(Math.min(oldTextLength - suffix, oldTextLength - 1));
+        if (lineIndex.getChunk(firstLine) == null || lineIndex.getChunk(lastLine) == null) {
+            return false;
+        }
+        firstLine = lineIndex.getRunStart(firstLine);
+        lastLine = lineIndex.getRunEnd(lastLine);
+        if (firstLine > 0) {
+            if (lineIndex.getChunk(firstLine - 1) == null) {
+                return false;
+            }
+            firstLine = lineIndex.getRunStart(firstLine - 1);
+        }
+        if (lastLine + 1 < lineIndex.getLineCount()) {
+            if (lineIndex.getChunk(lastLine + 1) == null) {
+                return false;
+            }
+            lastLine = lineIndex.getRunEnd(lastLine + 1);
+            if (lastLine + 1 < lineIndex.getLineCount() && lineIndex.getChunk(lastLine + 1) == null) {
+                return false;
+            }
+        }
+
+        // Collects the chunks of the region, that must not have lines outside of it.
+        List<Chunk> regionChunks = new ArrayList<Chunk>();
+        Map<String, Setting> regionSettings = new HashMap<String, Setting>();
+        for (int line = firstLine; line <= lastLine; line = lineIndex.getRunEnd(line) + 1) {
+            if (lineIndex.isContiguous(line) == false) {
+                return false;
+            }
+            Chunk chunk = lineIndex.getChunk(line);
+            regionChunks.add(chunk);
+            if (chunk instanceof Setting) {
+                regionSettings.put(((Setting) chunk).getIdentifier(), (Setting) chunk);
+            }
+        }
+        int regionStart = lineIndex.getLineStart(firstLine);
+        int oldRegionEnd = lineIndex.getLineStart(lastLine + 1);
+        int newRegionEnd = oldRegionEnd + newTextLength - oldTextLength;
+        if (containsDirective(oldText, regionStart, oldRegionEnd) || containsDirective(text, regionStart, newRegionEnd)) {
+            return false;
+        }
+        int from = chunks.indexOf(regionChunks.get(0));
+        int to = from + regionChunks.size();
+        if (from == -1 || to > chunks.size() || chunks.get(to - 1) != regionChunks.get(regionChunks.size() - 1)) {
+            return false;
+        }
+
+        // Parses the new region on its own and checks it is self-contained.
+        Doxyfile parsed = new Doxyfile(ifile, file);
+        CharSequence regionText = text.subSequence(regionStart, newRegionEnd);
+        Parser parser = new Parser(regionText);
+        parser.read(parsed);
+        List<Chunk> parsedLines = parser.getLineChunks();
+        if (parsedLines.contains(null)) {
+            return false;
+        }
+        for (String identifier : parsed.settings.keySet()) {
+            if (settings.containsKey(identifier) && regionSettings.containsKey(identifier) == false) {
+                return false;
+            }
+        }
+        LineIndex parsedIndex = new LineIndex(regionText, parsedLines);
+        for (int line = 0; line < parsedIndex.getLineCount(); line = parsedIndex.getRunEnd(line) + 1) {
+            if (parsedIndex.isContiguous(line) == false) {
+                return false;
+            }
+        }
+
+        // Patches the chunks, the settings and the line index.
+        Map<Chunk, Chunk> merged = new IdentityHashMap<Chunk, Chunk>();
+        List<Chunk> mergedChunks = mergeChunks(regionChunks, parsed.chunks, merged);
+        if (getSettings(mergedChunks).equals(getSettings(regionChunks))) {
+            // Settings are unchanged, so are the setting and group maps.
+            AbstractList<Chunk> newChunks = new Vector<Chunk>(chunks.size() - regionChunks.size() + mergedChunks.size());
+            newChunks.addAll(chunks.subList(0, from));
+            newChunks.addAll(mergedChunks);
+            newChunks.addAll(chunks.subList(to, chunks.size()));
+            chunks = newChunks;
+        } else {
+            List<Chunk> newChunks = new ArrayList<Chunk>(chunks.size() - regionChunks.size() + mergedChunks.size());
+            newChunks.addAll(chunks.subList(0, from));
+            newChunks.addAll(mergedChunks);
+            newChunks.addAll(chunks.subList(to, chunks.size()));
+            setChunks(newChunks);
+        }
+        lineIndex.replace(firstLine, lastLine, text, mapChunks(parsedLines, merged));
+        return true;
+    }
+
+    private static int getCommonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static int getCommonSuffixLength(String a, String b, int maxLength) {
+        int i = a.length();
+        int j = b.length();
+        int end = i - maxLength;
+        while (i > end && a.charAt(i - 1) == b.charAt(j - 1)) {
+            --i;
+            --j;
+        }
+        return a.length() - i;
+    }
+
+    /**
+     * Retrieves the settings among the given chunks, in order of appearance.
+     */
+    private static List<Setting> getSettings(List<Chunk> chunks) {
+        List<Setting> result = new ArrayList<Setting>();
+        for (Chunk chunk : chunks) {
+            if (chunk instanceof Setting) {
+                result.add((Setting) chunk);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tells if the given text range contains an @INCLUDE or @INCLUDE_PATH directive.
+     */
+    private static boolean containsDirective(CharSequence text, int start, int end) {
+        final String directive = "@INCLUDE";
+        for (int i = start; i + directive.length() <= end; ++i) {
+            if (text.charAt(i) == '@') {
+                int j = 1;
+                while (j < directive.length() && text.charAt(i + j) == directive.charAt(j)) {
+                    ++j;
+                }
+                if (j == directive.length()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the chunks of the doxyfile and rebuilds the setting and group maps in order of appearance.
+     */
+    private void setChunks(List<Chunk> newChunks) {
+        chunks = new Vector<Chunk>(newChunks);
+        settings = new LinkedHashMap<String, Setting>(settings.size() * 4 / 3 + 1);
+        groups = new LinkedHashMap<String, Group>(groups.size() * 4 / 3 + 1);
+        for (Chunk chunk : newChunks) {
+            if (chunk instanceof Setting) {
+                Setting setting = (Setting) chunk;
+                settings.put(setting.getIdentifier(), setting);
+                addToGroup(setting);
+            }
+        }
+    }
+
+    /**
+     * Maps the given chunks to the chunks they have been merged into.
+     */
+    private static List<Chunk> mapChunks(List<Chunk> chunks, Map<Chunk, Chunk> merged) {
+        List<Chunk> result = new ArrayList<Chunk>(chunks.size());
+        for (Chunk chunk : chunks) {
+            result.add(chunk != null ? merged.get(chunk) : null);
+        }
+        return result;
+    }
+
+    /**
+     * Merges freshly parsed chunks in place of current chunks of the doxyfile. Current settings
+     * are reused by identifier and current raw texts are reused when their content did not
+     * change. Current chunks that are not reused get detached. Must be called within a transaction.
+     *
+     * @param	currentChunks	the chunks of the doxyfile to replace
+     * @param	parsedChunks	the parsed chunks, in order of appearance
+     * @param	merged			receives the chunk of the doxyfile for each parsed chunk
+     *
+     * @return	the chunks to put in place of the current ones
+     */
+    private List<Chunk> mergeChunks(List<Chunk> currentChunks, List<Chunk> parsedChunks, Map<Chunk, Chunk> merged) {
+        // Indexes the current settings by identifier and the current raw texts by content.
+        Map<String, Setting> currentSettings = new HashMap<String, Setting>();
+        Map<List<String>, LinkedList<RawText>> rawTexts = new HashMap<List<String>, LinkedList<RawText>>();
+        for (Chunk chunk : currentChunks) {
+            if (chunk instanceof Setting) {
+                currentSettings.put(((Setting) chunk).getIdentifier(), (Setting) chunk);
+            } else if (chunk instanceof RawText) {
+                RawText rawText = (RawText) chunk;
+                LinkedList<RawText> sameRawTexts = rawTexts.get(rawText.getLines());
+                if (sameRawTexts == null) {
+                    sameRawTexts = new LinkedList<RawText>();
+                    rawTexts.put(rawText.getLines(), sameRawTexts);
+                }
+                sameRawTexts.add(rawText);
+            }
+        }
+
+        List<Chunk> mergedChunks = new ArrayList<Chunk>(parsedChunks.size());
+        for (Chunk chunk : parsedChunks) {
+            Chunk mergedChunk;
+            if (chunk instanceof Setting) {
+                Setting parsedSetting = (Setting) chunk;
+                Setting setting = currentSettings.remove(parsedSetting.getIdentifier());
+                if (setting != null) {
+                    setting.update(parsedSetting);
+                } else {
+                    setting = parsedSetting;
+                    setting.setOwner(this);
+                    getPendingChanges().addSettingAdded(setting);
+                }
+                mergedChunk = setting;
+            } else {
+                LinkedList<RawText> sameRawTexts = (chunk instanceof RawText) ? rawTexts.get(((RawText) chunk).getLines()) : null;
+                if (sameRawTexts != null && sameRawTexts.isEmpty() == false) {
+                    mergedChunk = sameRawTexts.removeFirst();
+                } else {
+                    mergedChunk = chunk;
+                    mergedChunk.setOwner(this);
+                }
+            }
+            mergedChunks.add(mergedChunk);
+            merged.put(chunk, mergedChunk);
+        }
+
+        // Detaches the chunks that are not part of the model anymore.
+        for (Setting setting : currentSettings.values()) {
+            setting.setOwner(null);
+            getPendingChanges().addSettingRemoved(setting);
+        }
+        for (LinkedList<RawText> sameRawTexts : rawTexts.values()) {
+            for (RawText rawText : sameRawTexts) {
+                rawText.setOwner(null);
+            }
+        }
+        return mergedChunks;
+    }
+
+    /**
+     * Retrieves an immutable snapshot of the current settings, that can be read by
+     * background jobs without locking while the doxyfile gets edited. Snapshots are
+     * reused as long as the doxyfile does not change.
+     *
+     * @return	a snapshot of the doxyfile
+     */
+    public DoxyfileSnapshot snapshot() {
+        long currentVersion = version.get();
+        synchronized (this) {
+            if (lastSnapshot != null && lastSnapshot.getVersion() == currentVersion) {
+                return lastSnapshot;
+            }
+        }
+
+        // Takes the snapshots of the included doxyfiles, that are read-only.
+        List<List<Doxyfile>> currentIncludes = includedDoxyfiles;
+        List<DoxyfileSnapshot> includeSnapshots = new ArrayList<DoxyfileSnapshot>();
+        for (List<Doxyfile> directiveIncludes : currentIncludes) {
+            for (Doxyfile include : directiveIncludes) {
+                includeSnapshots.add(include.snapshot());
+            }
+        }
+
+        synchronized (this) {
+            Map<String, SettingState> states = new LinkedHashMap<String, SettingState>(settings.size() * 4 / 3 + 1);
+            for (Setting setting : settings.values()) {
+                states.put(setting.getIdentifier(), setting.getState());
+            }
+            lastSnapshot = new DoxyfileSnapshot(ifile, file, currentVersion, Collections.unmodifiableMap(states),
+                    Collections.unmodifiableList(includeSnapshots), getIncludePositions(currentIncludes));
+            return lastSnapshot;
+        }
+    }
+
+    /**
+     * Retrieves the number of included doxyfiles preceding each setting, for the settings
+     * appearing before the last @INCLUDE directive. Must be called with the lock held.
+     *
+     * @param	currentIncludes	the included doxyfiles of each @INCLUDE directive
+     *
+     * @return	a map of included doxyfile counts by setting identifier
+     */
+    private Map<String, Integer> getIncludePositions(List<List<Doxyfile>> currentIncludes) {
+        // The directives of a raw text chunk have no setting in between, so they are counted together.
+        Map<Chunk, Integer> includeCounts = new IdentityHashMap<Chunk, Integer>();
+        int total = 0;
+        for (int i = 0; i < includeChunks.size() && i < currentIncludes.size(); ++i) {
+            Integer count = includeCounts.get(includeChunks.get(i));
+            int directiveCount = currentIncludes.get(i).size();
+            includeCounts.put(includeChunks.get(i), (count != null ? count : 0) + directiveCount);
+            total += directiveCount;
+        }
+        if (total == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Integer> positions = new HashMap<String, Integer>();
+        int position = 0;
+        for (Chunk chunk : chunks) {
+            if (position == total) {
+                break;
+            }
+            if (chunk instanceof Setting) {
+                positions.put(((Setting) chunk).getIdentifier(), position);
+            } else {
+                Integer count = includeCounts.get(chunk);
+                if (count != null) {
+                    position += count;
+                }
+            }
+        }
+        return Collections.unmodifiableMap(positions);
+    }
+
+    /**
+     * Retrieves the current version of the model.
+     *
+     * @return	a version number, increasing with each modification
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Notifies that the model has been modified, making the next snapshot a new version.
+     */
+    void modelChanged() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Retrieves the event bus dispatching the changes of the doxyfile.
+     *
+     * @return	the event bus
+     */
+    public DoxyfileEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Attaches a listener receiving the change sets of the doxyfile.
+     *
+     * @param	listener	a doxyfile listener
+     */
+    public void addDoxyfileListener(IDoxyfileListener listener) {
+        eventBus.subscribe(listener);
+    }
+
+    /**
+     * Detaches a listener previously attached.
+     *
+     * @param	listener	a doxyfile listener
+     */
+    public void removeDoxyfileListener(IDoxyfileListener listener) {
+        eventBus.unsubscribe(listener);
+    }
+
+    /**
+     * Begins a transaction. Until the transaction gets committed, all setting value and
+     * property changes are collected and listeners are not notified. Transactions can be
+     * nested, the changes are delivered when the outermost transaction gets committed.
+     *
+     * Each call must be balanced by a call to commitTransaction, preferably in a finally block.
+     *
+     * @see commitTransaction
+     */
+    public void beginTransaction() {
+        ++transactionDepth;
+    }
+
+    /**
+     * Commits the current transaction. When it is the outermost one, the setting listeners
+     * get notified once per changed setting, then the doxyfile listeners receive the whole
+     * change set. Changes done by the listeners themselves are delivered afterwards, in a
+     * following change set.
+     *
+     * @see beginTransaction
+     */
+    public void commitTransaction() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction to commit.");
+        }
+        if (--transactionDepth == 0) {
+            deliverChanges();
+        }
+    }
+
+    /**
+     * Tells if a transaction is running.
+     *
+     * @return	true or false
+     */
+    public boolean isInTransaction() {
+        return transactionDepth > 0;
+    }
+
+    /**
+     * Records a setting value change, in an implicit transaction when none is running.
+     *
+     * @param	setting	a setting of the doxyfile whose value changed
+     */
+    void settingValueChanged(Setting setting) {
+        modelChanged();
+        beginTransaction();
+        try {
+            getPendingChanges().addValueChange(setting);
+        } finally {
+            commitTransaction();
+        }
+    }
+
+    /**
+     * Records a setting property change, in an implicit transaction when none is running.
+     *
+     * @param	setting		a setting of the doxyfile whose property changed
+     * @param	property	a string containing the property name
+     * @param	removed		true when the property has been removed
+     */
+    void settingPropertyChanged(Setting setting, String property, boolean removed) {
+        beginTransaction();
+        try {
+            getPendingChanges().addPropertyChange(setting, property, removed);
+        } finally {
+            commitTransaction();
+        }
+    }
+
+    private ChangeSet getPendingChanges() {
+        if (pendingChanges == null) {
+            pendingChanges = new ChangeSet();
+        }
+        return pendingChanges;
+    }
+
+    /**
+     * Delivers the pending changes, until listeners stop changing the doxyfile.
+     */
+    private void deliverChanges() {
+        // Keeps a transaction open, so changes done by the listeners get collected.
+        ++transactionDepth;
+        try {
+            while (pendingChanges != null) {
+                ChangeSet changes = pendingChanges;
+                pendingChanges = null;
+
+                eventBus.dispatch(this, changes);
+            }
+        } finally {
+            --transactionDepth;
+        }
+    }
+
+    /**
+     * Remembers the value of an @INCLUDE directive, that is part of the last chunk.
+     *
+     * @param	value	a string containing the directive value
+     */
+    public synchronized void addInclude(String value) {
+        includes.add(value);
+        includeChunks.add(getLastChunk());
+    }
+
+    /**
+     * Remembers the value of an @INCLUDE_PATH directive.
+     *
+     * @param	value	a string containing the directive value
+     */
+    public synchronized void addIncludePath(String value) {
+        includePaths.add(value);
+    }
+
+    /**
+     * Retrieves the values of the @INCLUDE directives.
+     *
+     * @return	a list of strings
+     */
+    public List<String> getIncludes() {
+        return Collections.unmodifiableList(includes);
+    }
+
+    /**
+     * Retrieves the values of the @INCLUDE_PATH directives.
+     *
+     * @return	a list of strings
+     */
+    public List<String> getIncludePaths() {
+        return Collections.unmodifiableList(includePaths);
+    }
+
+    /**
+     * Retrieves the doxyfiles included by the doxyfile, as resolved by the last load.
+     *
+     * The included doxyfiles are shared by all including doxyfiles and must not be modified.
+     *
+     * @return	a list of doxyfiles, in order of appearance
+     */
+    public List<Doxyfile> getIncludedDoxyfiles() {
+        List<Doxyfile> result = new ArrayList<Doxyfile>();
+        for (List<Doxyfile> directiveIncludes : includedDoxyfiles) {
+            result.addAll(directiveIncludes);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Retrieves the effective setting for the given identifier, that is the setting of the last
+     * layer defining it. The layers are the local setting and the included doxyfiles, in order
+     * of appearance.
+     *
+     * @param	identifier	a string containing a setting identifier
+     *
+     * @return	the found setting or null if none
+     *
+     * @see #getEffectiveValue(String)
+     */
+    public Setting getEffectiveSetting(String identifier) {
+        List<Doxyfile> included = getIncludedDoxyfiles();
+        Setting localSetting = getSetting(identifier);
+        int position = Math.min(snapshot().getIncludePosition(identifier), included.size());
+        for (int i = included.size() - 1; i >= 0; --i) {
+            if (i == position - 1 && localSetting != null) {
+                return localSetting;
+            }
+            Setting setting = included.get(i).getEffectiveSetting(identifier);
+            if (setting != null) {
+                return setting;
+            }
+        }
+        return localSetting;
+    }
+
+    /**
+     * Retrieves the effective value of the given setting, taking the included doxyfiles into account.
+     *
+     * Like doxygen does, included doxyfiles are processed at the position of their @INCLUDE
+     * directive: they override the settings appearing before the directive and get overridden
+     * by the settings appearing after it. An increment (+=) appends to the value inherited from
+     * the preceding layers. A setting assigned several times in the doxyfile is a single setting
+     * of the model, placed at its first appearance.
+     *
+     * @param	identifier	a string containing a setting identifier
+     *
+     * @return	a string containing the value, or null when the setting is nowhere defined
+     */
+    public String getEffectiveValue(String identifier) {
+        return snapshot().getEffectiveValue(identifier);
     }
 
     /**
@@ -132,34 +899,45 @@ public class Doxyfile {
      *
      * @param	chunk	a chunk to append to the doxyfile
      */
-    public void append(Chunk chunk) {
+    public synchronized void append(Chunk chunk) {
         // Pre-condition
         assert chunk.getOwner() == null;
 
-        // References the chunk.
+        // References the chunk, that has no source line.
         chunk.setOwner(this);
         this.chunks.add(chunk);
+        this.lineIndex = null;
 
         // Do special handling for settings.
         if (chunk instanceof Setting) {
             Setting setting = (Setting) chunk;
             this.settings.put(setting.getIdentifier(), setting);
 
-            // Retrieves the setting group name.
-            String groupName = setting.getProperty(Setting.GROUP);
-            if (groupName == null) {
-                groupName = new String("Others");
-                setting.setProperty(Setting.GROUP, groupName);
-            }
+            addToGroup(setting);
+        }
+        modelChanged();
+    }
 
-            // Retrieves the setting group and stores the setting in it.
-            Group group = (Group) this.groups.get(groupName);
-            if (group == null) {
-                group = new Group(groupName);
-                this.groups.put(groupName, group);
-            }
-            group.add(setting);
+    /**
+     * Stores the setting in its group, creating the group when needed.
+     *
+     * @param	setting	a setting of the doxyfile
+     */
+    private void addToGroup(Setting setting) {
+        // Retrieves the setting group name.
+        String groupName = setting.getProperty(Setting.GROUP);
+        if (groupName == null) {
+            groupName = new String("Others");
+            setting.setProperty(Setting.GROUP, groupName);
         }
+
+        // Retrieves the setting group and stores the setting in it.
+        Group group = (Group) this.groups.get(groupName);
+        if (group == null) {
+            group = new Group(groupName);
+            this.groups.put(groupName, group);
+        }
+        group.add(setting);
     }
 
     /**
@@ -185,7 +963,7 @@ public class Doxyfile {
      *
      * @return  an array containing all groups
      */
-    public Object[] getGroups() {
+    public synchronized Object[] getGroups() {
         return this.groups.values().toArray();
     }
 
@@ -194,7 +972,7 @@ public class Doxyfile {
      *
      * @return	the last added chunk or null if none
      */
-    public Chunk getLastChunk() {
+    public synchronized Chunk getLastChunk() {
         if (this.chunks.isEmpty() == false) {
             return (Chunk) this.chunks.get(this.chunks.size() - 1);
         } else {
@@ -208,35 +986,7 @@ public class Doxyfile {
      * @return	a folder, or null when none
      */
     public IContainer getOutputContainer() {
-        IContainer outputContainer = null;
-        Setting outputSetting = getSetting("OUTPUT_DIRECTORY");
-        if (outputSetting != null) {
-            Path outputPath = new Path(outputSetting.getValue());
-            if (outputPath.isEmpty()) {
-                if (ifile != null) {
-                    outputContainer = ifile.getParent();
-                }
-            } else {
-                File containerFile = null;
-                if (outputPath.isAbsolute()) {
-                    containerFile = outputPath.toFile();
-                } else {
-                    if (ifile != null) {
-                        containerFile = ifile.getParent().getLocation().append(outputPath).toFile();
-                    } else {
-                        containerFile = new Path(file.getParentFile().getAbsolutePath()).append(outputPath).toFile();
-                    }
-                }
-                if (containerFile != null && containerFile.exists()) {
-                    IContainer[] foundContainers = ResourcesPlugin.getWorkspace().getRoot()
-                            .findContainersForLocationURI(containerFile.toURI());
-                    if (foundContainers.length >= 1) {
-                        outputContainer = foundContainers[0];
-                    }
-                }
-            }
-        }
-        return outputContainer;
+        return snapshot().getOutputContainer();
     }
 
     /**
@@ -246,7 +996,7 @@ public class Doxyfile {
      *
      * @return	the found setting or null if none
      */
-    public Setting getSetting(String identifier) {
+    public synchronized Setting getSetting(String identifier) {
         return (Setting) settings.get(identifier);
     }
 
@@ -255,7 +1005,7 @@ public class Doxyfile {
      *
      * @return	an array of settings
      */
-    public Object[] getSettings() {
+    public synchronized Object[] getSettings() {
         return settings.values().toArray();
     }
 
@@ -266,7 +1016,7 @@ public class Doxyfile {
      *
      * @return	true or false
      */
-    public boolean hasSetting(String identifier) {
+    public synchronized boolean hasSetting(String identifier) {
         return settings.get(identifier) != null;
     }
 
@@ -317,6 +1067,20 @@ public class Doxyfile {
         return settings.values().iterator();
     }
 
+    /**
+     * Retrieves the directory containing the doxyfile, that is also the working directory of doxygen.
+     *
+     * @return	a directory or null when unknown
+     */
+    public File getDirectory() {
+        if (ifile != null) {
+            IPath location = ifile.getLocation();
+            return location != null ? location.removeLastSegments(1).toFile() : null;
+        } else {
+            return file.getAbsoluteFile().getParentFile();
+        }
+    }
+
     public String getFullPath() {
         if (ifile != null) {
             return ifile.getFullPath().toString();
@@ -354,4 +1118,9 @@ public class Doxyfile {
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return getFullPath().hashCode();
+    }
+
 }
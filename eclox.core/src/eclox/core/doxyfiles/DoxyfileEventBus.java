@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import eclox.core.Plugin;
+
+/**
+ * Implements the event bus of a doxyfile, dispatching the committed change sets
+ * to the subscribed listeners.
+ *
+ * Setting listeners can subscribe to all settings, to the settings with a given
+ * identifier or to the settings of a given group. Doxyfile listeners receive the
+ * whole change sets. Subscriptions are stored in copy-on-write arrays, so the
+ * dispatch walks through them without any locking or copying.
+ *
+ * @author Andre Bossert
+ */
+public class DoxyfileEventBus {
+
+    private static final ISettingListener[] NO_SETTING_LISTENERS = new ISettingListener[0];
+    private static final IDoxyfileListener[] NO_DOXYFILE_LISTENERS = new IDoxyfileListener[0];
+
+    private volatile ISettingListener[] allSettingListeners = NO_SETTING_LISTENERS; ///< the listeners of all settings
+    private volatile Map<String, ISettingListener[]> identifierListeners = Collections.emptyMap(); ///< the listeners by setting identifier
+    private volatile Map<String, ISettingListener[]> groupListeners = Collections.emptyMap(); ///< the listeners by setting group
+    private volatile IDoxyfileListener[] doxyfileListeners = NO_DOXYFILE_LISTENERS; ///< the listeners of the change sets
+
+    /**
+     * Subscribes a setting listener to the changes of all settings.
+     *
+     * @param	listener	a setting listener
+     */
+    public synchronized void subscribe(ISettingListener listener) {
+        allSettingListeners = add(allSettingListeners, listener);
+    }
+
+    /**
+     * Subscribes a setting listener to the changes of the settings with the given identifier.
+     *
+     * @param	identifier	a string containing a setting identifier
+     * @param	listener	a setting listener
+     */
+    public synchronized void subscribe(String identifier, ISettingListener listener) {
+        identifierListeners = add(identifierListeners, identifier, listener);
+    }
+
+    /**
+     * Subscribes a setting listener to the changes of the settings of the given group.
+     *
+     * @param	group		a string containing a group name
+     * @param	listener	a setting listener
+     */
+    public synchronized void subscribeGroup(String group, ISettingListener listener) {
+        groupListeners = add(groupListeners, group, listener);
+    }
+
+    /**
+     * Subscribes a doxyfile listener to the change sets.
+     *
+     * @param	listener	a doxyfile listener
+     */
+    public synchronized void subscribe(IDoxyfileListener listener) {
+        if (indexOf(doxyfileListeners, listener) == -1) {
+            IDoxyfileListener[] listeners = Arrays.copyOf(doxyfileListeners, doxyfileListeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+            doxyfileListeners = listeners;
+        }
+    }
+
+    /**
+     * Unsubscribes a setting listener from all settings.
+     *
+     * @param	listener	a setting listener
+     */
+    public synchronized void unsubscribe(ISettingListener listener) {
+        allSettingListeners = remove(allSettingListeners, listener);
+    }
+
+    /**
+     * Unsubscribes a setting listener from the settings with the given identifier.
+     *
+     * @param	identifier	a string containing a setting identifier
+     * @param	listener	a setting listener
+     */
+    public synchronized void unsubscribe(String identifier, ISettingListener listener) {
+        identifierListeners = remove(identifierListeners, identifier, listener);
+    }
+
+    /**
+     * Unsubscribes a setting listener from the settings of the given group.
+     *
+     * @param	group		a string containing a group name
+     * @param	listener	a setting listener
+     */
+    public synchronized void unsubscribeGroup(String group, ISettingListener listener) {
+        groupListeners = remove(groupListeners, group, listener);
+    }
+
+    /**
+     * Unsubscribes a doxyfile listener.
+     *
+     * @param	listener	a doxyfile listener
+     */
+    public synchronized void unsubscribe(IDoxyfileListener listener) {
+        int index = indexOf(doxyfileListeners, listener);
+        if (index != -1) {
+            IDoxyfileListener[] listeners = new IDoxyfileListener[doxyfileListeners.length - 1];
+            System.arraycopy(doxyfileListeners, 0, listeners, 0, index);
+            System.arraycopy(doxyfileListeners, index + 1, listeners, index, listeners.length - index);
+            doxyfileListeners = listeners;
+        }
+    }
+
+    /**
+     * Dispatches the given change set, first to the setting listeners concerned by
+     * each changed setting, then to the doxyfile listeners.
+     *
+     * @param	doxyfile	the doxyfile that changed
+     * @param	changes		the committed changes
+     */
+    void dispatch(Doxyfile doxyfile, ChangeSet changes) {
+        ISettingListener[] all = allSettingListeners;
+        Map<String, ISettingListener[]> byIdentifier = identifierListeners;
+        Map<String, ISettingListener[]> byGroup = groupListeners;
+
+        if (all.length != 0 || byIdentifier.isEmpty() == false || byGroup.isEmpty() == false) {
+            for (Setting setting : changes.getChangedSettings()) {
+                dispatch(all, setting, changes);
+                if (byIdentifier.isEmpty() == false) {
+                    dispatch(byIdentifier.get(setting.getIdentifier()), setting, changes);
+                }
+                if (byGroup.isEmpty() == false) {
+                    String group = setting.getProperty(Setting.GROUP);
+                    if (group != null) {
+                        dispatch(byGroup.get(group), setting, changes);
+                    }
+                }
+            }
+        }
+
+        for (IDoxyfileListener listener : doxyfileListeners) {
+            try {
+                listener.doxyfileChanged(doxyfile, changes);
+            } catch (RuntimeException e) {
+                Plugin.log(e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the given setting listeners about the changes of the setting.
+     */
+    private static void dispatch(ISettingListener[] listeners, Setting setting, ChangeSet changes) {
+        if (listeners == null) {
+            return;
+        }
+        for (ISettingListener listener : listeners) {
+            try {
+                if (listener instanceof ISettingValueListener && changes.isValueChanged(setting)) {
+                    ((ISettingValueListener) listener).settingValueChanged(setting);
+                }
+                if (listener instanceof ISettingPropertyListener) {
+                    ISettingPropertyListener propertyListener = (ISettingPropertyListener) listener;
+                    for (String property : changes.getChangedProperties(setting)) {
+                        if (changes.isPropertyRemoved(setting, property)) {
+                            propertyListener.settingPropertyRemoved(setting, property);
+                        } else {
+                            propertyListener.settingPropertyChanged(setting, property);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                Plugin.log(e);
+            }
+        }
+    }
+
+    private static ISettingListener[] add(ISettingListener[] listeners, ISettingListener listener) {
+        if (indexOf(listeners, listener) != -1) {
+            return listeners;
+        }
+        ISettingListener[] result = Arrays.copyOf(listeners, listeners.length + 1);
+        result[result.length - 1] = listener;
+        return result;
+    }
+
+    private static ISettingListener[] remove(ISettingListener[] listeners, ISettingListener listener) {
+        int index = indexOf(listeners, listener);
+        if (index == -1) {
+            return listeners;
+        }
+        if (listeners.length == 1) {
+            return NO_SETTING_LISTENERS;
+        }
+        ISettingListener[] result = new ISettingListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, result, 0, index);
+        System.arraycopy(listeners, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private static Map<String, ISettingListener[]> add(Map<String, ISettingListener[]> map, String key, ISettingListener listener) {
+        ISettingListener[] listeners = map.get(key);
+        ISettingListener[] updated = add(listeners != null ? listeners : NO_SETTING_LISTENERS, listener);
+        if (updated == listeners) {
+            return map;
+        }
+        Map<String, ISettingListener[]> result = new HashMap<String, ISettingListener[]>(map);
+        result.put(key, updated);
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Map<String, ISettingListener[]> remove(Map<String, ISettingListener[]> map, String key, ISettingListener listener) {
+        ISettingListener[] listeners = map.get(key);
+        if (listeners == null) {
+            return map;
+        }
+        ISettingListener[] updated = remove(listeners, listener);
+        if (updated == listeners) {
+            return map;
+        }
+        Map<String, ISettingListener[]> result = new HashMap<String, ISettingListener[]>(map);
+        if (updated.length == 0) {
+            result.remove(key);
+        } else {
+            result.put(key, updated);
+        }
+        return result.isEmpty() ? Collections.<String, ISettingListener[]>emptyMap() : Collections.unmodifiableMap(result);
+    }
+
+    private static int indexOf(Object[] array, Object object) {
+        for (int i = 0; i < array.length; ++i) {
+            if (array[i] == object) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,499 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *                   - scan the pending projects in parallel
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ISaveContext;
+import org.eclipse.core.resources.ISaveParticipant;
+import org.eclipse.core.resources.ISavedState;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import eclox.core.Plugin;
+
+/**
+ * Implements the workspace wide index of the doxyfiles.
+ *
+ * The index is restored from the plugin state location at startup, together with the
+ * resource changes that happened since the last workspace save. Without saved state,
+ * the projects get scanned once by a background job. Afterwards, the index is kept up
+ * to date from the resource change deltas and answers queries without walking the
+ * workspace.
+ *
+ * @author Andre Bossert
+ *
+ * @see ResourceCollector
+ */
+public class DoxyfileIndex implements IResourceChangeListener, ISaveParticipant {
+
+    private static final IPath SAVE_KEY = new Path("doxyfiles"); ///< the key of the index file in the saved state
+    private static final String FILE_PREFIX = "doxyfiles."; ///< the prefix of the index file names
+    private static final String FILE_HEADER = "eclox doxyfile index 1"; ///< the first line of the index files
+    private static final String PENDING_PREFIX = "!"; ///< the prefix of the lines naming the projects still to scan
+
+    /**
+     * Implements the job scanning the projects waiting for a scan. All pending projects
+     * are scanned at once in parallel, skipping the output folders of their known doxyfiles.
+     */
+    private class ScanJob extends Job {
+
+        public ScanJob() {
+            super("Indexing doxyfiles");
+            setSystem(true);
+            setPriority(Job.DECORATE);
+        }
+
+        protected IStatus run(IProgressMonitor monitor) {
+            for (List<IProject> projects = nextPendingProjects(); projects.isEmpty() == false; projects = nextPendingProjects()) {
+                try {
+                    List<IProject> accessibleProjects = new ArrayList<IProject>();
+                    List<IFile> knownDoxyfiles = new ArrayList<IFile>();
+                    for (IProject project : projects) {
+                        if (project.isAccessible()) {
+                            accessibleProjects.add(project);
+                            knownDoxyfiles.addAll(getDoxyfiles(project));
+                        }
+                    }
+                    ResourceCollector collector = ResourceCollector.scanParallel(
+                            accessibleProjects.toArray(new IResource[accessibleProjects.size()]),
+                            ResourceCollector.getOutputPaths(knownDoxyfiles), monitor);
+                    Map<IProject, List<IResource>> scanned = new HashMap<IProject, List<IResource>>();
+                    for (IProject project : accessibleProjects) {
+                        scanned.put(project, new ArrayList<IResource>());
+                    }
+                    for (IResource doxyfile : collector.getDoxyfiles()) {
+                        scanned.get(doxyfile.getProject()).add(doxyfile);
+                    }
+                    for (Map.Entry<IProject, List<IResource>> entry : scanned.entrySet()) {
+                        addAll(entry.getKey(), entry.getValue());
+                    }
+                } catch (OperationCanceledException e) {
+                    reschedule(projects);
+                    return Status.CANCEL_STATUS;
+                } catch (CoreException e) {
+                    Plugin.log(e);
+                } finally {
+                    synchronized (pendingProjects) {
+                        scannedProjects.clear();
+                    }
+                }
+            }
+            return Status.OK_STATUS;
+        }
+    }
+
+    private final String pluginId; ///< the identifier of the plugin saving the index
+    private final IPath stateLocation; ///< the directory containing the index files
+    private final Map<String, Set<IFile>> doxyfiles = new ConcurrentHashMap<String, Set<IFile>>(); ///< the immutable sets of doxyfiles by project name
+    private final Set<IProject> pendingProjects = new LinkedHashSet<IProject>(); ///< the projects waiting for a scan
+    private final Set<IProject> scannedProjects = new HashSet<IProject>(); ///< the projects being scanned
+    private final Job scanJob = new ScanJob(); ///< the job scanning the pending projects
+    private int savedNumber = -1; ///< the number of the save that wrote an index file, -1 if none
+
+    /**
+     * Constructor
+     *
+     * @param	pluginId		the identifier of the plugin saving the index
+     * @param	stateLocation	the directory where to store the index
+     */
+    public DoxyfileIndex(String pluginId, IPath stateLocation) {
+        this.pluginId = pluginId;
+        this.stateLocation = stateLocation;
+    }
+
+    /**
+     * Starts maintaining the index. The saved index is restored when available,
+     * otherwise all projects get scanned in the background.
+     */
+    public void start() throws CoreException {
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+        ISavedState savedState = workspace.addSaveParticipant(pluginId, this);
+        IPath indexPath = (savedState != null) ? savedState.lookup(SAVE_KEY) : null;
+        if (indexPath != null && read(stateLocation.append(indexPath).toFile())) {
+            // Catches up with the changes done since the index has been saved.
+            savedState.processResourceChangeEvents(this);
+        } else {
+            rescan();
+        }
+    }
+
+    /**
+     * Stops maintaining the index.
+     */
+    public void stop() {
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        workspace.removeResourceChangeListener(this);
+        workspace.removeSaveParticipant(pluginId);
+        scanJob.cancel();
+    }
+
+    /**
+     * Scans again all projects of the workspace, in the background. Projects
+     * are not ready until they have been scanned.
+     */
+    public void rescan() {
+        for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+            schedule(project);
+        }
+    }
+
+    /**
+     * Tells if the index knows all doxyfiles contained in the given resource, that is
+     * when no project concerned by the resource is waiting for a scan.
+     *
+     * @param	root	a resource, the workspace root for all doxyfiles
+     *
+     * @return	true or false
+     */
+    public boolean isReady(IResource root) {
+        synchronized (pendingProjects) {
+            if (root.getType() == IResource.ROOT) {
+                return pendingProjects.isEmpty() && scannedProjects.isEmpty();
+            } else {
+                IProject project = root.getProject();
+                return pendingProjects.contains(project) == false && scannedProjects.contains(project) == false;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the doxyfiles of the given project.
+     *
+     * @param	project	a project
+     *
+     * @return	an immutable set of doxyfiles, empty when none
+     */
+    public Set<IFile> getDoxyfiles(IProject project) {
+        Set<IFile> projectDoxyfiles = doxyfiles.get(project.getName());
+        return projectDoxyfiles != null ? projectDoxyfiles : Collections.<IFile>emptySet();
+    }
+
+    /**
+     * Retrieves the accessible doxyfiles contained in the given resource, sorted by path.
+     *
+     * @param	root	a resource, the workspace root for all doxyfiles
+     *
+     * @return	a list of doxyfiles
+     */
+    public List<IFile> getDoxyfiles(IResource root) {
+        List<IFile> result = new ArrayList<IFile>();
+        if (root.getType() == IResource.ROOT) {
+            for (Set<IFile> projectDoxyfiles : doxyfiles.values()) {
+                addAccessible(projectDoxyfiles, root.getFullPath(), result);
+            }
+        } else if (root.getProject() != null) {
+            addAccessible(getDoxyfiles(root.getProject()), root.getFullPath(), result);
+        }
+        Collections.sort(result, new Comparator<IFile>() {
+
+            public int compare(IFile first, IFile second) {
+                return first.getFullPath().toString().compareTo(second.getFullPath().toString());
+            }
+        });
+        return result;
+    }
+
+    private static void addAccessible(Set<IFile> files, IPath rootPath, List<IFile> result) {
+        for (IFile file : files) {
+            if (rootPath.isPrefixOf(file.getFullPath()) && file.isAccessible()) {
+                result.add(file);
+            }
+        }
+    }
+
+    /**
+     * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+     */
+    public void resourceChanged(IResourceChangeEvent event) {
+        IResourceDelta delta = event.getDelta();
+        if (delta == null) {
+            return;
+        }
+        try {
+            delta.accept(new IResourceDeltaVisitor() {
+
+                public boolean visit(IResourceDelta delta) throws CoreException {
+                    IResource resource = delta.getResource();
+                    switch (resource.getType()) {
+                    case IResource.PROJECT:
+                        IProject project = (IProject) resource;
+                        if (delta.getKind() == IResourceDelta.REMOVED) {
+                            doxyfiles.remove(project.getName());
+                            return false;
+                        }
+                        if (delta.getKind() == IResourceDelta.ADDED || (delta.getFlags() & IResourceDelta.OPEN) != 0) {
+                            if (project.isOpen()) {
+                                schedule(project);
+                            } else {
+                                doxyfiles.remove(project.getName());
+                            }
+                            return false;
+                        }
+                        return true;
+                    case IResource.FILE:
+                        IFile file = (IFile) resource;
+                        if (delta.getKind() == IResourceDelta.ADDED && Doxyfile.isDoxyfile(file)) {
+                            add(file);
+                        } else if (delta.getKind() == IResourceDelta.REMOVED) {
+                            remove(file);
+                        }
+                        return false;
+                    default:
+                        return true;
+                    }
+                }
+            });
+        } catch (CoreException e) {
+            Plugin.log(e);
+        }
+    }
+
+    /**
+     * @see org.eclipse.core.resources.ISaveParticipant#prepareToSave(org.eclipse.core.resources.ISaveContext)
+     */
+    public void prepareToSave(ISaveContext context) throws CoreException {
+    }
+
+    /**
+     * @see org.eclipse.core.resources.ISaveParticipant#saving(org.eclipse.core.resources.ISaveContext)
+     */
+    public void saving(ISaveContext context) throws CoreException {
+        if (context.getKind() != ISaveContext.FULL_SAVE) {
+            return;
+        }
+        String fileName = FILE_PREFIX + context.getSaveNumber();
+        try {
+            write(stateLocation.append(fileName).toFile());
+        } catch (IOException e) {
+            throw new CoreException(new Status(IStatus.ERROR, pluginId, "Unable to save the doxyfile index.", e));
+        }
+        context.map(SAVE_KEY, new Path(fileName));
+        context.needSaveNumber();
+        context.needDelta();
+        savedNumber = context.getSaveNumber();
+    }
+
+    /**
+     * @see org.eclipse.core.resources.ISaveParticipant#doneSaving(org.eclipse.core.resources.ISaveContext)
+     */
+    public void doneSaving(ISaveContext context) {
+        if (savedNumber == context.getSaveNumber()) {
+            stateLocation.append(FILE_PREFIX + context.getPreviousSaveNumber()).toFile().delete();
+        }
+    }
+
+    /**
+     * @see org.eclipse.core.resources.ISaveParticipant#rollback(org.eclipse.core.resources.ISaveContext)
+     */
+    public void rollback(ISaveContext context) {
+        if (savedNumber == context.getSaveNumber()) {
+            stateLocation.append(FILE_PREFIX + context.getSaveNumber()).toFile().delete();
+            savedNumber = -1;
+        }
+    }
+
+    private void schedule(IProject project) {
+        synchronized (pendingProjects) {
+            pendingProjects.add(project);
+        }
+        scanJob.schedule();
+    }
+
+    /**
+     * Takes all projects waiting for a scan, that become the scanned projects.
+     *
+     * @return	a list of projects, empty when none
+     */
+    private List<IProject> nextPendingProjects() {
+        synchronized (pendingProjects) {
+            scannedProjects.addAll(pendingProjects);
+            pendingProjects.clear();
+            return new ArrayList<IProject>(scannedProjects);
+        }
+    }
+
+    /**
+     * Puts back projects whose scan has been canceled, without scheduling the scan job.
+     * They will be scanned by the next rescan or on next startup.
+     */
+    private void reschedule(List<IProject> projects) {
+        synchronized (pendingProjects) {
+            pendingProjects.addAll(projects);
+        }
+    }
+
+    private synchronized void add(IFile file) {
+        String projectName = file.getProject().getName();
+        Set<IFile> projectDoxyfiles = doxyfiles.get(projectName);
+        if (projectDoxyfiles == null || projectDoxyfiles.contains(file) == false) {
+            Set<IFile> newDoxyfiles = (projectDoxyfiles != null) ? new HashSet<IFile>(projectDoxyfiles) : new HashSet<IFile>();
+            newDoxyfiles.add(file);
+            doxyfiles.put(projectName, Collections.unmodifiableSet(newDoxyfiles));
+        }
+    }
+
+    private synchronized void remove(IFile file) {
+        String projectName = file.getProject().getName();
+        Set<IFile> projectDoxyfiles = doxyfiles.get(projectName);
+        if (projectDoxyfiles != null && projectDoxyfiles.contains(file)) {
+            Set<IFile> newDoxyfiles = new HashSet<IFile>(projectDoxyfiles);
+            newDoxyfiles.remove(file);
+            if (newDoxyfiles.isEmpty()) {
+                doxyfiles.remove(projectName);
+            } else {
+                doxyfiles.put(projectName, Collections.unmodifiableSet(newDoxyfiles));
+            }
+        }
+    }
+
+    /**
+     * Adds the scanned doxyfiles of a project. Known doxyfiles that still exist are kept,
+     * since they may have been added by a resource change during the scan.
+     */
+    private synchronized void addAll(IProject project, Iterable<? extends IResource> scanned) {
+        Set<IFile> newDoxyfiles = new HashSet<IFile>();
+        for (IResource resource : scanned) {
+            newDoxyfiles.add((IFile) resource);
+        }
+        for (IFile file : getDoxyfiles(project)) {
+            if (file.exists()) {
+                newDoxyfiles.add(file);
+            }
+        }
+        if (newDoxyfiles.isEmpty()) {
+            doxyfiles.remove(project.getName());
+        } else {
+            doxyfiles.put(project.getName(), Collections.unmodifiableSet(newDoxyfiles));
+        }
+    }
+
+    /**
+     * Reads the index from the given file.
+     *
+     * @return	true on success, false otherwise
+     */
+    private synchronized boolean read(File file) {
+        Map<String, Set<IFile>> readDoxyfiles = new HashMap<String, Set<IFile>>();
+        List<IProject> unscannedProjects = new ArrayList<IProject>();
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            if (FILE_HEADER.equals(reader.readLine()) == false) {
+                return false;
+            }
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith(PENDING_PREFIX)) {
+                    unscannedProjects.add(root.getProject(line.substring(PENDING_PREFIX.length())));
+                } else if (line.isEmpty() == false) {
+                    IFile doxyfile = root.getFile(Path.fromPortableString(line));
+                    Set<IFile> projectDoxyfiles = readDoxyfiles.get(doxyfile.getProject().getName());
+                    if (projectDoxyfiles == null) {
+                        projectDoxyfiles = new HashSet<IFile>();
+                        readDoxyfiles.put(doxyfile.getProject().getName(), projectDoxyfiles);
+                    }
+                    projectDoxyfiles.add(doxyfile);
+                }
+            }
+        } catch (IOException e) {
+            Plugin.getDefault().logWarning("Unable to read the doxyfile index. " + e.getMessage());
+            return false;
+        } catch (IllegalArgumentException e) {
+            Plugin.getDefault().logWarning("Invalid doxyfile index. " + e.getMessage());
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Plugin.log(e);
+                }
+            }
+        }
+        for (Map.Entry<String, Set<IFile>> entry : readDoxyfiles.entrySet()) {
+            doxyfiles.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+        for (IProject project : unscannedProjects) {
+            schedule(project);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the index to the given file. The projects whose scan has not been
+     * completed yet are written as well, so they get scanned on next startup.
+     */
+    private void write(File file) throws IOException {
+        List<IProject> unscannedProjects;
+        synchronized (pendingProjects) {
+            unscannedProjects = new ArrayList<IProject>(pendingProjects);
+            unscannedProjects.addAll(scannedProjects);
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            writer.write(FILE_HEADER);
+            writer.newLine();
+            for (IProject project : unscannedProjects) {
+                writer.write(PENDING_PREFIX + project.getName());
+                writer.newLine();
+            }
+            for (Set<IFile> projectDoxyfiles : doxyfiles.values()) {
+                for (IFile doxyfile : projectDoxyfiles) {
+                    writer.write(doxyfile.getFullPath().toPortableString());
+                    writer.newLine();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+}
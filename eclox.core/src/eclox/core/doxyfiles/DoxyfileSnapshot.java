@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Implements an immutable view of the settings of a doxyfile at a given version.
+ *
+ * Snapshots can be read from any thread without locking. They share the
+ * states of the unchanged settings with the previous snapshots, and the
+ * snapshots of included doxyfiles with all including doxyfiles.
+ *
+ * @author Andre Bossert
+ *
+ * @see Doxyfile#snapshot()
+ */
+public final class DoxyfileSnapshot {
+
+    private final IFile ifile; ///< the eclipse file of the doxyfile, or null
+    private final File file; ///< the system file of the doxyfile, or null
+    private final long version; ///< the version of the doxyfile model
+    private final Map<String, SettingState> settings; ///< the setting states by identifier, in order of appearance
+    private final List<DoxyfileSnapshot> includes; ///< the snapshots of the included doxyfiles
+    private final Map<String, Integer> includePositions; ///< the number of included snapshots preceding the local settings appearing before the last @INCLUDE
+
+    DoxyfileSnapshot(IFile ifile, File file, long version, Map<String, SettingState> settings, List<DoxyfileSnapshot> includes,
+            Map<String, Integer> includePositions) {
+        this.ifile = ifile;
+        this.file = file;
+        this.version = version;
+        this.settings = settings;
+        this.includes = includes;
+        this.includePositions = includePositions;
+    }
+
+    /**
+     * Retrieves the version of the doxyfile model the snapshot has been taken from.
+     *
+     * @return	a version number, increasing with each modification of the model
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public IFile getIFile() {
+        return ifile;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Retrieves the state of the local setting with the given identifier.
+     *
+     * @param	identifier	a string containing a setting identifier
+     *
+     * @return	the setting state or null if none
+     */
+    public SettingState getSetting(String identifier) {
+        return settings.get(identifier);
+    }
+
+    /**
+     * Retrieves the states of all local settings, in order of appearance.
+     *
+     * @return	an immutable collection of setting states
+     */
+    public Collection<SettingState> getSettings() {
+        return settings.values();
+    }
+
+    /**
+     * Retrieves the snapshots of the included doxyfiles.
+     *
+     * @return	an immutable list of snapshots
+     */
+    public List<DoxyfileSnapshot> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Retrieves the position of the given local setting among the included snapshots.
+     *
+     * @param	identifier	a string containing a setting identifier
+     *
+     * @return	the number of included snapshots preceding the setting
+     */
+    int getIncludePosition(String identifier) {
+        Integer position = includePositions.get(identifier);
+        return (position != null) ? position : includes.size();
+    }
+
+    /**
+     * Retrieves the local value of the given setting.
+     *
+     * @param	identifier	a string containing a setting identifier
+     *
+     * @return	a string containing the value or null if the setting is not defined locally
+     */
+    public String getValue(String identifier) {
+        SettingState state = settings.get(identifier);
+        return state != null ? state.getValue() : null;
+    }
+
+    /**
+     * Retrieves the effective value of the given setting, taking the included doxyfiles into account.
+     *
+     * @param	identifier	a string containing a setting identifier
+     *
+     * @return	a string containing the value, or null when the setting is nowhere defined
+     *
+     * @see Doxyfile#getEffectiveValue(String)
+     */
+    public String getEffectiveValue(String identifier) {
+        return getEffectiveValue(identifier, null);
+    }
+
+    private String getEffectiveValue(String identifier, String inheritedValue) {
+        String value = inheritedValue;
+        SettingState state = settings.get(identifier);
+        int position = (state != null) ? getIncludePosition(identifier) : includes.size();
+        for (int i = 0; i < includes.size(); ++i) {
+            if (i == position) {
+                value = apply(state, value);
+            }
+            value = includes.get(i).getEffectiveValue(identifier, value);
+        }
+        if (position == includes.size()) {
+            value = apply(state, value);
+        }
+        return value;
+    }
+
+    /**
+     * Applies the given local setting state to the value of the preceding layers.
+     */
+    private static String apply(SettingState state, String value) {
+        if (state == null) {
+            return value;
+        } else if (value != null && state.isIncrement()) {
+            return state.getValue().isEmpty() ? value : value + " " + state.getValue();
+        } else {
+            return state.getValue();
+        }
+    }
+
+    /**
+     * Retrieves the container that will receive the documentation build outputs.
+     *
+     * @return	a folder, or null when none
+     */
+    public IContainer getOutputContainer() {
+        IContainer outputContainer = null;
+        String outputValue = getEffectiveValue("OUTPUT_DIRECTORY");
+        if (outputValue != null) {
+            Path outputPath = new Path(outputValue);
+            if (outputPath.isEmpty()) {
+                if (ifile != null) {
+                    outputContainer = ifile.getParent();
+                } else {
+                    outputContainer = findContainer(file.getParentFile());
+                }
+            } else {
+                File containerFile = null;
+                if (outputPath.isAbsolute()) {
+                    containerFile = outputPath.toFile();
+                } else {
+                    if (ifile != null) {
+                        containerFile = ifile.getParent().getLocation().append(outputPath).toFile();
+                    } else {
+                        containerFile = new Path(file.getParentFile().getAbsolutePath()).append(outputPath).toFile();
+                    }
+                }
+                outputContainer = findContainer(containerFile);
+            }
+        }
+        return outputContainer;
+    }
+
+    /**
+     * Retrieves the workspace container of the given directory.
+     *
+     * @return	the container, null when the directory does not exist or is not in the workspace
+     */
+    private static IContainer findContainer(File containerFile) {
+        if (containerFile != null && containerFile.exists()) {
+            IContainer[] foundContainers = ResourcesPlugin.getWorkspace().getRoot()
+                    .findContainersForLocationURI(containerFile.toURI());
+            if (foundContainers.length >= 1) {
+                return foundContainers[0];
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles;
+
+/**
+ * Defines the interface for listeners receiving the coalesced changes of a doxyfile.
+ *
+ * @author Andre Bossert
+ */
+public interface IDoxyfileListener {
+
+    /**
+     * Notifies that a transaction on the doxyfile has been committed.
+     *
+     * @param	doxyfile	the doxyfile that changed
+     * @param	changes		the changes done during the transaction
+     */
+    void doxyfileChanged(Doxyfile doxyfile, ChangeSet changes);
+
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements the index of the source lines of a doxyfile. It maps each line of the
+ * parsed text to its offset and to the chunk that received it.
+ *
+ * Lines are split like the parser does: they are terminated by a line feed, a carriage
+ * return or both. The index gets patched in place when a region of lines is parsed again,
+ * and is guarded by the lock of the owning doxyfile.
+ *
+ * @author Andre Bossert
+ */
+final class LineIndex {
+
+    private String text; ///< the parsed text
+    private int lineCount; ///< the number of lines
+    private int[] lineStarts; ///< the offset of each line, followed by the text length
+    private Chunk[] lineChunks; ///< the chunk of each line, null for the dropped lines
+    private final Map<Chunk, int[]> chunkLineCounts = new IdentityHashMap<Chunk, int[]>(); ///< the number of lines of each chunk
+
+    /**
+     * Constructor
+     *
+     * @param	text		the parsed text
+     * @param	lineChunks	the chunk of each line, as recorded by the parser
+     */
+    LineIndex(CharSequence text, List<Chunk> lineChunks) {
+        this.text = text.toString();
+        this.lineCount = lineChunks.size();
+        this.lineChunks = lineChunks.toArray(new Chunk[lineCount]);
+        this.lineStarts = new int[lineCount + 1];
+        scanLines(text, 0, lineStarts, 0, lineCount);
+        countLines(this.lineChunks, 0, lineCount, 1);
+    }
+
+    String getText() {
+        return text;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    int getLineStart(int line) {
+        return lineStarts[line];
+    }
+
+    Chunk getChunk(int line) {
+        return lineChunks[line];
+    }
+
+    /**
+     * Retrieves the line containing the given offset.
+     *
+     * @param	offset	an offset in the text
+     *
+     * @return	a line number, starting at 0
+     */
+    int getLine(int offset) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (lineStarts[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Retrieves the first line of the run of lines of the same chunk, containing the given line.
+     */
+    int getRunStart(int line) {
+        Chunk chunk = lineChunks[line];
+        while (line > 0 && lineChunks[line - 1] == chunk) {
+            --line;
+        }
+        return line;
+    }
+
+    /**
+     * Retrieves the last line of the run of lines of the same chunk, containing the given line.
+     */
+    int getRunEnd(int line) {
+        Chunk chunk = lineChunks[line];
+        while (line + 1 < lineCount && lineChunks[line + 1] == chunk) {
+            ++line;
+        }
+        return line;
+    }
+
+    /**
+     * Tells if the chunk of the given line has all its lines in the run containing the
+     * line. This is not the case for a setting assigned several times for example.
+     *
+     * @return	true or false, false for a dropped line
+     */
+    boolean isContiguous(int line) {
+        Chunk chunk = lineChunks[line];
+        if (chunk == null) {
+            return false;
+        }
+        int[] count = chunkLineCounts.get(chunk);
+        return count != null && count[0] == getRunEnd(line) - getRunStart(line) + 1;
+    }
+
+    /**
+     * Replaces a range of lines by the lines of the parsed region of the new text.
+     * The new region starts at the offset of the first replaced line, and the text
+     * following the replaced lines must not have changed.
+     *
+     * @param	firstLine	the first replaced line
+     * @param	lastLine	the last replaced line
+     * @param	newText		the new text
+     * @param	newChunks	the chunk of each line of the new region
+     */
+    void replace(int firstLine, int lastLine, CharSequence newText, List<Chunk> newChunks) {
+        int removedCount = lastLine + 1 - firstLine;
+        int addedCount = newChunks.size();
+        int newLineCount = lineCount - removedCount + addedCount;
+        int delta = newText.length() - text.length();
+
+        countLines(lineChunks, firstLine, lastLine + 1, -1);
+
+        Chunk[] newLineChunks = new Chunk[newLineCount];
+        System.arraycopy(lineChunks, 0, newLineChunks, 0, firstLine);
+        for (int i = 0; i < addedCount; ++i) {
+            newLineChunks[firstLine + i] = newChunks.get(i);
+        }
+        System.arraycopy(lineChunks, lastLine + 1, newLineChunks, firstLine + addedCount, lineCount - lastLine - 1);
+
+        int[] newLineStarts = new int[newLineCount + 1];
+        System.arraycopy(lineStarts, 0, newLineStarts, 0, firstLine);
+        scanLines(newText, lineStarts[firstLine], newLineStarts, firstLine, addedCount);
+        for (int line = lastLine + 1; line <= lineCount; ++line) {
+            newLineStarts[line - removedCount + addedCount] = lineStarts[line] + delta;
+        }
+
+        text = newText.toString();
+        lineCount = newLineCount;
+        lineChunks = newLineChunks;
+        lineStarts = newLineStarts;
+        countLines(lineChunks, firstLine, firstLine + addedCount, 1);
+    }
+
+    /**
+     * Scans the given number of lines from the given offset and stores their offsets.
+     * The offset following the last line is stored as well.
+     */
+    private static void scanLines(CharSequence text, int start, int[] lineStarts, int firstLine, int count) {
+        int length = text.length();
+        for (int line = firstLine; line < firstLine + count; ++line) {
+            lineStarts[line] = start;
+            int end = start;
+            char c = 0;
+            while (end < length && (c = text.charAt(end)) != '\n' && c != '\r') {
+                ++end;
+            }
+            if (c == '\r' && end + 1 < length && text.charAt(end + 1) == '\n') {
+                ++end;
+            }
+            start = Math.min(end + 1, length);
+        }
+        lineStarts[firstLine + count] = start;
+    }
+
+    /**
+     * Adds the given increment to the line count of the chunks of the given lines.
+     */
+    private void countLines(Chunk[] chunks, int from, int to, int increment) {
+        for (int line = from; line < to; ++line) {
+            Chunk chunk = chunks[line];
+            if (chunk != null) {
+                int[] count = chunkLineCounts.get(chunk);
+                if (count == null) {
+                    chunkLineCounts.put(chunk, new int[] { increment });
+                } else if ((count[0] += increment) == 0) {
+                    chunkLineCounts.remove(chunk);
+                }
+            }
+        }
+    }
+
+}
@@ -12,12 +12,15 @@
  *     Andre Bossert - #215: add support for line separator
  *                   - #212: add support for multiple lines (lists) concatenated by backslash (\)
  *                   - #214: add support for TAG and VALUE format
+ *                   - build the content string in linear time
+ *                   - compare contents to reuse raw texts on reload
  *
  ******************************************************************************/
 
 package eclox.core.doxyfiles;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import eclox.core.ListSeparateMode;
@@ -45,17 +48,26 @@ public class RawText extends Chunk {
         content.add(text);
     }
 
+    /**
+     * Retrieves the lines of the raw text.
+     *
+     * @return  an unmodifiable list of strings
+     */
+    public List<String> getLines() {
+        return Collections.unmodifiableList(content);
+    }
+
     /**
      * Retrieves the raw text content as a string.
      *
      * @return	a string containing the raw text content
      */
     public String getString(String lineSeparator, ListSeparateMode listSepMode, TagFormat tagFormat) {
-        String ret = new String();
+        StringBuilder ret = new StringBuilder();
         for(String line : content) {
-            ret += line + lineSeparator;
+            ret.append(line).append(lineSeparator);
         }
-        return ret;
+        return ret.toString();
     }
 
 }
@@ -8,20 +8,42 @@
  *
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
+ *     Andre Bossert - query the workspace doxyfile index instead of walking resources
+ *                   - added a parallel scan mode for large workspaces
  *
  ******************************************************************************/
 
 package eclox.core.doxyfiles;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
 import org.eclipse.core.resources.IResourceVisitor;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import eclox.core.Plugin;
 
 /**
  * Implements a resource collector that will search for available doxyfiles
@@ -31,6 +53,91 @@ import org.eclipse.core.runtime.CoreException;
  */
 public class ResourceCollector implements IResourceVisitor {
 
+    /**
+     * Implements the state shared by the tasks of a parallel scan.
+     */
+    private static class ParallelScan {
+
+        final Set<IPath> prunedPaths; ///< the full paths of the folders not to scan
+        final IProgressMonitor monitor; ///< the monitor telling if the scan has been canceled, or null
+        final Map<String, Boolean> doxyfileNames = new ConcurrentHashMap<String, Boolean>(); ///< tells for each seen file name if it is a doxyfile name
+        final Queue<IResource> doxyfiles = new ConcurrentLinkedQueue<IResource>(); ///< the found doxyfiles
+        final Queue<CoreException> errors = new ConcurrentLinkedQueue<CoreException>(); ///< the errors raised by the tasks
+
+        ParallelScan(Set<IPath> prunedPaths, IProgressMonitor monitor) {
+            this.prunedPaths = prunedPaths;
+            this.monitor = monitor;
+        }
+
+        boolean isCanceled() {
+            return monitor != null && monitor.isCanceled();
+        }
+
+        boolean isDoxyfileName(String name) {
+            Boolean result = doxyfileNames.get(name);
+            if (result == null) {
+                result = Boolean.valueOf(Doxyfile.isDoxyfileName(name));
+                doxyfileNames.put(name, result);
+            }
+            return result.booleanValue();
+        }
+
+        boolean isPruned(IResourceProxy proxy) {
+            return proxy.isDerived() || (prunedPaths.isEmpty() == false && prunedPaths.contains(proxy.requestFullPath()));
+        }
+    }
+
+    /**
+     * Implements the task scanning a container. The members of the container are visited
+     * through resource proxies, and each sub-folder is forked as a task of its own.
+     */
+    private static class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IResource container; ///< the scanned container
+        private final ParallelScan scan; ///< the shared scan state
+
+        ScanTask(IResource container, ParallelScan scan) {
+            this.container = container;
+            this.scan = scan;
+        }
+
+        protected void compute() {
+            final List<ScanTask> subTasks = new ArrayList<ScanTask>();
+            try {
+                container.accept(new IResourceProxyVisitor() {
+
+                    public boolean visit(IResourceProxy proxy) {
+                        if (scan.isCanceled()) {
+                            return false;
+                        }
+                        switch (proxy.getType()) {
+                        case IResource.FILE:
+                            if (scan.isDoxyfileName(proxy.getName())) {
+                                scan.doxyfiles.add(proxy.requestResource());
+                            }
+                            return false;
+                        case IResource.FOLDER:
+                            if (proxy.requestFullPath().equals(container.getFullPath())) {
+                                return true;
+                            }
+                            if (scan.isPruned(proxy) == false) {
+                                subTasks.add(new ScanTask(proxy.requestResource(), scan));
+                            }
+                            return false;
+                        default:
+                            return true;
+                        }
+                    }
+                }, IResource.NONE);
+            } catch (CoreException e) {
+                scan.errors.add(e);
+            }
+            invokeAll(subTasks);
+        }
+    }
+
     /**
      * a collection of all collected resources
      */
@@ -46,18 +153,159 @@ public class ResourceCollector implements IResourceVisitor {
     }
 
     /**
-     * Runs a collector from the given root resource.
+     * Runs a collector from the given root resource. The doxyfiles are taken from the
+     * workspace doxyfile index when it is ready for that resource, otherwise the
+     * resources get walked.
      *
      * @param	resource	a resource to search for doxyfiles
      *
      * @return  a resource collector containing collected doxfiles
      */
     public static ResourceCollector run(IResource root) throws CoreException {
+        DoxyfileIndex index = (Plugin.getDefault() != null) ? Plugin.getDefault().getDoxyfileIndex() : null;
+        if (index != null && index.isReady(root)) {
+            ResourceCollector collector = new ResourceCollector();
+            collector.m_doxyfiles.addAll(index.getDoxyfiles(root));
+            return collector;
+        } else {
+            return scan(root);
+        }
+    }
+
+    /**
+     * Runs a collector walking the given root resource.
+     *
+     * @param	resource	a resource to search for doxyfiles
+     *
+     * @return  a resource collector containing collected doxfiles
+     */
+    public static ResourceCollector scan(IResource root) throws CoreException {
         ResourceCollector collector = new ResourceCollector();
         root.accept(collector);
         return collector;
     }
 
+    /**
+     * Runs a collector walking the given root resources in parallel, using one thread per
+     * available processor. Folders get visited concurrently through resource proxies, so
+     * resource handles are only created for the folders and the found doxyfiles.
+     *
+     * Derived folders and the given pruned folders are not walked.
+     *
+     * @param	roots		the resources to search for doxyfiles
+     * @param	prunedPaths	the full paths of the folders to skip, for example the doxygen output folders
+     * @param	monitor		a progress monitor checked for cancellation, or null
+     *
+     * @return  a resource collector containing collected doxfiles, sorted by path
+     *
+     * @throws	OperationCanceledException	when the monitor has been canceled
+     *
+     * @see #getOutputPaths(Collection)
+     */
+    public static ResourceCollector scanParallel(IResource[] roots, Set<IPath> prunedPaths, IProgressMonitor monitor) throws CoreException {
+        ParallelScan scan = new ParallelScan(prunedPaths, monitor);
+        List<ScanTask> tasks = new ArrayList<ScanTask>();
+        for (IResource root : roots) {
+            if (root.getType() == IResource.ROOT) {
+                for (IResource project : ((IContainer) root).members()) {
+                    tasks.add(new ScanTask(project, scan));
+                }
+            } else if (root.getType() == IResource.FILE) {
+                if (scan.isDoxyfileName(root.getName())) {
+                    scan.doxyfiles.add(root);
+                }
+            } else {
+                tasks.add(new ScanTask(root, scan));
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (ScanTask task : tasks) {
+                pool.execute(task);
+            }
+            for (ScanTask task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (scan.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+        if (scan.errors.isEmpty() == false) {
+            throw scan.errors.peek();
+        }
+
+        List<IResource> doxyfiles = new ArrayList<IResource>();
+        for (IResource doxyfile : scan.doxyfiles) {
+            if (doxyfile.isAccessible()) {
+                doxyfiles.add(doxyfile);
+            }
+        }
+        Collections.sort(doxyfiles, new Comparator<IResource>() {
+
+            public int compare(IResource first, IResource second) {
+                return first.getFullPath().toString().compareTo(second.getFullPath().toString());
+            }
+        });
+        ResourceCollector collector = new ResourceCollector();
+        collector.m_doxyfiles.addAll(doxyfiles);
+        return collector;
+    }
+
+    /**
+     * Runs a collector walking the given root resource in parallel.
+     *
+     * @param	root	a resource to search for doxyfiles
+     *
+     * @return  a resource collector containing collected doxfiles, sorted by path
+     *
+     * @see #scanParallel(IResource[], Set, IProgressMonitor)
+     */
+    public static ResourceCollector scanParallel(IResource root) throws CoreException {
+        return scanParallel(new IResource[] { root }, Collections.<IPath>emptySet(), null);
+    }
+
+    /**
+     * Retrieves the full paths of the output folders of the given doxyfiles, that need
+     * not to be scanned for doxyfiles. Output folders containing one of the doxyfiles,
+     * like the folder of a doxyfile without output directory, are left out.
+     *
+     * @param	doxyfiles	known doxyfiles
+     *
+     * @return	a set of folder paths
+     */
+    public static Set<IPath> getOutputPaths(Collection<? extends IResource> doxyfiles) {
+        Set<IPath> outputPaths = new HashSet<IPath>();
+        for (IResource resource : doxyfiles) {
+            if (resource.isAccessible() == false) {
+                continue;
+            }
+            try {
+                Doxyfile doxyfile = new Doxyfile((IFile) resource, null);
+                doxyfile.load();
+                IContainer outputContainer = doxyfile.getOutputContainer();
+                if (outputContainer != null && outputContainer.getType() == IResource.FOLDER) {
+                    outputPaths.add(outputContainer.getFullPath());
+                }
+            } catch (CoreException | IOException e) {
+                Plugin.getDefault().logWarning("Unable to get the output folder of " + resource.getFullPath() + ". " + e.getMessage());
+            }
+        }
+        for (Iterator<IPath> i = outputPaths.iterator(); i.hasNext();) {
+            IPath outputPath = i.next();
+            for (IResource doxyfile : doxyfiles) {
+                if (outputPath.isPrefixOf(doxyfile.getFullPath())) {
+                    i.remove();
+                    break;
+                }
+            }
+        }
+        return outputPaths;
+    }
+
     /**
      * @see org.eclipse.core.resources.IResourceVisitor#visit(org.eclipse.core.resources.IResource)
      */
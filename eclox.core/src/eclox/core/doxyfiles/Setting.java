@@ -14,23 +14,29 @@
  *                   - #212: add support for multiple lines (lists) concatenated by backslash (\)
  *                   - #214: add support for TAG and VALUE format
  *                   - #215: add support for line separator
+ *                   - accumulate continued and incremented values in linear time
+ *                   - read default properties from the shared setting schema
+ *                   - cache the tokenized value
+ *                   - notify listeners through the transactions of the owning doxyfile
+ *                   - moved the listeners to the event bus of the owning doxyfile
+ *                   - provide immutable states for doxyfile snapshots
+ *                   - update in place from a reloaded setting
  *
  ******************************************************************************/
 
 package eclox.core.doxyfiles;
 
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Set;
-import java.util.Vector;
-import java.util.Properties;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import eclox.core.ListSeparateMode;
-import eclox.core.Plugin;
 import eclox.core.TagFormat;
 import eclox.core.doxyfiles.Chunk;
 
@@ -48,25 +54,20 @@ public class Setting extends Chunk {
 
     private static String fixedLinePrefix = new String("                         ");
 
-    /**
-     * The default setting properties.
-     */
-    private static Properties defaultProperties;
-
     /**
      * A string containing the node identifier.
      */
     private final String identifier;
 
     /**
-     * A string containing the node identifier.
+     * A string containing the spaces between identifier and operator.
      */
-    private final String spaces;
+    private String spaces;
 
     /**
-     * A collection with all attached listeners
+     * The schema describing the setting (shared by all settings with the same identifier).
      */
-    private Set<ISettingListener> listeners = new HashSet<ISettingListener>();
+    private final SettingSchema schema;
 
     /**
      * The string containing the operator (= or +=).
@@ -76,7 +77,7 @@ public class Setting extends Chunk {
     /**
      * The string containing the setting value.
      */
-    private String value;
+    private volatile String value;
 
     /**
      * The boolean telling if the setting assignment is continued on multiple line.
@@ -84,9 +85,24 @@ public class Setting extends Chunk {
     private boolean continued;
 
     /**
-     * The setting local properties.
+     * The immutable list of value tokens, computed on first use and reset when the value changes.
+     */
+    private volatile List<String> tokens;
+
+    /**
+     * The immutable state of the setting, created on first use and reset on each modification.
+     */
+    private SettingState state;
+
+    /**
+     * The builder collecting value fragments while the setting is parsed, null otherwise.
      */
-    private Properties properties = new Properties();
+    private StringBuilder pendingValue;
+
+    /**
+     * The setting local properties, created on first use.
+     */
+    private Map<String, String> properties;
 
     /**
      * Defines the assignment operator.
@@ -118,38 +134,6 @@ public class Setting extends Chunk {
      */
     public static final String TYPE = "type";
 
-    /**
-     * Initializes all setting default properties.
-     */
-    private static void initDefaultProperties() {
-        // Ensures that properties have been loaded.
-        if (defaultProperties == null) {
-            try {
-                InputStream propertiesInput = Plugin.getResourceAsStream("/misc/setting-properties.txt");
-                defaultProperties = new Properties();
-                if (propertiesInput != null)
-                    defaultProperties.load(propertiesInput);
-            } catch (Throwable throwable) {
-                Plugin.log(throwable);
-            }
-        }
-    }
-
-    /**
-     * Retrieves the specified default property given a setting.
-     *
-     * @param   setting     a setting instance
-     * @param   property    a string containing the name of the property to retrieve.
-     *
-     * @return  a string containing the desired property value or null when
-     *          no such property exists
-     */
-    private static String getDefaultPropertyValue(Setting setting, String property) {
-        initDefaultProperties();
-        String propertyIdentifier = setting.getIdentifier() + "." + property;
-        return defaultProperties.getProperty(propertyIdentifier);
-    }
-
     /**
      * Constructor.
      *
@@ -161,6 +145,7 @@ public class Setting extends Chunk {
      */
     public Setting(String identifier, String spaces, String value, String operator, boolean continued) {
         this.identifier = new String(identifier);
+        this.schema = SettingSchema.get(identifier);
         this.spaces = new String(spaces);
         this.value = new String(value);
         this.operator = new String(operator);
@@ -168,12 +153,19 @@ public class Setting extends Chunk {
     }
 
     /**
-     * Attaches a new setting listener instance.
+     * Attaches a new setting listener instance, on the event bus of the owning doxyfile.
+     * Settings not owned by a doxyfile do not notify any listener.
      *
      * @param	listener	a new setting listener instance
+     *
+     * @deprecated	subscribe to the event bus of the doxyfile instead
      */
+    @Deprecated
     public void addSettingListener(ISettingListener listener) {
-        this.listeners.add(listener);
+        Doxyfile owner = getOwner();
+        if (owner != null) {
+            owner.getEventBus().subscribe(identifier, listener);
+        }
     }
 
     /**
@@ -185,6 +177,15 @@ public class Setting extends Chunk {
         return this.identifier;
     }
 
+    /**
+     * Retrieves the schema describing the setting.
+     *
+     * @return  the setting schema
+     */
+    public SettingSchema getSchema() {
+        return schema;
+    }
+
     /**
      * Retrieves the value of the specified property.
      *
@@ -193,11 +194,13 @@ public class Setting extends Chunk {
      * @return  a string containing the property value or null when the property was not found
      */
     public String getProperty(String property) {
-        if (properties.containsKey(property)) {
-            return properties.getProperty(property);
-        } else {
-            return getDefaultPropertyValue(this, property);
+        if (properties != null) {
+            String value = properties.get(property);
+            if (value != null) {
+                return value;
+            }
         }
+        return schema.getProperty(property);
     }
 
     /**
@@ -235,13 +238,64 @@ public class Setting extends Chunk {
      * @return	the collection that received the value parts
      */
     public Collection<String> getSplittedValue(Collection<String> collection) {
+        collection.addAll(getTokens());
+        return collection;
+    }
+
+    /**
+     * Retrieves the value tokens, that are the value parts separated by spaces or enclosed in quotes.
+     *
+     * @return  an immutable list of strings
+     */
+    public List<String> getTokens() {
+        List<String> result = tokens;
+        if (result == null) {
+            List<String> list = new ArrayList<String>();
+            splitValue(value, list);
+            result = Collections.unmodifiableList(list);
+            tokens = result;
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the number of value tokens, allowing to iterate over the tokens without any allocation.
+     *
+     * @return  the token count
+     *
+     * @see     getToken
+     */
+    public int getTokenCount() {
+        return getTokens().size();
+    }
+
+    /**
+     * Retrieves the value token at the given index.
+     *
+     * @param   index   the index of a token
+     *
+     * @return  a string containing the token
+     */
+    public String getToken(int index) {
+        return getTokens().get(index);
+    }
+
+    /**
+     * Splits the given value into its parts, that are separated by spaces or enclosed in quotes.
+     *
+     * @param value         a string containing a setting value
+     * @param collection    a collection instance that will receive the value parts
+     *
+     * @return  the collection that received the value parts
+     */
+    public static Collection<String> splitValue(String value, Collection<String> collection) {
         Matcher valueMatcher = valuePattern.matcher(value);
         while (valueMatcher.find() == true) {
-            String value = valueMatcher.group(1);
-            if (value == null) {
-                value = valueMatcher.group(2).trim();
+            String part = valueMatcher.group(1);
+            if (part == null) {
+                part = valueMatcher.group(2).trim();
             }
-            collection.add(value);
+            collection.add(part);
         }
         return collection;
     }
@@ -254,20 +308,22 @@ public class Setting extends Chunk {
      * @return	a boolean
      */
     public boolean hasProperty(String property) {
-        if (properties.containsKey(property)) {
-            return true;
-        } else {
-            return getDefaultPropertyValue(this, property) != null;
-        }
+        return getProperty(property) != null;
     }
 
     /**
      * Detaches a new setting listener instance.
      *
      * @param	listener	a attached setting listener instance
+     *
+     * @deprecated	unsubscribe from the event bus of the doxyfile instead
      */
+    @Deprecated
     public void removeSettingListener(ISettingListener listener) {
-        this.listeners.remove(listener);
+        Doxyfile owner = getOwner();
+        if (owner != null) {
+            owner.getEventBus().unsubscribe(identifier, listener);
+        }
     }
 
     /**
@@ -278,16 +334,14 @@ public class Setting extends Chunk {
      */
     public void setProperty(String property, String value) {
         // Updates the given property.
-        properties.setProperty(property, value);
-
-        // Walks through the attached listeners and notify them.
-        Iterator<ISettingListener> i = this.listeners.iterator();
-        while (i.hasNext() == true) {
-            ISettingListener listener = (ISettingListener) i.next();
-            if (listener instanceof ISettingPropertyListener) {
-                ISettingPropertyListener propertyListener = (ISettingPropertyListener) listener;
-                propertyListener.settingPropertyChanged(this, property);
-            }
+        if (properties == null) {
+            properties = new HashMap<String, String>(4);
+        }
+        String oldValue = properties.put(property, value);
+
+        // Notifies the observers, unless nothing changed.
+        if (value.equals(oldValue) == false) {
+            firePropertyChangedEvent(property, false);
         }
     }
 
@@ -297,18 +351,8 @@ public class Setting extends Chunk {
      * @param	property		a string containing a property name
      */
     public void removeProperty(String property) {
-        if (properties.containsKey(property)) {
-            properties.remove(property);
-
-            // Walks through the attached listeners and notify them.
-            Iterator<ISettingListener> i = this.listeners.iterator();
-            while (i.hasNext() == true) {
-                ISettingListener listener = (ISettingListener) i.next();
-                if (listener instanceof ISettingPropertyListener) {
-                    ISettingPropertyListener propertyListener = (ISettingPropertyListener) listener;
-                    propertyListener.settingPropertyRemoved(this, property);
-                }
-            }
+        if (properties != null && properties.remove(property) != null) {
+            firePropertyChangedEvent(property, true);
         }
     }
 
@@ -318,7 +362,11 @@ public class Setting extends Chunk {
      * @param   operator   a string representing a operator to set
      */
     public void setOperator(String operator) {
-        this.operator = new String(operator);
+        synchronized (this) {
+            this.operator = new String(operator);
+            this.state = null;
+        }
+        stateChanged();
     }
 
     /**
@@ -327,17 +375,86 @@ public class Setting extends Chunk {
      * @param	value	a string representing a value to set
      */
     public void setValue(String value) {
-        this.value = new String(value);
+        synchronized (this) {
+            this.value = value;
+            this.tokens = null;
+            this.state = null;
+            this.pendingValue = null;
+        }
         fireValueChangedEvent();
     }
 
+    /**
+     * Starts the accumulation of a new value. The given fragment replaces the current
+     * value once the accumulation gets ended.
+     *
+     * @param   fragment    a string containing the first value fragment
+     *
+     * @see     endValue
+     */
+    public void beginValue(String fragment) {
+        if (pendingValue == null) {
+            pendingValue = new StringBuilder(fragment);
+        } else {
+            pendingValue.setLength(0);
+            pendingValue.append(fragment);
+        }
+    }
+
+    /**
+     * Appends a value fragment, separated by a space. If no accumulation has been
+     * started, the accumulation continues the current value.
+     *
+     * @param   fragment    a string containing the value fragment to append
+     *
+     * @see     endValue
+     */
+    public void appendValue(String fragment) {
+        if (pendingValue == null) {
+            pendingValue = new StringBuilder(value);
+        }
+        pendingValue.append(' ').append(fragment);
+    }
+
+    /**
+     * Tells if the setting is accumulating value fragments.
+     *
+     * @return  true or false
+     */
+    public boolean isValuePending() {
+        return pendingValue != null;
+    }
+
+    /**
+     * Ends the accumulation of value fragments and assigns the accumulated value.
+     * Observers only get notified when the value really changed.
+     */
+    public void endValue() {
+        if (pendingValue != null) {
+            String newValue = pendingValue.toString();
+            pendingValue = null;
+            if (newValue.equals(value) == false) {
+                synchronized (this) {
+                    value = newValue;
+                    tokens = null;
+                    state = null;
+                }
+                fireValueChangedEvent();
+            }
+        }
+    }
+
     /**
      * Updates the continued flag of the setting.
      *
      * @param   continued   a boolean representing a continued flag to set
      */
     public void setContinued(boolean continued) {
-        this.continued = continued;
+        synchronized (this) {
+            this.continued = continued;
+            this.state = null;
+        }
+        stateChanged();
     }
 
     /**
@@ -347,8 +464,10 @@ public class Setting extends Chunk {
      * @param compounds	a collection of objects representing compounds of the new value
      */
     public void setValue(Collection<?> compounds) {
-        // Resets the managed value string.
-        value = new String();
+        // Rebuilds the value string and, as long as splitting the value gives
+        // back the same compounds, the tokens.
+        StringBuilder builder = new StringBuilder();
+        List<String> newTokens = new ArrayList<String>(compounds.size());
         // Walks through the comounds to rebuild the value.
         Iterator<?> i = compounds.iterator();
         while (i.hasNext()) {
@@ -359,26 +478,58 @@ public class Setting extends Chunk {
             if (compound.length() == 0) {
                 continue;
             } else if (compound.indexOf(' ') != -1) {
-                value = value.concat("\"" + compound + "\" ");
+                builder.append('"').append(compound).append("\" ");
+            } else {
+                builder.append(compound).append(' ');
+            }
+            if (newTokens != null && isTokenSafe(compound)) {
+                newTokens.add(compound);
             } else {
-                value = value.concat(compound + " ");
+                newTokens = null;
             }
         }
+        synchronized (this) {
+            value = builder.toString();
+            tokens = (newTokens != null) ? Collections.unmodifiableList(newTokens) : null;
+            state = null;
+            pendingValue = null;
+        }
 
         // Notifies all observers.
         fireValueChangedEvent();
     }
 
+    /**
+     * Tells if the given trimmed compound is split back into the same single token once
+     * written into a value. Quotes, line terminators inside of quoted compounds and
+     * a backslash escaping the closing quote are not handled by the value pattern.
+     */
+    private static boolean isTokenSafe(String compound) {
+        if (compound.indexOf('"') != -1) {
+            return false;
+        }
+        if (compound.indexOf(' ') != -1) {
+            if (compound.charAt(compound.length() - 1) == '\\') {
+                return false;
+            }
+            for (int i = 0; i < compound.length(); ++i) {
+                char c = compound.charAt(i);
+                if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private String toString_ListSeparated(String linePrefix, String lineSeparator) {
-        String valueOut = new String();
-        Collection<String> compounds = new Vector<String>();
-        getSplittedValue(compounds);
+        StringBuilder valueOut = new StringBuilder();
+        List<String> compounds = getTokens();
         // Walks through the comounds to rebuild the value.
-        Iterator<?> i = compounds.iterator();
         boolean first = true;
-        while (i.hasNext()) {
+        for (int i = 0; i < compounds.size(); ++i) {
             // Retrieves the current compound.
-            String compound = i.next().toString();
+            String compound = compounds.get(i);
             // Removes any leading and tralling spaces and manage the insertion.
             compound = compound.trim();
             if (compound.length() == 0) {
@@ -392,12 +543,12 @@ public class Setting extends Chunk {
                 if (first) {
                     first = false;
                 } else {
-                    valueOut = valueOut.concat(" \\" + lineSeparator + linePrefix);
+                    valueOut.append(" \\").append(lineSeparator).append(linePrefix);
                 }
-                valueOut = valueOut.concat(quotes + compound + quotes);
+                valueOut.append(quotes).append(compound).append(quotes);
             }
         }
-        return valueOut;
+        return valueOut.toString();
     }
 
     private String toString_ListSeparate(String lineSeparator, TagFormat tagFormat) {
@@ -465,22 +616,76 @@ public class Setting extends Chunk {
     }
 
     /**
-     * Notifies all observers that the setting value has changed.
+     * Updates the setting in place with the assignment of the given setting, that
+     * has been freshly parsed for the same identifier. Observers only get notified
+     * when the value really changed, and the state is kept when nothing changed.
+     *
+     * @param   source  a setting with the same identifier
+     */
+    void update(Setting source) {
+        synchronized (this) {
+            if (spaces.equals(source.spaces) == false || operator.equals(source.operator) == false || continued != source.continued) {
+                spaces = source.spaces;
+                operator = source.operator;
+                continued = source.continued;
+                state = null;
+            }
+        }
+        if (source.value.equals(value) == false) {
+            setValue(source.value);
+        }
+    }
+
+    /**
+     * Retrieves the immutable state of the setting. The same state is returned
+     * as long as the setting does not get modified.
+     *
+     * @return  the current setting state
+     */
+    public synchronized SettingState getState() {
+        if (state == null) {
+            state = new SettingState(identifier, operator, value, continued);
+        }
+        return state;
+    }
+
+    /**
+     * Notifies the owning doxyfile that the setting state has changed
+     * without any value change.
+     */
+    private void stateChanged() {
+        Doxyfile owner = getOwner();
+        if (owner != null) {
+            owner.modelChanged();
+        }
+    }
+
+    /**
+     * Notifies all observers that the setting value has changed, through
+     * the transaction of the owning doxyfile.
      */
     private void fireValueChangedEvent() {
-        Iterator<ISettingListener> i = listeners.iterator();
-        while (i.hasNext() == true) {
-            ISettingListener listener = (ISettingListener) i.next();
-            if (listener instanceof ISettingValueListener) {
-                ISettingValueListener valueListener = (ISettingValueListener) listener;
-                valueListener.settingValueChanged(this);
-            }
+        Doxyfile owner = getOwner();
+        if (owner != null) {
+            owner.settingValueChanged(this);
+        }
+    }
+
+    /**
+     * Notifies all observers that a setting property has changed, through
+     * the transaction of the owning doxyfile.
+     */
+    private void firePropertyChangedEvent(String property, boolean removed) {
+        Doxyfile owner = getOwner();
+        if (owner != null) {
+            owner.settingPropertyChanged(this, property, removed);
         }
     }
 
     public String getTextLabel(String propDirty) {
         String columnText;
-        columnText = hasProperty(Setting.TEXT) ? getProperty(Setting.TEXT) : getIdentifier();
+        columnText = getProperty(Setting.TEXT);
+        columnText = (columnText != null) ? columnText : getIdentifier();
         columnText = hasProperty(propDirty) ? ("*").concat(columnText) : columnText;
         return columnText;
     }
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import eclox.core.Plugin;
+
+/**
+ * Implements the immutable description of a setting, as provided by the
+ * setting properties file of the plugin (text, group, type and note).
+ *
+ * The schema entries are loaded once into a registry indexed by setting
+ * identifier and shared by all settings with the same identifier.
+ *
+ * @author Andre Bossert
+ */
+public final class SettingSchema {
+
+    /**
+     * the schema of settings not described by the properties file
+     */
+    private static final SettingSchema UNKNOWN = new SettingSchema(null, null, null, null, null);
+
+    private final String identifier; ///< the setting identifier
+    private final String text; ///< the setting text (label)
+    private final String group; ///< the setting group name
+    private final String type; ///< the setting type
+    private final String note; ///< the setting documentation
+
+    /**
+     * Implements the lazily initialized registry of all schema entries.
+     */
+    private static class Registry {
+        static final Map<String, SettingSchema> entries = load();
+    }
+
+    /**
+     * Loads all schema entries from the setting properties file.
+     *
+     * @return	a map containing the schema entries by identifier
+     */
+    private static Map<String, SettingSchema> load() {
+        Properties properties = new Properties();
+        try {
+            InputStream propertiesInput = Plugin.getResourceAsStream("/misc/setting-properties.txt");
+            if (propertiesInput != null) {
+                try {
+                    properties.load(propertiesInput);
+                } finally {
+                    propertiesInput.close();
+                }
+            }
+        } catch (Throwable throwable) {
+            Plugin.log(throwable);
+        }
+
+        // Collects the identifiers of all described settings.
+        Map<String, SettingSchema> entries = new HashMap<String, SettingSchema>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            if (dot > 0) {
+                entries.put(key.substring(0, dot), UNKNOWN);
+            }
+        }
+        for (Map.Entry<String, SettingSchema> entry : entries.entrySet()) {
+            String identifier = entry.getKey();
+            entry.setValue(new SettingSchema(identifier,
+                    properties.getProperty(identifier + "." + Setting.TEXT),
+                    properties.getProperty(identifier + "." + Setting.GROUP),
+                    properties.getProperty(identifier + "." + Setting.TYPE),
+                    properties.getProperty(identifier + "." + Setting.NOTE)));
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Retrieves the schema for the given setting identifier.
+     *
+     * @param	identifier	a string containing a setting identifier
+     *
+     * @return	the schema entry, with no property defined when the setting is unknown
+     */
+    public static SettingSchema get(String identifier) {
+        SettingSchema schema = Registry.entries.get(identifier);
+        return schema != null ? schema : UNKNOWN;
+    }
+
+    private SettingSchema(String identifier, String text, String group, String type, String note) {
+        this.identifier = identifier;
+        this.text = text;
+        this.group = group;
+        this.type = type;
+        this.note = note;
+    }
+
+    /**
+     * Retrieves the value of the given property.
+     *
+     * @param	property	a string containing a property name (see Setting.TEXT, GROUP, TYPE and NOTE)
+     *
+     * @return	a string containing the property value or null when not defined
+     */
+    public String getProperty(String property) {
+        switch (property) {
+        case Setting.TEXT:
+            return text;
+        case Setting.GROUP:
+            return group;
+        case Setting.TYPE:
+            return type;
+        case Setting.NOTE:
+            return note;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Tells if the schema describes a setting known by the plugin.
+     *
+     * @return	true or false
+     */
+    public boolean isKnown() {
+        return identifier != null;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+}
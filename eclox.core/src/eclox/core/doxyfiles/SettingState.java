@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles;
+
+/**
+ * Implements the immutable state of a setting at a given time.
+ *
+ * A setting keeps its current state until it gets modified, so unchanged settings
+ * share the same state instance between all snapshots of a doxyfile.
+ *
+ * @author Andre Bossert
+ *
+ * @see Setting#getState()
+ * @see DoxyfileSnapshot
+ */
+public final class SettingState {
+
+    private final String identifier; ///< the setting identifier
+    private final String operator; ///< the setting operator (= or +=)
+    private final String value; ///< the setting value
+    private final boolean continued; ///< tells if the setting assignment is continued on multiple lines
+
+    SettingState(String identifier, String operator, String value, boolean continued) {
+        this.identifier = identifier;
+        this.operator = operator;
+        this.value = value;
+        this.continued = continued;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public boolean isContinued() {
+        return continued;
+    }
+
+    /**
+     * Tells if the setting is an increment (+=) of an inherited value.
+     *
+     * @return	true or false
+     */
+    public boolean isIncrement() {
+        return Setting.INCREMENT.equals(operator);
+    }
+
+}
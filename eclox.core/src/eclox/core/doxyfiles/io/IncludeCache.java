@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.CoreException;
+
+import eclox.core.Plugin;
+import eclox.core.doxyfiles.Doxyfile;
+import eclox.core.doxyfiles.Setting;
+
+/**
+ * Implements a process-wide cache of the parsed included doxyfiles.
+ *
+ * Included doxyfiles are keyed by their canonical path and only get parsed
+ * again when their modification stamp, their length or one of their own
+ * included doxyfiles changed. So a base configuration included by many
+ * doxyfiles is only parsed once per change.
+ *
+ * The cached doxyfiles are shared between all including doxyfiles and must
+ * be considered as read-only.
+ *
+ * @author Andre Bossert
+ */
+public class IncludeCache {
+
+    /**
+     * Implements a cache entry.
+     */
+    private static class Entry {
+        final long lastModified; ///< the modification stamp of the file when parsed
+        final long length; ///< the length of the file when parsed
+        final Doxyfile doxyfile; ///< the parsed doxyfile
+
+        Entry(long lastModified, long length, Doxyfile doxyfile) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.doxyfile = doxyfile;
+        }
+    }
+
+    /**
+     * the cached entries, keyed by canonical path
+     */
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * the canonical paths of the doxyfiles being loaded by the current thread, used to detect include cycles
+     */
+    private static final ThreadLocal<Set<String>> loading = new ThreadLocal<Set<String>>() {
+        @Override
+        protected Set<String> initialValue() {
+            return new HashSet<String>();
+        }
+    };
+
+    /**
+     * Resolves the included doxyfiles of the given doxyfile.
+     *
+     * Included files get searched relatively to the directory of the doxyfile first,
+     * then in the directories given by the @INCLUDE_PATH directives, like doxygen
+     * does when started in the doxyfile's directory.
+     *
+     * @param	doxyfile	a doxyfile whose @INCLUDE directives have been parsed
+     *
+     * @return	a list containing the included doxyfiles in order of appearance
+     */
+    public static List<Doxyfile> resolve(Doxyfile doxyfile) {
+        List<Doxyfile> included = new ArrayList<Doxyfile>();
+        for (List<Doxyfile> directiveIncludes : resolveEach(doxyfile)) {
+            included.addAll(directiveIncludes);
+        }
+        return included;
+    }
+
+    /**
+     * Resolves the included doxyfiles of each @INCLUDE directive of the given doxyfile.
+     *
+     * @param	doxyfile	a doxyfile whose @INCLUDE directives have been parsed
+     *
+     * @return	a list containing, for each directive in order of appearance, the list of the included doxyfiles
+     *
+     * @see #resolve(Doxyfile)
+     */
+    public static List<List<Doxyfile>> resolveEach(Doxyfile doxyfile) {
+        List<String> includes = doxyfile.getIncludes();
+        if (includes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        File directory = doxyfile.getDirectory();
+        List<File> searchPath = new ArrayList<File>();
+        for (String includePath : doxyfile.getIncludePaths()) {
+            for (String path : Setting.splitValue(includePath, new ArrayList<String>())) {
+                searchPath.add(makeAbsolute(directory, path));
+            }
+        }
+
+        List<List<Doxyfile>> included = new ArrayList<List<Doxyfile>>(includes.size());
+        for (String include : includes) {
+            List<Doxyfile> directiveIncludes = new ArrayList<Doxyfile>(1);
+            included.add(directiveIncludes);
+            for (String name : Setting.splitValue(include, new ArrayList<String>())) {
+                File file = find(directory, searchPath, name);
+                Doxyfile includedDoxyfile = (file != null) ? get(file) : null;
+                if (includedDoxyfile != null) {
+                    directiveIncludes.add(includedDoxyfile);
+                } else {
+                    Plugin.getDefault().logWarning("Unable to include '" + name + "' in " + doxyfile.getFullPath() + ".");
+                }
+            }
+        }
+        return included;
+    }
+
+    /**
+     * Retrieves the parsed doxyfile for the given file, parsing it when not cached or outdated.
+     *
+     * @param	file	a file containing a doxyfile
+     *
+     * @return	the parsed doxyfile or null when it could not be read
+     */
+    public static Doxyfile get(File file) {
+        String key;
+        try {
+            key = file.getCanonicalPath();
+        } catch (IOException e) {
+            Plugin.log(e);
+            return null;
+        }
+
+        Entry entry = entries.get(key);
+        if (entry != null && isUpToDate(key, entry)) {
+            return entry.doxyfile;
+        }
+
+        Set<String> pending = loading.get();
+        if (pending.add(key) == false) {
+            Plugin.getDefault().logWarning("Cyclic inclusion of " + key + ".");
+            return null;
+        }
+        try {
+            File canonicalFile = new File(key);
+            long lastModified = canonicalFile.lastModified();
+            long length = canonicalFile.length();
+            Doxyfile doxyfile = new Doxyfile(null, canonicalFile);
+            doxyfile.load();
+            entries.put(key, new Entry(lastModified, length, doxyfile));
+            return doxyfile;
+        } catch (CoreException e) {
+            Plugin.log(e);
+            return null;
+        } catch (IOException e) {
+            Plugin.log(e);
+            return null;
+        } finally {
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * Removes all cached doxyfiles.
+     */
+    public static void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Tells if the cache entry still matches the file and all its included files.
+     */
+    private static boolean isUpToDate(String key, Entry entry) {
+        File file = new File(key);
+        if (file.lastModified() != entry.lastModified || file.length() != entry.length) {
+            return false;
+        }
+        for (Doxyfile included : entry.doxyfile.getIncludedDoxyfiles()) {
+            String includedKey = included.getFile().getPath();
+            Entry includedEntry = entries.get(includedKey);
+            if (includedEntry == null || includedEntry.doxyfile != included || isUpToDate(includedKey, includedEntry) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Searches the file with the given name, first relatively to the directory, then in the search path.
+     */
+    private static File find(File directory, List<File> searchPath, String name) {
+        File file = makeAbsolute(directory, name);
+        if (file.isFile()) {
+            return file;
+        }
+        if (new File(name).isAbsolute() == false) {
+            for (File searchDirectory : searchPath) {
+                file = new File(searchDirectory, name);
+                if (file.isFile()) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static File makeAbsolute(File directory, String path) {
+        File file = new File(path);
+        if (file.isAbsolute() || directory == null) {
+            return file;
+        }
+        return new File(directory, path);
+    }
+
+}
@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles.io;
+
+import java.nio.CharBuffer;
+
+/**
+ * Implements a single-pass doxyfile line scanner.
+ *
+ * The lexer sorts a line into a token kind and remembers the offsets of the
+ * relevant line parts (identifier, spaces, value), so that no intermediate
+ * strings get created while scanning. The classification is the same as the
+ * one of the former regular expression chain of the parser:
+ *
+ * <pre>
+ * empty         \s*
+ * comment       #.*
+ * assignment    (\w+)(\s*)=\s*(.*?)\s*(\\)?
+ * increment     (\w+)(\s*)\+=\s*(.*?)\s*(\\)?
+ * include       &#64;INCLUDE\s*=\s*(.*)
+ * include path  &#64;INCLUDE_PATH\s*=\s*(.*)
+ * continuation  \s*(.+?)\s*(\\)?
+ * </pre>
+ *
+ * @author Andre Bossert
+ */
+public class Lexer {
+
+    /**
+     * Defines the kinds of lines known by the lexer.
+     */
+    public enum Token {
+        EMPTY,
+        COMMENT,
+        ASSIGNMENT,
+        INCREMENT,
+        INCLUDE,
+        INCLUDE_PATH,
+        CONTINUATION,
+        UNKNOWN
+    }
+
+    private static final String INCLUDE = "@INCLUDE";
+    private static final String INCLUDE_PATH = "@INCLUDE_PATH";
+
+    private CharSequence text; ///< the text of the last scanned line
+    private int lineStart; ///< the start offset of the last scanned line
+    private int lineEnd; ///< the end offset of the last scanned line
+    private Token token = Token.UNKNOWN; ///< the kind of the last scanned line
+    private int identifierStart; ///< the start offset of the setting identifier
+    private int identifierEnd; ///< the end offset of the setting identifier (also start of the spaces)
+    private int spacesEnd; ///< the end offset of the spaces between identifier and operator
+    private int valueStart; ///< the start offset of the value
+    private int valueEnd; ///< the end offset of the value
+    private boolean continued; ///< tells if the line ends with a continuation backslash
+
+    /**
+     * Scans the given line.
+     *
+     * @param	line	a string containing a line without line terminator
+     *
+     * @return	the kind of the line
+     */
+    public Token scan(CharSequence line) {
+        return scan(line, 0, line.length());
+    }
+
+    /**
+     * Scans the given line range of a text.
+     *
+     * @param	text	a text containing the line
+     * @param	start	the offset of the first line character
+     * @param	end		the offset after the last line character (without line terminator)
+     *
+     * @return	the kind of the line
+     */
+    public Token scan(CharSequence text, int start, int end) {
+        this.text = text;
+        this.lineStart = start;
+        this.lineEnd = end;
+        this.identifierStart = this.identifierEnd = this.spacesEnd = start;
+        this.valueStart = this.valueEnd = start;
+        this.continued = false;
+        this.token = doScan(text, start, end);
+        return this.token;
+    }
+
+    private Token doScan(CharSequence text, int start, int end) {
+        // Searches the first non white space character and rejects
+        // characters that can't be matched by any line pattern.
+        int first = -1;
+        for (int i = start; i < end; ++i) {
+            char c = text.charAt(i);
+            if (isLineTerminator(c)) {
+                return Token.UNKNOWN;
+            }
+            if (first == -1 && isWhitespace(c) == false) {
+                first = i;
+            }
+        }
+        if (first == -1) {
+            return Token.EMPTY;
+        }
+        if (text.charAt(start) == '#') {
+            return Token.COMMENT;
+        }
+
+        // Setting assignment or increment.
+        if (isWordCharacter(text.charAt(start))) {
+            int i = start + 1;
+            while (i < end && isWordCharacter(text.charAt(i))) {
+                ++i;
+            }
+            int j = skipWhitespaces(text, i, end);
+            Token token = null;
+            int operatorEnd = j;
+            if (j < end && text.charAt(j) == '=') {
+                token = Token.ASSIGNMENT;
+                operatorEnd = j + 1;
+            } else if (j + 1 < end && text.charAt(j) == '+' && text.charAt(j + 1) == '=') {
+                token = Token.INCREMENT;
+                operatorEnd = j + 2;
+            }
+            if (token != null) {
+                identifierStart = start;
+                identifierEnd = i;
+                spacesEnd = j;
+                valueStart = skipWhitespaces(text, operatorEnd, end);
+                if (valueStart < end && text.charAt(end - 1) == '\\') {
+                    continued = true;
+                    valueEnd = trimWhitespaces(text, valueStart, end - 1);
+                } else {
+                    valueEnd = trimWhitespaces(text, valueStart, end);
+                }
+                return token;
+            }
+        }
+
+        // Include directives.
+        if (text.charAt(start) == '@') {
+            if (matchDirective(text, start, end, INCLUDE)) {
+                return Token.INCLUDE;
+            }
+            if (matchDirective(text, start, end, INCLUDE_PATH)) {
+                return Token.INCLUDE_PATH;
+            }
+        }
+
+        // Continued setting assignment.
+        valueStart = first;
+        if (text.charAt(end - 1) == '\\' && end - 1 > first) {
+            continued = true;
+            valueEnd = trimWhitespaces(text, first, end - 1);
+        } else {
+            valueEnd = trimWhitespaces(text, first, end);
+        }
+        return Token.CONTINUATION;
+    }
+
+    /**
+     * Matches a directive of the form <code>name\s*=\s*(.*)</code> and updates the value range.
+     */
+    private boolean matchDirective(CharSequence text, int start, int end, String name) {
+        int length = name.length();
+        if (end - start < length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (text.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        int i = skipWhitespaces(text, start + length, end);
+        if (i < end && text.charAt(i) == '=') {
+            valueStart = skipWhitespaces(text, i + 1, end);
+            valueEnd = end;
+            return true;
+        }
+        return false;
+    }
+
+    private static int skipWhitespaces(CharSequence text, int start, int end) {
+        while (start < end && isWhitespace(text.charAt(start))) {
+            ++start;
+        }
+        return start;
+    }
+
+    private static int trimWhitespaces(CharSequence text, int start, int end) {
+        while (end > start && isWhitespace(text.charAt(end - 1))) {
+            --end;
+        }
+        return end;
+    }
+
+    /**
+     * Tells if the given character is a white space, like <code>\s</code> does.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Tells if the given character is a word character, like <code>\w</code> does.
+     */
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Tells if the given character is a line terminator that can't be matched by <code>.</code>
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Retrieves the kind of the last scanned line.
+     *
+     * @return	a token kind
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * Retrieves the text of the last scanned line.
+     *
+     * @return	a string containing the line
+     */
+    public String getLine() {
+        return substring(lineStart, lineEnd);
+    }
+
+    /**
+     * Retrieves the setting identifier of the last scanned line.
+     *
+     * @return	a string containing the identifier
+     */
+    public String getIdentifier() {
+        return substring(identifierStart, identifierEnd);
+    }
+
+    /**
+     * Retrieves the spaces between the identifier and the operator of the last scanned line.
+     *
+     * @return	a string containing the spaces
+     */
+    public String getSpaces() {
+        return substring(identifierEnd, spacesEnd);
+    }
+
+    /**
+     * Retrieves the value of the last scanned line.
+     *
+     * @return	a string containing the value
+     */
+    public String getValue() {
+        return substring(valueStart, valueEnd);
+    }
+
+    /**
+     * Retrieves the start offset of the setting identifier of the last scanned line.
+     *
+     * @return	an offset in the scanned text
+     */
+    public int getIdentifierStart() {
+        return identifierStart;
+    }
+
+    /**
+     * Retrieves the end offset of the setting identifier of the last scanned line.
+     *
+     * @return	an offset in the scanned text
+     */
+    public int getIdentifierEnd() {
+        return identifierEnd;
+    }
+
+    /**
+     * Retrieves the start offset of the value of the last scanned line.
+     *
+     * @return	an offset in the scanned text
+     */
+    public int getValueStart() {
+        return valueStart;
+    }
+
+    /**
+     * Retrieves the end offset of the value, without trailing spaces and continuation backslash of the last scanned line.
+     *
+     * @return	an offset in the scanned text
+     */
+    public int getValueEnd() {
+        return valueEnd;
+    }
+
+    /**
+     * Creates a string from the given text range, directly from the backing array of character buffers.
+     */
+    private String substring(int start, int end) {
+        if (text instanceof String) {
+            return ((String) text).substring(start, end);
+        }
+        if (text instanceof CharBuffer && ((CharBuffer) text).hasArray()) {
+            CharBuffer buffer = (CharBuffer) text;
+            return new String(buffer.array(), buffer.arrayOffset() + buffer.position() + start, end - start);
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    /**
+     * Tells if the last scanned line is continued on the next line.
+     *
+     * @return	true or false
+     */
+    public boolean isContinued() {
+        return continued;
+    }
+
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+
+import eclox.core.Plugin;
+
+/**
+ * Loads the content of a doxyfile.
+ *
+ * Files located outside of the workspace are read through their channel into a
+ * heap buffer of the file size, and decoded in a single pass into a character
+ * buffer that the parser scans directly. They are not memory mapped: the decoding
+ * copies the content anyway, and a mapping is only released by the garbage
+ * collector, which keeps the file locked on some platforms and makes the next
+ * save or doxygen update of the doxyfile fail.
+ *
+ * The content of a file outside of the workspace gets decoded according to the
+ * DOXYFILE_ENCODING setting found in the raw bytes, or UTF-8 (the doxygen default)
+ * when the setting is missing. Workspace files are decoded with their charset.
+ *
+ * @author Andre Bossert
+ */
+public class MappedLoader {
+
+    private static final byte[] ENCODING_SETTING = "DOXYFILE_ENCODING".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Loads and decodes the content of the given file.
+     *
+     * @param	file	a file containing a doxyfile
+     *
+     * @return	a character buffer containing the decoded content
+     */
+    public static CharBuffer load(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The file " + file.getPath() + " is too large.");
+            }
+
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+                // Reads until the buffer is full or the end of the file is reached.
+            }
+            bytes.flip();
+            return decode(bytes, getCharset(bytes));
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Loads and decodes the content of the given input stream, that gets closed afterwards.
+     *
+     * @param	input	an input stream providing the doxyfile content
+     *
+     * @return	a character buffer containing the content, decoded according to DOXYFILE_ENCODING
+     */
+    public static CharBuffer load(InputStream input) throws IOException {
+        return load(input, null);
+    }
+
+    /**
+     * Loads and decodes the content of the given input stream, that gets closed afterwards.
+     *
+     * @param	input	an input stream providing the doxyfile content (of a workspace file for example)
+     * @param	charset	the charset of the content, or null to decode it according to DOXYFILE_ENCODING
+     *
+     * @return	a character buffer containing the decoded content
+     */
+    public static CharBuffer load(InputStream input, Charset charset) throws IOException {
+        try {
+            ByteBuffer bytes = ByteBuffer.allocate(Math.max(input.available(), 8192));
+            int read;
+            while ((read = input.read(bytes.array(), bytes.position(), bytes.remaining())) != -1) {
+                bytes.position(bytes.position() + read);
+                if (bytes.hasRemaining() == false) {
+                    ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() * 2);
+                    bytes.flip();
+                    larger.put(bytes);
+                    bytes = larger;
+                }
+            }
+            bytes.flip();
+            return decode(bytes, (charset != null) ? charset : getCharset(bytes));
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Decodes the given bytes, replacing malformed input like the stream readers do.
+     */
+    private static CharBuffer decode(ByteBuffer bytes, Charset charset) throws CharacterCodingException {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes);
+    }
+
+    /**
+     * Retrieves the charset declared by the DOXYFILE_ENCODING setting in the given raw content.
+     *
+     * @param	bytes	a buffer containing the raw doxyfile content
+     *
+     * @return	the declared charset, or UTF-8 when none or an unsupported one is declared
+     */
+    public static Charset getCharset(ByteBuffer bytes) {
+        return getCharset(findEncoding(bytes));
+    }
+
+    /**
+     * Retrieves the charset of the given workspace file.
+     *
+     * @param	ifile	a workspace file
+     *
+     * @return	the charset of the file, or UTF-8 when it could not be retrieved or is not supported
+     */
+    public static Charset getCharset(IFile ifile) {
+        try {
+            return Charset.forName(ifile.getCharset());
+        } catch (CoreException e) {
+            Plugin.log(e);
+        } catch (IllegalArgumentException e) {
+            Plugin.getDefault().logWarning("Unsupported charset for " + ifile.getFullPath() + ", using UTF-8.");
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Retrieves the charset for the given DOXYFILE_ENCODING value.
+     *
+     * @param	name	a string containing the encoding name, can be null
+     *
+     * @return	the charset, or UTF-8 when none or an unsupported one is given
+     */
+    public static Charset getCharset(String name) {
+        if (name != null && name.isEmpty() == false) {
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                Plugin.getDefault().logWarning("Unsupported doxyfile encoding '" + name + "', using UTF-8.");
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Searches a line starting with <code>DOXYFILE_ENCODING\s*=</code> and returns its trimmed value.
+     * Since all encodings supported by doxygen are ASCII compatible, this works on the raw bytes.
+     */
+    private static String findEncoding(ByteBuffer bytes) {
+        int limit = bytes.limit();
+        int lineStart = bytes.position();
+        while (lineStart < limit) {
+            int i = lineStart;
+            int j = 0;
+            while (j < ENCODING_SETTING.length && i < limit && bytes.get(i) == ENCODING_SETTING[j]) {
+                ++i;
+                ++j;
+            }
+            if (j == ENCODING_SETTING.length) {
+                i = skipBlanks(bytes, i, limit);
+                if (i < limit && bytes.get(i) == '=') {
+                    int valueStart = skipBlanks(bytes, i + 1, limit);
+                    int valueEnd = valueStart;
+                    while (valueEnd < limit && bytes.get(valueEnd) != '\n' && bytes.get(valueEnd) != '\r') {
+                        ++valueEnd;
+                    }
+                    StringBuilder value = new StringBuilder();
+                    for (int k = valueStart; k < valueEnd; ++k) {
+                        value.append((char) (bytes.get(k) & 0xff));
+                    }
+                    return value.toString().trim().replace("\"", "");
+                }
+            }
+
+            // Moves to the next line.
+            while (i < limit && bytes.get(i) != '\n' && bytes.get(i) != '\r') {
+                ++i;
+            }
+            lineStart = i + 1;
+        }
+        return null;
+    }
+
+    private static int skipBlanks(ByteBuffer bytes, int start, int limit) {
+        while (start < limit && (bytes.get(start) == ' ' || bytes.get(start) == '\t')) {
+            ++start;
+        }
+        return start;
+    }
+
+}
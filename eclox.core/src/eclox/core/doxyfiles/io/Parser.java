@@ -13,6 +13,12 @@
  *                   - #212: add support for multiple lines (lists) concatenated by backslash (\)
  *                   - #214: add support for TAG and VALUE format
  *                   - #215: add support for line separator
+ *                   - replaced the regular expression chain by a single-pass lexer
+ *                   - accumulate continued and incremented values in linear time
+ *                   - remember @INCLUDE and @INCLUDE_PATH directives
+ *                   - parse character sequences without per-line strings
+ *                   - parse within a doxyfile transaction
+ *                   - record the chunk of each parsed line
  *
  ******************************************************************************/
 
@@ -22,8 +28,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 //import eclox.core.Services;
 import eclox.core.Plugin;
@@ -50,39 +56,24 @@ public class Parser {
     private BufferedReader reader;
 
     /**
-     * The comment line pattern.
+     * The text to parse, when not parsing an input stream.
      */
-    private Pattern commentPattern = Pattern.compile("#.*");
+    private CharSequence text;
 
     /**
-     * the empty line pattern
+     * the lexer used to classify the lines
      */
-    private Pattern emptyPattern = Pattern.compile("\\s*");
+    private Lexer lexer = new Lexer();
 
     /**
-     * the setting assignment pattern
+     * the settings accumulating value fragments until the whole input has been read
      */
-    private Pattern settingAssignmentPattern = Pattern.compile("(\\w+)(\\s*)=\\s*(.*?)\\s*(\\\\)?");
+    private List<Setting> pendingSettings = new ArrayList<Setting>();
 
     /**
-     * the setting increment pattern
+     * the chunk that received each parsed line, null for the lines that have been dropped
      */
-    private Pattern settingIncrementPattern = Pattern.compile("(\\w+)(\\s*)\\+=\\s*(.*?)\\s*(\\\\)?");
-
-    /**
-     * the continued setting assignment pattern
-     */
-    private Pattern continuedSettingAssignmentPattern = Pattern.compile("\\s*(.+?)\\s*(\\\\)?");
-
-    /**
-     * the include directive pattern
-     */
-    private Pattern includePattern = Pattern.compile("@INCLUDE\\s*=\\s*(.*)");
-
-    /**
-     * the include path pattern
-     */
-    private Pattern includePathPattern = Pattern.compile("@INCLUDE_PATH\\s*=\\s*(.*)");
+    private List<Chunk> lineChunks = new ArrayList<Chunk>();
 
     /**
      * Constructor.
@@ -94,6 +85,15 @@ public class Parser {
         this.reader.mark(0);
     }
 
+    /**
+     * Constructor.
+     *
+     * @param	text	a character sequence (a decoded character buffer for example) to parse as a doxyfile
+     */
+    public Parser(CharSequence text) {
+        this.text = text;
+    }
+
     /**
      * Reads the input stream and returns the doxyfile.
      *
@@ -103,97 +103,105 @@ public class Parser {
      */
     public void read(Doxyfile doxyfile) throws IOException {
         // Initialization of the system.
-        this.reader.reset();
+        if (this.reader != null) {
+            this.reader.reset();
+        }
         this.lineNumber = 0;
+        this.lineChunks.clear();
 
-        // Reads and parses all lines.
+        // Reads and parses all lines, notifying the changes at once.
+        doxyfile.beginTransaction();
         try {
-            String line;
-            for (line = reader.readLine(); line != null; line = reader.readLine()) {
-                lineNumber++;
-                this.matchLine(doxyfile, line);
+            if (this.reader != null) {
+                String line;
+                for (line = reader.readLine(); line != null; line = reader.readLine()) {
+                    lineNumber++;
+                    lineChunks.add(this.matchLine(doxyfile, line, 0, line.length()));
+                }
+            } else {
+                this.readText(doxyfile);
             }
         } catch (Throwable throwable) {
             throw new IOException("Syntax error at line " + lineNumber + ". " + throwable.getMessage());
+        } finally {
+            // Assigns the accumulated values, so listeners only get notified once the whole input is read.
+            for (Setting setting : pendingSettings) {
+                setting.endValue();
+            }
+            pendingSettings.clear();
+            doxyfile.commitTransaction();
         }
     }
 
     /**
-     * Matches the specified line.
+     * Retrieves the chunks that received the lines read by the last call to read.
+     * Lines that did not go to any chunk (like misplaced continuations) are
+     * represented by null entries.
      *
-     * @param	doxyfile	a doxyfile where the result will be stored
-     * @param	line		a string containing the current line text
+     * @return	a list containing one chunk or null per line
      */
-    private void matchLine(Doxyfile doxyfile, String line) throws IOException {
-        Matcher matcher;
-
-        // Matches the current line against an empty line pattern
-        matcher = emptyPattern.matcher(line);
-        if (matcher.matches() == true) {
-            this.processAnyLine(doxyfile, line);
-            return;
-        }
-
-        // Matches the current line against the comment pattern.
-        matcher = commentPattern.matcher(line);
-        if (matcher.matches() == true) {
-            this.processAnyLine(doxyfile, line);
-            return;
-        }
-
-        // Matches the current line against the setting assignment pattern.
-        matcher = settingAssignmentPattern.matcher(line);
-        if (matcher.matches() == true) {
-            // Retrieves the setting identifier and its values.
-            String identifier = matcher.group(1);
-            String spaces = matcher.group(2);
-            String values = matcher.group(3);
-            String continued = matcher.group(4);
-            // Call the traitement for the setting assignment and pull out.
-            this.processSettingAssignment(doxyfile, identifier, spaces, values, continued != null);
-            return;
-        }
-
-        // Matches the current line against the setting increment pattern.
-        matcher = settingIncrementPattern.matcher(line);
-        if (matcher.matches() == true) {
-            // Retrieves the setting identifier and its values.
-            String identifier = matcher.group(1);
-            String spaces = matcher.group(2);
-            String values = matcher.group(3);
-            String continued = matcher.group(4);
-            // Call the treatment for the setting assignment and pull out.
-            this.processSettingIncrement(doxyfile, identifier, spaces, values, continued != null);
-            return;
-        }
-
-        // Matches the current line against the include directive pattern.
-        matcher = includePattern.matcher(line);
-        if (matcher.matches() == true) {
-            this.processAnyLine(doxyfile, line);
-            return;
-        }
+    public List<Chunk> getLineChunks() {
+        return lineChunks;
+    }
 
-        // Matches the current line agains the include path directive pattern.
-        matcher = includePathPattern.matcher(line);
-        if (matcher.matches() == true) {
-            this.processAnyLine(doxyfile, line);
-            return;
+    /**
+     * Splits the text into lines like a buffered reader does (lines are terminated
+     * by a line feed, a carriage return or both) and parses them in place.
+     *
+     * @param	doxyfile	a doxyfile where the parser results will be stored
+     */
+    private void readText(Doxyfile doxyfile) throws IOException {
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            char c = 0;
+            while (end < length && (c = text.charAt(end)) != '\n' && c != '\r') {
+                ++end;
+            }
+            lineNumber++;
+            lineChunks.add(this.matchLine(doxyfile, text, start, end));
+            if (c == '\r' && end + 1 < length && text.charAt(end + 1) == '\n') {
+                ++end;
+            }
+            start = end + 1;
         }
+    }
 
-        // Matches the current line against the continued setting assignment pattern.
-        matcher = continuedSettingAssignmentPattern.matcher(line);
-        if (matcher.matches() == true) {
-            // Retrieves the setting identifier and its values.
-            String values = matcher.group(1);
-            String continued = matcher.group(2);
-            // Call the treatment for the continued setting assignment and pull out.
-            this.processContinuedSettingAssignment(doxyfile, values, continued != null);
-            return;
+    /**
+     * Matches the specified line.
+     *
+     * @param	doxyfile	a doxyfile where the result will be stored
+     * @param	text		a character sequence containing the current line
+     * @param	start		the offset of the first line character
+     * @param	end			the offset after the last line character
+     *
+     * @return	the chunk that received the line, or null if none
+     */
+    private Chunk matchLine(Doxyfile doxyfile, CharSequence text, int start, int end) throws IOException {
+        Chunk chunk;
+        switch (lexer.scan(text, start, end)) {
+        case EMPTY:
+        case COMMENT:
+            return this.processAnyLine(doxyfile, lexer.getLine());
+        case INCLUDE:
+            chunk = this.processAnyLine(doxyfile, lexer.getLine());
+            doxyfile.addInclude(lexer.getValue());
+            return chunk;
+        case INCLUDE_PATH:
+            chunk = this.processAnyLine(doxyfile, lexer.getLine());
+            doxyfile.addIncludePath(lexer.getValue());
+            return chunk;
+        case ASSIGNMENT:
+            return this.processSettingAssignment(doxyfile, lexer.getIdentifier(), lexer.getSpaces(), lexer.getValue(), lexer.isContinued());
+        case INCREMENT:
+            return this.processSettingIncrement(doxyfile, lexer.getIdentifier(), lexer.getSpaces(), lexer.getValue(), lexer.isContinued());
+        case CONTINUATION:
+            return this.processContinuedSettingAssignment(doxyfile, lexer.getValue(), lexer.isContinued());
+        default:
+            // The line has not been recognized.
+            throw new IOException("Unable to match line.");
         }
-
-        // The line has not been recognized.
-        throw new IOException("Unable to match line.");
     }
 
     /**
@@ -202,8 +210,10 @@ public class Parser {
      *
      * @param	doxyfile	a doxyfile where the line will be stored
      * @param	text		a string containing the line text
+     *
+     * @return	the raw text chunk that received the line
      */
-    private void processAnyLine(Doxyfile doxyfile, String text) {
+    private RawText processAnyLine(Doxyfile doxyfile, String text) {
         // Retrieves the last raw text chunk.
         Chunk lastChunk = doxyfile.getLastChunk();
         RawText rawText;
@@ -216,6 +226,7 @@ public class Parser {
 
         // Stores the line's text in the raw text chunk.
         rawText.addLine(text);
+        return rawText;
     }
 
     /**
@@ -225,21 +236,23 @@ public class Parser {
      * @param	identifier	a string containing the setting identifier
      * @param	value		a string containing the assigned value
      * @param   continued   a boolean telling if the setting assignment is continued on multiple line
+     *
+     * @return  the assigned setting
      */
-    private void processSettingAssignment(Doxyfile doxyfile, String identifier, String spaces, String value, boolean continued) throws IOException {
+    private Setting processSettingAssignment(Doxyfile doxyfile, String identifier, String spaces, String value, boolean continued) throws IOException {
         // Retrieves the setting from the doxyfile.
         Setting setting = doxyfile.getSetting(identifier);
         if (setting != null) {
             // Overwrites the continued setting's value,
             // because the last assignment operator wins!
-            setting.setValue(value);
+            accumulateValue(setting, value, true);
             setting.setOperator(Setting.ASSIGNMENT);
             setting.setContinued(continued);
         } else {
             setting = new Setting(identifier, spaces, value, Setting.ASSIGNMENT, continued);
             doxyfile.append(setting);
         }
-
+        return setting;
     }
 
     /**
@@ -249,20 +262,23 @@ public class Parser {
      * @param   identifier  a string containing the setting identifier
      * @param   value       a string containing the assigned value
      * @param   continued   a boolean telling if the setting assignment is continued on multiple line
+     *
+     * @return  the incremented setting
      */
-    private void processSettingIncrement(Doxyfile doxyfile, String identifier, String spaces, String value, boolean continued) throws IOException {
+    private Setting processSettingIncrement(Doxyfile doxyfile, String identifier, String spaces, String value, boolean continued) throws IOException {
         // Retrieves the setting from the doxyfile.
         Setting setting = doxyfile.getSetting(identifier);
         if (setting != null) {
             // Updates the continued setting's value independent of the type (assignment or increment),
             // because the previous operator wins!
-            setting.setValue(setting.getValue() + " " + value);
+            accumulateValue(setting, value, false);
             setting.setContinued(continued);
         } else {
             Plugin.getDefault().logWarning("At line " + lineNumber + ": the setting was not declared before. But it may be declared in included file!");
             setting = new Setting(identifier, spaces, value, Setting.INCREMENT, continued);
             doxyfile.append(setting);
         }
+        return setting;
     }
 
     /**
@@ -271,8 +287,10 @@ public class Parser {
      * @param   doxyfile    a doxyfile where the setting assignment will be stored
      * @param   value       a string containing the assigned value
      * @param   continued   a boolean telling if the setting assignment is continued on multiple line
+     *
+     * @return  the continued setting, or null if none
      */
-    private void processContinuedSettingAssignment(Doxyfile doxyfile, String value, boolean continued)
+    private Setting processContinuedSettingAssignment(Doxyfile doxyfile, String value, boolean continued)
             throws IOException {
         Chunk lastChunk = doxyfile.getLastChunk();
         // Ensures that a continued setting has been remembered
@@ -280,12 +298,33 @@ public class Parser {
         if (lastChunk instanceof Setting) {
             Setting continuedSetting = (Setting) lastChunk;
             if (continuedSetting.isContinued()) {
-                continuedSetting.setValue(continuedSetting.getValue() + " " + value);
+                accumulateValue(continuedSetting, value, false);
+                return continuedSetting;
             } else {
                 Plugin.getDefault().logWarning("At line " + lineNumber + ": value delcared without a multiline (continued) setting.");
             }
         } else {
             Plugin.getDefault().logWarning("At line " + lineNumber + ": value delcared without a setting name.");
         }
+        return null;
+    }
+
+    /**
+     * Accumulates the given value fragment in the setting.
+     *
+     * @param   setting     a setting whose value is being parsed
+     * @param   value       a string containing the value fragment
+     * @param   assignment  true when the fragment replaces the value, false when it gets appended
+     */
+    private void accumulateValue(Setting setting, String value, boolean assignment) {
+        if (setting.isValuePending() == false) {
+            pendingSettings.add(setting);
+        }
+        if (assignment) {
+            setting.beginValue(value);
+        } else {
+            setting.appendValue(value);
+        }
     }
+
 }
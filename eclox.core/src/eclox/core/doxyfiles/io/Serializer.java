@@ -1,6 +1,6 @@
 /*******************************************************************************
  * Copyright (C) 2003-2004, 2013, Guillaume Brocker
- * Copyright (C) 2015-2018, Andre Bossert
+ * Copyright (C) 2015-2019, Andre Bossert
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -12,6 +12,7 @@
  *     Andre Bossert - #215: add support for line separator
  *                   - #212: add support for multiple lines (lists) concatenated by backslash (\)
  *                   - #214: add support for TAG and VALUE format
+ *                   - encode chunks in bulk with an explicit charset
  *
  ******************************************************************************/
 
@@ -19,20 +20,39 @@ package eclox.core.doxyfiles.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.Iterator;
 
 import eclox.core.ListSeparateMode;
 import eclox.core.doxyfiles.Chunk;
 import eclox.core.doxyfiles.Doxyfile;
+import eclox.core.doxyfiles.Setting;
 import eclox.core.TagFormat;
 
 /**
  * Implements a doxyfile content serializer.
  *
+ * The chunks are encoded in bulk into a byte buffer that is handed out by the
+ * stream read operations, or directly written to a channel or a writer.
+ * A serializer instance can only be consumed once, either as an input stream or
+ * by one of the write operations.
+ *
  * @author willy
  */
 public class Serializer extends InputStream {
 
+    /**
+     * the size of the encoded byte buffer
+     */
+    private static final int BUFFER_SIZE = 8192;
+
     /**
      * The line separator.
      */
@@ -51,60 +71,181 @@ public class Serializer extends InputStream {
     /**
      * an iterator on the doxyfile chunks
      */
-    private Iterator<?> chunkIterator;
+    private Iterator<Chunk> chunkIterator;
 
     /**
-     * a string buffer containing the next character to red
+     * the encoder of the chunk characters
      */
-    private StringBuffer stringBuffer;
+    private CharsetEncoder encoder;
 
     /**
-     * Constructor
+     * the characters of the current chunk left to encode
+     */
+    private CharBuffer chars = CharBuffer.allocate(0);
+
+    /**
+     * the encoded bytes left to read
+     */
+    private ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * tells if all chunks have been encoded and the encoder is being flushed
+     */
+    private boolean flushing = false;
+
+    /**
+     * tells if all chunks have been encoded
+     */
+    private boolean finished = false;
+
+    /**
+     * Constructor, using the charset of the doxyfile.
      *
      * @param	doxyfile	a doxyfile to serialize
      */
     public Serializer(Doxyfile doxyfile, String lineSeparator, ListSeparateMode listSeparateMode, TagFormat tagFormat) {
+        this(doxyfile, lineSeparator, listSeparateMode, tagFormat, getCharset(doxyfile));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param	doxyfile	a doxyfile to serialize
+     * @param	charset		the charset used to encode the doxyfile content
+     */
+    public Serializer(Doxyfile doxyfile, String lineSeparator, ListSeparateMode listSeparateMode, TagFormat tagFormat, Charset charset) {
         this.lineSeparator = lineSeparator;
         this.listSeparateMode = listSeparateMode;
         this.tagFormat = tagFormat;
         this.chunkIterator = doxyfile.iterator();
-        this.stringBuffer = getNextStringBuffer();
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes.flip();
+    }
+
+    /**
+     * Retrieves the charset of the given doxyfile, that is the charset of its workspace
+     * file, or the one declared by its DOXYFILE_ENCODING setting outside of the workspace.
+     *
+     * @param	doxyfile	a doxyfile
+     *
+     * @return	the charset of the doxyfile, UTF-8 when none is declared
+     */
+    public static Charset getCharset(Doxyfile doxyfile) {
+        if (doxyfile.getIFile() != null) {
+            return MappedLoader.getCharset(doxyfile.getIFile());
+        }
+        Setting encoding = doxyfile.getSetting("DOXYFILE_ENCODING");
+        return MappedLoader.getCharset(encoding != null ? encoding.getValue().replace("\"", "") : null);
     }
 
     public int read() throws IOException {
-        int result;
-        if (stringBuffer != null) {
-            // Retrieves the next character from the current string buffer.
-            result = stringBuffer.charAt(0);
-            stringBuffer.deleteCharAt(0);
-
-            // If the current string buffer has been entierly read, gets the next string buffer.
-            if (stringBuffer.length() == 0) {
-                stringBuffer = getNextStringBuffer();
+        return fill() ? (bytes.get() & 0xff) : -1;
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (fill() == false) {
+            return -1;
+        }
+        int count = Math.min(length, bytes.remaining());
+        bytes.get(buffer, offset, count);
+        return count;
+    }
+
+    public int available() throws IOException {
+        return bytes.remaining();
+    }
+
+    /**
+     * Writes the whole encoded doxyfile content into the given channel.
+     *
+     * @param	channel	a channel receiving the content
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        while (fill() == true) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Writes the whole doxyfile content into the given writer, whose own charset applies.
+     *
+     * @param	writer	a writer receiving the content
+     */
+    public void write(Writer writer) throws IOException {
+        while (chunkIterator.hasNext() == true) {
+            writer.write(getNextString());
+        }
+        finished = true;
+    }
+
+    /**
+     * Ensures that encoded bytes are available for reading.
+     *
+     * @return	false when all chunks have been read
+     */
+    private boolean fill() throws IOException {
+        while (bytes.hasRemaining() == false) {
+            if (finished == true) {
+                return false;
+            }
+            bytes.clear();
+            encode();
+            bytes.flip();
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the next chunks until the byte buffer is full or all chunks are encoded.
+     */
+    private void encode() throws IOException {
+        for (;;) {
+            boolean endOfInput = chunkIterator.hasNext() == false;
+            if (chars.hasRemaining() == false && endOfInput == false) {
+                chars = CharBuffer.wrap(getNextString());
+                continue;
+            }
+
+            CoderResult result = flushing ? CoderResult.UNDERFLOW : encoder.encode(chars, bytes, endOfInput);
+            if (result.isError() == true) {
+                result.throwException();
+            }
+            if (result.isOverflow() == true) {
+                return;
+            }
+            if (endOfInput == true) {
+                flushing = true;
+                if (encoder.flush(bytes).isUnderflow() == true) {
+                    finished = true;
+                }
+                return;
+            }
+            if (chars.hasRemaining() == true) {
+                // A surrogate pair is split between two chunks.
+                chars = CharBuffer.wrap(chars.toString() + getNextString());
             }
-        } else {
-            result = -1;
         }
-        return result;
     }
 
     /**
-     * Retrieves the next string buffer to use for reading operations or null
-     * if no more chunk is left in the doxyfile.
+     * Retrieves the string of the next chunk.
      *
-     * @return	a string buffer or null of none
+     * @return	a string containing the chunk content
      */
-    private StringBuffer getNextStringBuffer() {
+    private String getNextString() {
         // Pre-condition
         assert chunkIterator != null;
 
-        // Retrieves the next string buffer.
-        StringBuffer result = null;
-        if (this.chunkIterator.hasNext() == true) {
-            Chunk chunk = (Chunk) this.chunkIterator.next();
-            result = new StringBuffer(chunk.getString(lineSeparator, listSeparateMode, tagFormat));
-        }
-        return result;
+        Chunk chunk = this.chunkIterator.next();
+        return chunk.getString(lineSeparator, listSeparateMode, tagFormat);
     }
 
 }
@@ -23,47 +23,56 @@
  *       https://github.com/anb0s/eclox/issues/187
  *     - fixed java.lang.IllegalArgumentException if resource not found
  *       https://github.com/anb0s/eclox/issues/195
+ *     - thread-safe job registry keyed by the doxyfile path
+ *     - shared resource delta dispatcher, jobs follow their moved doxyfile
+ *     - blocking process supervision, cancellation destroys the process
+ *     - read the process outputs through the shared output pump
+ *     - keep the output log in a bounded build log store
+ *     - recognize diagnostics while reading the outputs, create markers progressively
+ *     - publish markers in batches, diffed against the previous build
+ *     - resolve the diagnostic locations through a shared cache
+ *     - diagnostic index, marker limits, aggregation and markers for opened files only
+ *     - bounded concurrent builds through the build scheduler
+ *     - exit value and duration of the last build, for build sets
+ *     - incremental marker selection, single marker for the build limit
+ *     - read the doxyfile settings from a snapshot of the shared parsed doxyfile
  *
  ******************************************************************************/
 
 package eclox.core.doxygen;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URISyntaxException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.Vector;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IResourceChangeEvent;
-import org.eclipse.core.resources.IResourceChangeListener;
-import org.eclipse.core.resources.IResourceDelta;
-import org.eclipse.core.resources.IWorkspaceRoot;
-import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
-import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
-import org.eclipse.core.filesystem.URIUtil;
 
 import eclox.core.Plugin;
 import eclox.core.doxyfiles.Doxyfile;
+import eclox.core.doxyfiles.DoxyfileSnapshot;
+import eclox.core.doxyfiles.io.IncludeCache;
 
 /**
  * Implement a build job.
@@ -78,113 +87,60 @@ public class BuildJob extends Job {
     public static final int ERROR_DOXYGEN_NOT_FOUND = 2; // ATTENTION: Status.OK_STATUS = 0, Status.CANCEL_STATUS = 1
 
     /**
-     * Defines the pattern used to match doxygen warnings and errors
+     * Defines the time in milliseconds after which the wait for the build process checks the
+     * progress monitor and creates the markers of the recognized diagnostics. Cancellations
+     * requested through the job do not wait for it.
      */
-    private static final Pattern problemPattern = Pattern
-            .compile("^(.+?):\\s*(\\d+)\\s*:\\s*(.+?)\\s*:\\s*(.*$(\\s+^  .*$)*)", Pattern.MULTILINE);
+    private static final long CANCEL_CHECK_PERIOD = 500;
 
     /**
-     * Defines the pattern used to match doxygen warnings about obsolete tags.
+     * Defines the time in milliseconds the build waits for the end of the outputs once doxygen has exited.
      */
-    private static final Pattern obsoleteTagWarningPattern = Pattern
-            .compile("(?i)^warning: Tag `(.+)' at line (\\d+) of file `(.+)' has become obsolete.$", Pattern.MULTILINE);
+    private static final long OUTPUT_END_TIMEOUT = 10000;
 
     /**
-     * Implements a runnable log feeder that reads the given input stream
-     * line per line and writes those lines back to the managed log. Once
-     * the stream end has been reached, the feeder exists.
+     * Implements a log feeder that writes the lines read from a process output
+     * back to the managed log, and recognizes the diagnostics in them.
      *
      * @author	Guillaume Brocker
      */
-    private class MyLogFeeder implements Runnable {
+    private class MyLogFeeder implements OutputPump.IConsumer {
 
-        /**
-         * the input stream to read and write by to the log
-         */
-        private InputStream input;
+        private final DiagnosticRecognizer recognizer = new DiagnosticRecognizer(); ///< the recognizer of the diagnostics of the process output
 
-        private boolean cancel = false;
+        public void linesRead(String lines) {
+            log.append(lines);
+            fireLogUpdated(lines);
+            diagnostics.addAll(recognizer.recognize(lines));
+        }
 
         /**
-         * Constructor
-         *
-         * @param	input	the input stream to read to write back to the log
+         * Notifies the end of the process output.
          */
-        public MyLogFeeder(InputStream input) {
-            this.input = input;
-        }
-
-        public void run() {
-            try {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-                String newLine;
-
-                for (;;) {
-                    // check if cancel
-                    if (cancel) {
-                        break;
-                    }
-                    // Processes a new process output line.
-                    newLine = reader.readLine();
-                    if (newLine != null) {
-                        newLine = newLine.concat("\n");
-                        log.append(newLine);
-                        fireLogUpdated(newLine);
-                    } else {
-                        break;
-                    }
-                    Thread.yield();
-                }
-            } catch (Throwable t) {
-                Plugin.log(t);
-            }
-        }
-
-        public void cancel() {
-            cancel = true;
+        public void flush() {
+            diagnostics.addAll(recognizer.flush());
         }
     }
 
     /**
-     * Implements a resource change listener that will remove a given job if its
-     * doxyfile gets deleted.
-     *
-     * @author	Guillaume Brocker
+     * a string that is used to identify the doxygen build job family
      */
-    private class MyResourceChangeListener implements IResourceChangeListener {
-        /**
-         * the build job whose doxyfile will be monitored
-         */
-        private BuildJob job;
-
-        public MyResourceChangeListener(BuildJob job) {
-            this.job = job;
-        }
-
-        public void resourceChanged(IResourceChangeEvent event) {
-            IFile ifile = job.getDoxyfile().getIFile();
-            if (ifile != null) {
-                IResourceDelta doxyfileDelta = event.getDelta().findMember(ifile.getFullPath());
-                if (doxyfileDelta != null && doxyfileDelta.getKind() == IResourceDelta.REMOVED) {
-                    job.clearMarkers();
-                    jobs.remove(job);
-                    job.fireRemoved();
-                    ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
-                }
-            }
-        }
+    public static String FAMILY = "Doxygen Build Job";
 
-    }
+    /**
+     * a map containing all created build jobs, keyed by the full path of their doxyfile
+     */
+    private static final ConcurrentHashMap<String, BuildJob> jobs = new ConcurrentHashMap<String, BuildJob>();
 
     /**
-     * a string that is used to identify the doxygen build job family
+     * the listener notifying the jobs whose doxyfile gets removed or moved
      */
-    public static String FAMILY = "Doxygen Build Job";
+    private static final JobDeltaDispatcher dispatcher = new JobDeltaDispatcher();
 
     /**
-     * a collection containing all created build jobs
+     * a set containing the files opened in an editor, receiving markers when only those do
      */
-    private static Collection<BuildJob> jobs = new HashSet<BuildJob>();
+    private static final Set<IFile> openedFiles = Collections.newSetFromMap(new ConcurrentHashMap<IFile, Boolean>());
 
     /**
      * the path of the doxygen
@@ -194,7 +150,7 @@ public class BuildJob extends Job {
     /**
      * the path of the doxyfile to build
      */
-    private Doxyfile doxyfile;
+    private volatile Doxyfile doxyfile;
 
     /**
      * the build type, true = build, false = update
@@ -202,9 +158,24 @@ public class BuildJob extends Job {
     private boolean doBuildType;
 
     /**
-     * the buffer containing the whole build output log
+     * the store containing the whole build output log
+     */
+    private final BuildLog log = new BuildLog();
+
+    /**
+     * the recognized diagnostics, waiting for their markers to get created
+     */
+    private final Queue<Diagnostic> diagnostics = new ConcurrentLinkedQueue<Diagnostic>();
+
+    /**
+     * the store containing all diagnostics of the last build
+     */
+    private final DiagnosticIndex diagnosticIndex = new DiagnosticIndex();
+
+    /**
+     * the marker preferences of the last build, null before the first build
      */
-    private StringBuffer log = new StringBuffer();
+    private volatile MarkerPolicy markerPolicy;
 
     /**
      * a set containing all registered build job listeners
@@ -212,9 +183,24 @@ public class BuildJob extends Job {
     private Set<IBuildJobListener> listeners = new HashSet<IBuildJobListener>();
 
     /**
-     * a collection containing all markers corresponding to doxygen warning and errors
+     * the publisher of the markers corresponding to doxygen warning and errors
+     */
+    private final MarkerPublisher markers;
+
+    /**
+     * the running doxygen process, null when none
+     */
+    private volatile Process buildProcess;
+
+    /**
+     * the exit value of the doxygen process of the last build, -1 when it did not end normally
+     */
+    private volatile int exitValue = -1;
+
+    /**
+     * the time in milliseconds the doxygen process of the last build ran
      */
-    private Collection<IMarker> markers = new Vector<IMarker>();
+    private volatile long duration = 0;
 
     /**
      * Constructor.
@@ -223,6 +209,7 @@ public class BuildJob extends Job {
         super("");
 
         doxyfile = dxfile;
+        markers = new MarkerPublisher(getKey(dxfile));
 
         doBuildType = doBuild;
 
@@ -230,11 +217,17 @@ public class BuildJob extends Job {
 
         setPriority(Job.BUILD);
         setUser(true);
+    }
 
-        // References the jobs in the global collection and add a doxyfile listener.
-        jobs.add(this);
-        ResourcesPlugin.getWorkspace().addResourceChangeListener(new MyResourceChangeListener(this),
-                IResourceChangeEvent.POST_CHANGE);
+    /**
+     * Retrieves the key of the given doxyfile in the job registry.
+     *
+     * @param	doxyfile	a given doxyfile instance
+     *
+     * @return	a string containing the key, consistent with Doxyfile#equals(Object)
+     */
+    private static String getKey(Doxyfile doxyfile) {
+        return doxyfile.getFullPath();
     }
 
     /**
@@ -243,7 +236,17 @@ public class BuildJob extends Job {
      * @return	an array containing all doxygen build jobs (can be empty).
      */
     public static BuildJob[] getAllJobs() {
-        return (BuildJob[]) jobs.toArray(new BuildJob[0]);
+        return jobs.values().toArray(new BuildJob[0]);
+    }
+
+    /**
+     * Retrieves an iterator on all doxygen build jobs. The iterator does not copy the
+     * registry and never fails when jobs get created or removed while iterating.
+     *
+     * @return	an iterator on the build jobs
+     */
+    public static Iterator<BuildJob> getJobIterator() {
+        return Collections.unmodifiableCollection(jobs.values()).iterator();
     }
 
     /**
@@ -255,11 +258,21 @@ public class BuildJob extends Job {
      * @return	a build job that is in charge of building the given doxyfile
      */
     public static BuildJob getJob(Doxyfile doxyfile, boolean doBuild) {
-        BuildJob result = findJob(doxyfile);
+        String key = getKey(doxyfile);
+        BuildJob result = jobs.get(key);
 
-        // If no jobs has been found, then creates a new one.
+        // If no jobs has been found, then creates a new one, unless another thread has been faster.
         if (result == null) {
-            result = new BuildJob(doxyfile, doBuild);
+            BuildJob newJob = new BuildJob(doxyfile, doBuild);
+            result = jobs.putIfAbsent(key, newJob);
+            if (result == null) {
+                result = newJob;
+                if (doxyfile.getIFile() != null) {
+                    dispatcher.add(doxyfile.getIFile().getFullPath(), result);
+                }
+            } else {
+                result.setDoBuild(doBuild);
+            }
         } else {
             result.setDoBuild(doBuild);
         }
@@ -271,6 +284,47 @@ public class BuildJob extends Job {
         return result;
     }
 
+    /**
+     * Unregisters the job once its doxyfile has been deleted.
+     */
+    void removed() {
+        Doxyfile removedDoxyfile = doxyfile;
+        // Markers cannot be deleted while resource changes get notified.
+        Job clearJob = new Job("Clear doxygen markers") {
+            protected IStatus run(IProgressMonitor monitor) {
+                clearMarkers();
+                return Status.OK_STATUS;
+            }
+        };
+        clearJob.setSystem(true);
+        clearJob.schedule();
+        jobs.remove(getKey(removedDoxyfile), this);
+        dispatcher.remove(removedDoxyfile.getIFile().getFullPath(), this);
+        log.dispose();
+        fireRemoved();
+    }
+
+    /**
+     * Registers the job again under the new path of its moved doxyfile. The job
+     * gets removed when there is already a job for the new path.
+     *
+     * @param	movedDoxyIFile	the doxyfile resource at its new location
+     */
+    void moved(IFile movedDoxyIFile) {
+        Doxyfile oldDoxyfile = doxyfile;
+        Doxyfile newDoxyfile = new Doxyfile(movedDoxyIFile, null);
+        if (jobs.putIfAbsent(getKey(newDoxyfile), this) != null) {
+            removed();
+            return;
+        }
+        jobs.remove(getKey(oldDoxyfile), this);
+        dispatcher.remove(oldDoxyfile.getIFile().getFullPath(), this);
+        doxyfile = newDoxyfile;
+        markers.setOwner(getKey(newDoxyfile));
+        dispatcher.add(movedDoxyIFile.getFullPath(), this);
+        updateJobName();
+    }
+
     private void setDoBuild(boolean doBuild) {
         doBuildType = doBuild;
         updateJobName();
@@ -284,19 +338,80 @@ public class BuildJob extends Job {
      * @return	a build job for the given doxyfile or null if none
      */
     public static BuildJob findJob(Doxyfile doxyfile) {
-        BuildJob result = null;
-
-        // Walks through the found jobs to find a relevant build job.
-        Iterator<BuildJob> i = jobs.iterator();
-        while (i.hasNext()) {
-            BuildJob buildJob = (BuildJob) i.next();
-            if (buildJob.getDoxyfile().equals(doxyfile)) {
-                result = buildJob;
-                break;
-            }
+        return jobs.get(getKey(doxyfile));
+    }
+
+    /**
+     * Searches for a build job associated to the given doxyfile resource.
+     *
+     * @param	doxyIFile	a given doxyfile resource
+     *
+     * @return	a build job for the given doxyfile or null if none
+     */
+    public static BuildJob findJob(IFile doxyIFile) {
+        return jobs.isEmpty() ? null : jobs.get(doxyIFile.getFullPath().toString());
+    }
+
+    /**
+     * Notifies that the given file has been opened in an editor. When markers are only
+     * created for the opened files, the markers of the file get created.
+     *
+     * @param	file	a workspace file
+     */
+    public static void showMarkers(IFile file) {
+        if (openedFiles.add(file)) {
+            updateMarkers(file);
         }
+    }
 
-        return result;
+    /**
+     * Notifies that the given file is not opened in an editor anymore. When markers are
+     * only created for the opened files, the markers of the file get deleted.
+     *
+     * @param	file	a workspace file
+     */
+    public static void hideMarkers(IFile file) {
+        if (openedFiles.remove(file)) {
+            updateMarkers(file);
+        }
+    }
+
+    /**
+     * Updates the markers of the given file for all jobs, in the background.
+     */
+    private static void updateMarkers(final IFile file) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        Job updateJob = new Job("Update doxygen markers") {
+            protected IStatus run(IProgressMonitor monitor) {
+                Iterator<BuildJob> i = getJobIterator();
+                while (i.hasNext()) {
+                    try {
+                        i.next().updateMarkers(file, openedFiles.contains(file));
+                    } catch (CoreException e) {
+                        Plugin.log(e);
+                    }
+                }
+                return Status.OK_STATUS;
+            }
+        };
+        updateJob.setSystem(true);
+        updateJob.schedule();
+    }
+
+    private void updateMarkers(IFile file, boolean opened) throws CoreException {
+        MarkerPolicy policy = markerPolicy;
+        if (policy != null && policy.isLazy()) {
+            if (opened == false) {
+                synchronized (policy) {
+                    markers.remove(file, null);
+                    policy.release(file);
+                }
+            } else if (diagnosticIndex.contains(file)) {
+                publishMarkers(Collections.singleton(file));
+            }
+        }
     }
 
     /**
@@ -325,7 +440,7 @@ public class BuildJob extends Job {
      * Clears the log and notifies attached listeners
      */
     public void clearLog() {
-        log.delete(0, log.length());
+        log.clear();
         fireLogCleared();
     }
 
@@ -333,19 +448,11 @@ public class BuildJob extends Job {
      * Clears the markers managed by the build job.
      */
     public void clearMarkers() {
-        // Removes all markers from their respective resource
-        Iterator<IMarker> i = markers.iterator();
-        while (i.hasNext()) {
-            IMarker marker = (IMarker) i.next();
-            try {
-                marker.delete();
-            } catch (Throwable t) {
-                Plugin.log(t);
-            }
+        try {
+            markers.clear(null);
+        } catch (Throwable t) {
+            Plugin.log(t);
         }
-
-        // Clear the marker collection
-        markers.clear();
     }
 
     /**
@@ -376,9 +483,54 @@ public class BuildJob extends Job {
      * Retrieves the job's whole log.
      *
      * @return	a string containing the build job's log.
+     *
+     * @deprecated	the log may be large, read it through {@link #getBuildLog()} instead
      */
+    @Deprecated
     public String getLog() {
-        return log.toString();
+        try {
+            return log.getText();
+        } catch (IOException e) {
+            Plugin.log(e);
+            return "";
+        }
+    }
+
+    /**
+     * Retrieves the store of all diagnostics of the last build, including the
+     * ones without a marker.
+     *
+     * @return	the diagnostic index
+     */
+    public DiagnosticIndex getDiagnosticIndex() {
+        return diagnosticIndex;
+    }
+
+    /**
+     * Retrieves the exit value of doxygen for the last build.
+     *
+     * @return	the exit value, -1 when the build failed before doxygen ended or has been canceled
+     */
+    public int getExitValue() {
+        return exitValue;
+    }
+
+    /**
+     * Retrieves the time doxygen ran for the last build, not including the wait for other builds.
+     *
+     * @return	a time in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Retrieves the store of the job's log.
+     *
+     * @return	the build log
+     */
+    public BuildLog getBuildLog() {
+        return log;
     }
 
     /**
@@ -423,13 +575,29 @@ public class BuildJob extends Job {
         }
     }
 
-    private void refreshFiles(IFile doxyIFile, SubMonitor subMonitor) throws CoreException, FileNotFoundException, IOException {
+    /**
+     * Retrieves a snapshot of the current content of the doxyfile. The doxyfile gets read
+     * through the shared cache of parsed doxyfiles, so it is only parsed again when it
+     * changed since the last build, and the job's doxyfile instance is left alone.
+     *
+     * @return	a snapshot of the doxyfile
+     */
+    private DoxyfileSnapshot readSnapshot() {
+        IFile doxyIFile = getDoxyfile().getIFile();
+        File doxyFile = getDoxyfile().getFile();
+        if (doxyIFile != null) {
+            IPath location = doxyIFile.getLocation();
+            doxyFile = (location != null) ? location.toFile() : null;
+        }
+        Doxyfile parsedDoxyfile = (doxyFile != null) ? IncludeCache.get(doxyFile) : null;
+        return (parsedDoxyfile != null) ? parsedDoxyfile.snapshot() : getDoxyfile().snapshot();
+    }
+
+    private void refreshFiles(IFile doxyIFile, DoxyfileSnapshot snapshot, SubMonitor subMonitor) throws CoreException {
         if (doxyIFile != null) {
             if (doBuildType) {
                 // Refreshes the container that has received the documentation outputs.
-                Doxyfile parsedDoxyfile = getDoxyfile();
-                parsedDoxyfile.load();
-                IContainer outputContainer = parsedDoxyfile.getOutputContainer();
+                IContainer outputContainer = snapshot.getOutputContainer();
                 if (outputContainer != null) {
                     outputContainer.refreshLocal(IResource.DEPTH_INFINITE,
                             SubMonitor.convert(subMonitor, "Refresh doxygen output folder...", 1));
@@ -445,65 +613,96 @@ public class BuildJob extends Job {
      */
     protected IStatus run(IProgressMonitor monitor) {
         IFile doxyIFile = getDoxyfile().getIFile();
+        BuildScheduler.Slot slot = null;
+        Process buildProcess = null;
+        OutputPump.Handle inputLog = null;
+        OutputPump.Handle errorLog = null;
+        boolean publishing = false;
+        exitValue = -1;
 
         try {
             // Initializes the progress monitor.
             SubMonitor subMonitor = SubMonitor.convert(monitor, doxyfile.getFullPath(), 6);
 
-            // Clears log and markers.
+            // Clears the log, the markers of the previous build are kept until the end of the build.
             clearLog();
-            clearMarkers();
+
+            // Reads the current settings of the doxyfile.
+            DoxyfileSnapshot snapshot = readSnapshot();
+
+            // Waits for the other builds to leave room for this one.
+            slot = acquireSlot(snapshot, subMonitor);
+
+            markerPolicy = MarkerPolicy.load();
+            diagnosticIndex.clear();
+            markers.begin();
+            publishing = true;
             subMonitor.worked(1);
 
             // Locks access to the doxyfile
             lockBuildFile(doxyIFile, subMonitor);
 
             // Creates the doxygen build process and log feeders.
-            Process buildProcess = createBuildProcess();
+            long startTime = System.currentTimeMillis();
+            buildProcess = createBuildProcess();
+            this.buildProcess = buildProcess;
 
             // stdin and stderr
-            MyLogFeeder inputLogFeeder = new MyLogFeeder(buildProcess.getInputStream());
-            Thread inputLogThread = new Thread(inputLogFeeder);
-            MyLogFeeder errorLogFeeder = new MyLogFeeder(buildProcess.getErrorStream());
-            Thread errorLogThread = new Thread(errorLogFeeder);
-
-            // Wait either for the feeders to terminate or the user to cancel the job.
-            inputLogThread.start();
-            errorLogThread.start();
-            for (;;) {
-                // Tests of the log feeders have terminated.
-                if (inputLogThread.isAlive() == false && errorLogThread.isAlive() == false) {
-                    break;
-                }
-
-                // Tests if the jobs is supposed to terminate.
+            diagnostics.clear();
+            MyLogFeeder inputLogFeeder = new MyLogFeeder();
+            MyLogFeeder errorLogFeeder = new MyLogFeeder();
+            inputLog = OutputPump.getDefault().add(buildProcess, buildProcess.getInputStream(), inputLogFeeder);
+            errorLog = OutputPump.getDefault().add(buildProcess, buildProcess.getErrorStream(), errorLogFeeder);
+
+            // Waits either for the process to terminate or the user to cancel the job,
+            // creating the markers of the diagnostics recognized in the meantime.
+            // Canceling the job destroys the process, which ends the wait at once.
+            while (buildProcess.waitFor(CANCEL_CHECK_PERIOD, TimeUnit.MILLISECONDS) == false) {
                 if (monitor.isCanceled() == true) {
-                    // stop the log threads
-                    inputLogFeeder.cancel();
-                    errorLogFeeder.cancel();
                     buildProcess.destroy();
-                    buildProcess.waitFor();
-                    return Status.CANCEL_STATUS;
+                } else {
+                    createMarkers();
                 }
+            }
+            if (monitor.isCanceled() == true) {
+                // The logs stop being read below.
+                return Status.CANCEL_STATUS;
+            }
 
-                // Allows other threads to run (and cancel!)
-                Thread.yield();
+            // Waits for the remaining outputs to be read. A child process of doxygen still
+            // holding the outputs open must not block the build forever.
+            inputLog.wakeUp();
+            errorLog.wakeUp();
+            if (inputLog.waitFor(OUTPUT_END_TIMEOUT, TimeUnit.MILLISECONDS) == false
+                    || errorLog.waitFor(OUTPUT_END_TIMEOUT, TimeUnit.MILLISECONDS) == false) {
+                inputLog.cancel();
+                errorLog.cancel();
+                String text = "eclox: the end of the doxygen output could not be read, it is still held open by another process.\n";
+                log.append(text);
+                fireLogUpdated(text);
             }
+            inputLogFeeder.flush();
+            errorLogFeeder.flush();
             subMonitor.worked(2);
 
             // Unlocks the doxyfile
             doxyIFile = releaseBuildFile(doxyIFile);
 
-            // Builds error and warning markers
-            createMarkers(subMonitor);
+            // Builds the remaining error and warning markers, and removes those that disappeared.
+            createMarkers();
+            markers.end(null);
+            publishing = false;
+            reportMarkerLimit();
             subMonitor.worked(3);
 
             // Ensure that doxygen process has finished.
-            buildProcess.waitFor();
+            exitValue = buildProcess.waitFor();
+            duration = System.currentTimeMillis() - startTime;
+            BuildScheduler.getDefault().release(slot);
             subMonitor.worked(4);
 
             // refresh the file
-            refreshFiles(doxyIFile, subMonitor);
+            refreshFiles(getDoxyfile().getIFile(), snapshot, subMonitor);
 
             // Job's done.
             subMonitor.done();
@@ -517,63 +716,144 @@ public class BuildJob extends Job {
         } catch (Throwable t) {
             return new Status(Status.ERROR, Plugin.getDefault().getBundle().getSymbolicName(), 0, t.getMessage(), t);
         } finally {
+            // A build failing while doxygen runs leaves neither the process nor the reading of its outputs behind.
+            this.buildProcess = null;
+            if (buildProcess != null && buildProcess.isAlive()) {
+                buildProcess.destroy();
+            }
+            if (inputLog != null) {
+                inputLog.cancel();
+            }
+            if (errorLog != null) {
+                errorLog.cancel();
+            }
+            // The partial markers of a canceled or failed build do not get mixed with the previous ones.
+            if (publishing) {
+                try {
+                    markers.abort(null);
+                } catch (CoreException e) {
+                    Plugin.log(e);
+                }
+            }
+            if (slot != null) {
+                BuildScheduler.getDefault().release(slot);
+            }
             doxyIFile = releaseBuildFile(doxyIFile);
         }
     }
 
     /**
-     * Creates resource markers while finding warning and errors in the
-     * managed log.
+     * Waits for a slot of the build scheduler, telling the position of the build in the log while waiting.
+     *
+     * @param	snapshot	the snapshot of the doxyfile giving the number of threads of the build
+     * @param	subMonitor	the progress monitor of the build
      *
-     * @param   monitor	the progress monitor used to watch for cancel requests.
-     * @throws  CoreException, URISyntaxException
-     */
-    private void createMarkers(IProgressMonitor monitor) throws CoreException, URISyntaxException {
-        Matcher matcher = null;
-
-        // Searches documentation errors and warnings.
-        matcher = problemPattern.matcher(log);
-        while (matcher.find() == true) {
-            Path resourcePath = new Path(matcher.group(1));
-            Integer lineNumer = new Integer(matcher.group(2));
-            int severity = Marker.toMarkerSeverity(matcher.group(3));
-            String message = new String(matcher.group(4));
-            createMarkersForResource(resourcePath, null, lineNumer, severity, message);
+     * @return	the granted slot
+     */
+    private BuildScheduler.Slot acquireSlot(DoxyfileSnapshot snapshot, final SubMonitor subMonitor) {
+        int threads = 1;
+        try {
+            String value = snapshot.getEffectiveValue("NUM_PROC_THREADS");
+            if (value != null && value.trim().isEmpty() == false) {
+                threads = Integer.parseInt(value.trim());
+            }
+        } catch (NumberFormatException e) {
+            // Doxygen uses a single thread then.
         }
-        matcher = null;
-
-        // Searches obsolete tags warnings.
-        matcher = obsoleteTagWarningPattern.matcher(log);
-        while (matcher.find() == true) {
-            String message = new String(matcher.group(0));
-            String setting = new String(matcher.group(1));
-            Integer lineNumer = new Integer(matcher.group(2));
-            Path resourcePath = new Path(matcher.group(3));
-            createMarkersForResource(resourcePath, setting, lineNumer, IMarker.SEVERITY_WARNING, message);
+
+        IFile doxyIFile = getDoxyfile().getIFile();
+        String project = (doxyIFile != null) ? doxyIFile.getProject().getName() : "";
+        return BuildScheduler.getDefault().acquire(project, threads, subMonitor, new BuildScheduler.IQueueListener() {
+            public void queued(int position) {
+                String text = "Waiting for other doxygen builds to finish, position " + (position + 1) + " in the queue...\n";
+                subMonitor.subTask(text.trim());
+                log.append(text);
+                fireLogUpdated(text);
+            }
+        });
+    }
+
+    /**
+     * Destroys the running doxygen process, so the job stops waiting for it.
+     *
+     * @see org.eclipse.core.runtime.jobs.Job#canceling()
+     */
+    protected void canceling() {
+        Process process = buildProcess;
+        if (process != null) {
+            process.destroy();
+        } else {
+            BuildScheduler.getDefault().wakeUp();
         }
-        matcher = null;
-    }
-
-    private void createMarkersForResource(Path resourcePath, String setting, Integer lineNumer, int severity,
-            String message) throws CoreException {
-        if (resourcePath != null) {
-            IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
-            try {
-                IFile[] files = workspaceRoot.findFilesForLocationURI(URIUtil.toURI(resourcePath));
-                for (IFile file : files) {
-                    IMarker marker = Marker.create(file, setting, lineNumer.intValue(), message, severity);
-                    if (marker != null) {
-                        markers.add(marker);
-                        break; // exit loop
-                    }
+    }
+
+    /**
+     * Stores the diagnostics recognized so far in the index, and publishes the
+     * resource markers of the files concerned, in a single workspace operation.
+     *
+     * @throws  CoreException
+     */
+    private void createMarkers() throws CoreException {
+        Set<IFile> changedFiles = new LinkedHashSet<IFile>();
+        for (Diagnostic diagnostic = diagnostics.poll(); diagnostic != null; diagnostic = diagnostics.poll()) {
+            IFile file = LocationResolver.getDefault().resolve(diagnostic.getPath());
+            diagnosticIndex.add(file, diagnostic);
+            if (file != null) {
+                changedFiles.add(file);
+            }
+        }
+        publishMarkers(changedFiles);
+    }
+
+    /**
+     * Publishes the markers of the diagnostics added to the given files since the last
+     * publication, according to the marker preferences.
+     *
+     * @param	files	the files whose markers get updated
+     *
+     * @throws  CoreException
+     */
+    private void publishMarkers(Collection<IFile> files) throws CoreException {
+        MarkerPolicy policy = markerPolicy;
+        if (files.isEmpty() || policy == null) {
+            return;
+        }
+        synchronized (policy) {
+            Map<IFile, Map<Diagnostic, Integer>> fileDiagnostics = new HashMap<IFile, Map<Diagnostic, Integer>>();
+            for (IFile file : files) {
+                if (policy.isLazy() && openedFiles.contains(file) == false) {
+                    continue;
+                }
+                Map<Diagnostic, Integer> selected = policy.select(file, diagnosticIndex);
+                if (selected.isEmpty() == false) {
+                    fileDiagnostics.put(file, selected);
+                }
+            }
+            // The diagnostics left out because of the build limit share a single marker on the doxyfile.
+            IFile doxyIFile = getDoxyfile().getIFile();
+            Diagnostic limitReached = (doxyIFile != null) ? policy.getLimitReached(doxyfile.getFullPath()) : null;
+            if (limitReached != null) {
+                Map<Diagnostic, Integer> selected = fileDiagnostics.get(doxyIFile);
+                if (selected == null) {
+                    selected = new LinkedHashMap<Diagnostic, Integer>();
+                    fileDiagnostics.put(doxyIFile, selected);
                 }
-            } catch (IllegalArgumentException ex) {
-                // no op, because the resource cannot be found, so it's not absolute
-                // see IWorkspaceRoot
-                //if (!location.isAbsolute())
-                //    throw new IllegalArgumentException()
-                // see https://github.com/anb0s/eclox/issues/195
+                selected.put(limitReached, Integer.valueOf(policy.getOmittedCount()));
             }
+            markers.publish(fileDiagnostics, null);
+        }
+    }
+
+    /**
+     * Tells in the log when the markers of the build have been limited.
+     */
+    private void reportMarkerLimit() {
+        MarkerPolicy policy = markerPolicy;
+        if (policy != null && policy.getOmittedCount() > 0) {
+            String text = "eclox: the limit of " + policy.getBuildLimit() + " markers per build has been reached, "
+                    + diagnosticIndex.getDiagnosticCount() + " warnings and errors have been reported.\n";
+            log.append(text);
+            fireLogUpdated(text);
         }
     }
 
@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eclox.core.Plugin;
+
+/**
+ * Implements the store of the output log of a build job, with a bounded memory usage.
+ *
+ * The most recent lines are kept in memory. Once they exceed the memory limit, the oldest
+ * of them are spilled to segment files in the log directory, encoded in UTF-8. A sparse
+ * index of the spilled lines gives random access to them. The whole log can be read
+ * through a streaming reader, without building it in memory.
+ *
+ * @author Andre Bossert
+ */
+public class BuildLog {
+
+    private static final int MEMORY_LIMIT = 256 * 1024; ///< the number of characters kept in memory at most
+    private static final long SEGMENT_SIZE = 16 * 1024 * 1024; ///< the size in bytes from which a new segment file gets started
+    private static final int INDEX_INTERVAL = 256; ///< the number of spilled lines between two entries of the sparse index
+    private static final String FILE_PREFIX = "build"; ///< the prefix of the segment file names
+
+    private static File directory; ///< the directory receiving the segment files
+    private static final AtomicInteger logCount = new AtomicInteger(); ///< the number of created logs, used to name their files
+
+    private final int number = logCount.incrementAndGet(); ///< the number of the log, used to name its files
+    private final StringBuilder tail = new StringBuilder(); ///< the lines not spilled, the last one may be incomplete
+    private int tailLineCount = 0; ///< the number of complete lines in the tail
+    private int spilledLineCount = 0; ///< the number of spilled lines
+    private final List<File> segments = new ArrayList<File>(); ///< the segment files
+    private long segmentSize = 0; ///< the size in bytes of the last segment
+    private OutputStream output; ///< the stream writing the last segment, null when none
+    private int[] indexSegments = new int[16]; ///< the segment of each indexed line
+    private long[] indexOffsets = new long[16]; ///< the offset in its segment of each indexed line
+    private int indexSize = 0; ///< the number of index entries
+    private boolean spillFailed = false; ///< tells if spilling failed, the log is then kept in memory
+
+    /**
+     * Sets the directory receiving the segment files, and removes the files left there by previous sessions.
+     *
+     * @param	logDirectory	a directory, created when missing
+     */
+    public static synchronized void setDirectory(File logDirectory) {
+        directory = logDirectory;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(FILE_PREFIX)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static synchronized File getDirectory() throws IOException {
+        if (directory == null) {
+            directory = new File(System.getProperty("java.io.tmpdir"), "eclox-logs");
+        }
+        if (directory.isDirectory() == false && directory.mkdirs() == false) {
+            throw new IOException("Unable to create the log directory " + directory + ".");
+        }
+        return directory;
+    }
+
+    /**
+     * Appends text to the log.
+     *
+     * @param	text	a string containing the text to append
+     */
+    public synchronized void append(String text) {
+        tail.append(text);
+        for (int i = 0; i < text.length(); ++i) {
+            if (text.charAt(i) == '\n') {
+                ++tailLineCount;
+            }
+        }
+        if (tail.length() > MEMORY_LIMIT && spillFailed == false) {
+            spill();
+        }
+    }
+
+    /**
+     * Removes the whole content of the log, including its segment files.
+     */
+    public synchronized void clear() {
+        closeOutput();
+        for (File segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        segmentSize = 0;
+        indexSize = 0;
+        spilledLineCount = 0;
+        tail.setLength(0);
+        tailLineCount = 0;
+        spillFailed = false;
+    }
+
+    /**
+     * Releases the resources of the log, that is emptied.
+     */
+    public void dispose() {
+        clear();
+    }
+
+    /**
+     * Retrieves the number of lines of the log, including an incomplete last line.
+     *
+     * @return	a line count
+     */
+    public synchronized int getLineCount() {
+        boolean incomplete = tail.length() > 0 && tail.charAt(tail.length() - 1) != '\n';
+        return spilledLineCount + tailLineCount + (incomplete ? 1 : 0);
+    }
+
+    /**
+     * Retrieves the given line.
+     *
+     * @param	line	a line number, starting at 0
+     *
+     * @return	a string containing the line without its terminator
+     */
+    public String getLine(int line) throws IOException {
+        return getLines(line, 1).get(0);
+    }
+
+    /**
+     * Retrieves a range of lines.
+     *
+     * @param	first	the number of the first line, starting at 0
+     * @param	count	the number of lines, truncated at the end of the log
+     *
+     * @return	a list of strings containing the lines without their terminator
+     */
+    public synchronized List<String> getLines(int first, int count) throws IOException {
+        int lineCount = getLineCount();
+        if (first < 0 || first > lineCount) {
+            throw new IndexOutOfBoundsException("Line " + first + " out of " + lineCount + ".");
+        }
+        count = Math.min(count, lineCount - first);
+
+        List<String> lines = new ArrayList<String>(count);
+        if (first < spilledLineCount) {
+            readSpilledLines(first, Math.min(count, spilledLineCount - first), lines);
+        }
+        int line = Math.max(first, spilledLineCount) - spilledLineCount;
+        int start = 0;
+        for (int i = 0; i < line; ++i) {
+            start = tail.indexOf("\n", start) + 1;
+        }
+        while (lines.size() < count) {
+            int end = tail.indexOf("\n", start);
+            if (end < 0) {
+                end = tail.length();
+            }
+            lines.add(tail.substring(start, end));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * Opens a reader on the whole log, as it is when opened. Text appended afterwards
+     * is not read. The log must not be cleared while reading.
+     *
+     * @return	a reader to close after use
+     */
+    public synchronized Reader openReader() throws IOException {
+        final List<InputStream> streams = new ArrayList<InputStream>();
+        for (int i = 0; i < segments.size(); ++i) {
+            long size = (i == segments.size() - 1) ? segmentSize : segments.get(i).length();
+            streams.add(new BoundedInputStream(new FileInputStream(segments.get(i)), size));
+        }
+        final Reader tailReader = new StringReader(tail.toString());
+        final Reader spilledReader = new InputStreamReader(new SequenceInputStream(Collections.enumeration(streams)),
+                StandardCharsets.UTF_8);
+        return new Reader() {
+
+            private boolean spilledRead = false;
+
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (spilledRead == false) {
+                    int read = spilledReader.read(buffer, offset, length);
+                    if (read >= 0) {
+                        return read;
+                    }
+                    spilledRead = true;
+                }
+                return tailReader.read(buffer, offset, length);
+            }
+
+            public void close() throws IOException {
+                spilledReader.close();
+            }
+        };
+    }
+
+    /**
+     * Retrieves the whole log.
+     *
+     * @return	a string containing the log, that may be large
+     */
+    public String getText() throws IOException {
+        Reader reader = openReader();
+        try {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+                text.append(buffer, 0, read);
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes the complete lines of the older half of the tail to the last segment file.
+     * Spilling errors are logged and the log is then kept in memory.
+     */
+    private void spill() {
+        int end = tail.lastIndexOf("\n", tail.length() - MEMORY_LIMIT / 2) + 1;
+        if (end <= 0) {
+            return;
+        }
+        byte[] bytes = tail.substring(0, end).getBytes(StandardCharsets.UTF_8);
+        try {
+            if (output == null) {
+                File segment = new File(getDirectory(), FILE_PREFIX + number + "." + segments.size() + ".log");
+                output = new FileOutputStream(segment);
+                segments.add(segment);
+                segmentSize = 0;
+            }
+            output.write(bytes);
+        } catch (IOException e) {
+            Plugin.log(e);
+            closeOutput();
+            spillFailed = true;
+            return;
+        }
+
+        // Indexes the spilled lines.
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; ++i) {
+            if (bytes[i] == '\n') {
+                if (spilledLineCount % INDEX_INTERVAL == 0) {
+                    addIndexEntry(segments.size() - 1, segmentSize + lineStart);
+                }
+                ++spilledLineCount;
+                --tailLineCount;
+                lineStart = i + 1;
+            }
+        }
+        segmentSize += bytes.length;
+        tail.delete(0, end);
+
+        if (segmentSize >= SEGMENT_SIZE) {
+            closeOutput();
+        }
+    }
+
+    private void addIndexEntry(int segment, long offset) {
+        if (indexSize == indexSegments.length) {
+            indexSegments = Arrays.copyOf(indexSegments, indexSize * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+        }
+        indexSegments[indexSize] = segment;
+        indexOffsets[indexSize] = offset;
+        ++indexSize;
+    }
+
+    private void closeOutput() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                Plugin.log(e);
+            }
+            output = null;
+        }
+    }
+
+    /**
+     * Reads spilled lines, starting from the closest indexed line.
+     */
+    private void readSpilledLines(int first, int count, List<String> lines) throws IOException {
+        int entry = first / INDEX_INTERVAL;
+        int line = entry * INDEX_INTERVAL;
+        int segment = indexSegments[entry];
+        long offset = indexOffsets[entry];
+        ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+        while (lines.size() < count && segment < segments.size()) {
+            long size = (segment == segments.size() - 1) ? segmentSize : segments.get(segment).length();
+            InputStream input = new BufferedInputStream(new FileInputStream(segments.get(segment)));
+            try {
+                if (input.skip(offset) != offset) {
+                    throw new IOException("Truncated log segment " + segments.get(segment) + ".");
+                }
+                for (long position = offset; position < size && lines.size() < count; ++position) {
+                    int b = input.read();
+                    if (b < 0) {
+                        throw new IOException("Truncated log segment " + segments.get(segment) + ".");
+                    } else if (b == '\n') {
+                        if (line >= first) {
+                            lines.add(new String(lineBytes.toByteArray(), StandardCharsets.UTF_8));
+                        }
+                        lineBytes.reset();
+                        ++line;
+                    } else if (line >= first) {
+                        lineBytes.write(b);
+                    }
+                }
+            } finally {
+                input.close();
+            }
+            ++segment;
+            offset = 0;
+        }
+    }
+
+    /**
+     * Implements an input stream reading a given number of bytes of another stream.
+     */
+    private static class BoundedInputStream extends InputStream {
+
+        private final InputStream input; ///< the read stream
+        private long remaining; ///< the number of bytes left to read
+
+        BoundedInputStream(InputStream input, long size) {
+            this.input = input;
+            this.remaining = size;
+        }
+
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = input.read();
+            if (b >= 0) {
+                --remaining;
+            }
+            return b;
+        }
+
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IPreferencesService;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+
+import eclox.core.IPreferences;
+import eclox.core.Plugin;
+
+/**
+ * Implements the scheduler bounding the number of concurrent doxygen processes.
+ *
+ * A build job acquires a slot before starting doxygen, and releases it once done.
+ * By default, the capacity is the number of processors, and each build weighs the
+ * number of threads doxygen uses for it (NUM_PROC_THREADS), so that the running builds
+ * do not use more threads than processors. When the maximum number of builds is set in
+ * the preferences, each build weighs one instead.
+ *
+ * Waiting builds are queued per project, and the projects are served in turn, so
+ * that the builds of a project cannot delay the builds of the others for long.
+ * The waiting builds are told about their position in the queue.
+ *
+ * @author Andre Bossert
+ */
+public final class BuildScheduler {
+
+    /**
+     * Defines the time in milliseconds after which a waiting build checks its progress monitor.
+     */
+    private static final long CANCEL_CHECK_PERIOD = 500;
+
+    /**
+     * Defines the interface notified about the position of a waiting build.
+     */
+    interface IQueueListener {
+
+        /**
+         * Notifies about the position of the build in the queue.
+         *
+         * @param	position	the number of builds that will start before, starting at 0
+         */
+        void queued(int position);
+    }
+
+    /**
+     * Implements a slot request, that is granted or waiting in the queue.
+     */
+    static final class Slot {
+        private final int weight; ///< the weight of the build
+        private boolean granted = false; ///< tells if the slot has been granted
+
+        private Slot(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final BuildScheduler defaultScheduler = new BuildScheduler(); ///< the shared scheduler
+
+    private final Map<String, LinkedList<Slot>> queues = new LinkedHashMap<String, LinkedList<Slot>>(); ///< the waiting requests by project, the next project to serve first
+    private int capacity = 1; ///< the total weight of the builds that may run at once
+    private int used = 0; ///< the total weight of the running builds
+
+    /**
+     * Retrieves the shared scheduler.
+     *
+     * @return	the scheduler
+     */
+    public static BuildScheduler getDefault() {
+        return defaultScheduler;
+    }
+
+    /**
+     * Retrieves the number of builds waiting for a slot.
+     *
+     * @return	a build count
+     */
+    public synchronized int getQueueLength() {
+        int length = 0;
+        for (LinkedList<Slot> queue : queues.values()) {
+            length += queue.size();
+        }
+        return length;
+    }
+
+    /**
+     * Waits for a slot to run a build.
+     *
+     * @param	project		the name of the project of the built doxyfile, empty when outside the workspace
+     * @param	threads		the value of NUM_PROC_THREADS for the build, 0 for all processors
+     * @param	monitor		the progress monitor of the build
+     * @param	listener	the listener notified about the position of the build while waiting
+     *
+     * @return	the granted slot, to release once the build is done
+     *
+     * @throws	OperationCanceledException	when the build has been canceled while waiting
+     */
+    Slot acquire(String project, int threads, IProgressMonitor monitor, IQueueListener listener) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int maxBuilds = readMaxBuilds();
+        int weight;
+        if (maxBuilds > 0) {
+            weight = 1;
+        } else {
+            weight = Math.max(1, Math.min(processors, (threads <= 0) ? processors : threads));
+        }
+
+        Slot slot = new Slot(weight);
+        synchronized (this) {
+            capacity = (maxBuilds > 0) ? maxBuilds : processors;
+            LinkedList<Slot> queue = queues.get(project);
+            if (queue == null) {
+                queue = new LinkedList<Slot>();
+                queues.put(project, queue);
+            }
+            queue.add(slot);
+            dispatch();
+        }
+
+        int reportedPosition = -1;
+        while (true) {
+            int position;
+            synchronized (this) {
+                if (slot.granted == false && monitor.isCanceled()) {
+                    removeWaiting(slot);
+                    dispatch();
+                    throw new OperationCanceledException();
+                }
+                if (slot.granted == true) {
+                    return slot;
+                }
+                position = getPosition(slot);
+                if (position == reportedPosition) {
+                    try {
+                        wait(CANCEL_CHECK_PERIOD);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        removeWaiting(slot);
+                        dispatch();
+                        throw new OperationCanceledException();
+                    }
+                    continue;
+                }
+            }
+            // Notifies outside of the lock, listeners may update the user interface.
+            reportedPosition = position;
+            listener.queued(position);
+        }
+    }
+
+    /**
+     * Releases the given slot, once the build is done.
+     *
+     * @param	slot	a slot returned by acquire
+     */
+    synchronized void release(Slot slot) {
+        if (slot.granted == true) {
+            slot.granted = false;
+            used -= slot.weight;
+            dispatch();
+        }
+    }
+
+    /**
+     * Wakes up the waiting builds, so they check whether they have been canceled.
+     */
+    synchronized void wakeUp() {
+        notifyAll();
+    }
+
+    /**
+     * Grants slots to the waiting builds, serving the projects in turn. A build that
+     * does not fit blocks the following ones, so heavy builds are not starved.
+     */
+    private void dispatch() {
+        boolean granted = false;
+        while (queues.isEmpty() == false) {
+            Iterator<Map.Entry<String, LinkedList<Slot>>> i = queues.entrySet().iterator();
+            Map.Entry<String, LinkedList<Slot>> entry = i.next();
+            Slot slot = entry.getValue().getFirst();
+            if (used > 0 && used + slot.weight > capacity) {
+                break;
+            }
+            slot.granted = true;
+            used += slot.weight;
+            granted = true;
+
+            // Moves the project to the end of the turn.
+            i.remove();
+            entry.getValue().removeFirst();
+            if (entry.getValue().isEmpty() == false) {
+                queues.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (granted == true) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Retrieves the number of waiting builds that will start before the given one.
+     */
+    private int getPosition(Slot slot) {
+        List<LinkedList<Slot>> turns = new ArrayList<LinkedList<Slot>>(queues.values());
+        int position = 0;
+        for (int round = 0; turns.isEmpty() == false; ++round) {
+            for (Iterator<LinkedList<Slot>> i = turns.iterator(); i.hasNext();) {
+                LinkedList<Slot> queue = i.next();
+                if (round >= queue.size()) {
+                    i.remove();
+                } else if (queue.get(round) == slot) {
+                    return position;
+                } else {
+                    ++position;
+                }
+            }
+        }
+        return position;
+    }
+
+    private void removeWaiting(Slot slot) {
+        for (Iterator<LinkedList<Slot>> i = queues.values().iterator(); i.hasNext();) {
+            LinkedList<Slot> queue = i.next();
+            if (queue.remove(slot) && queue.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Reads the maximum number of concurrent builds from the preferences.
+     *
+     * @return	a build count, 0 for automatic
+     */
+    private static int readMaxBuilds() {
+        IPreferencesService service = Platform.getPreferencesService();
+        final String PLUGIN_ID = Plugin.getDefault().getBundle().getSymbolicName();
+        IEclipsePreferences defaultNode = DefaultScope.INSTANCE.getNode(PLUGIN_ID);
+        IEclipsePreferences instanceNode = InstanceScope.INSTANCE.getNode(PLUGIN_ID);
+        IEclipsePreferences[] nodes = new IEclipsePreferences[] { instanceNode, defaultNode };
+        try {
+            return Math.max(0, Integer.parseInt(service.get(IPreferences.BUILD_MAX_PROCESSES, "0", nodes).trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
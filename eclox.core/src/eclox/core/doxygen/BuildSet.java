@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+
+import eclox.core.Plugin;
+import eclox.core.doxyfiles.Doxyfile;
+import eclox.core.doxyfiles.Setting;
+
+/**
+ * Implements a set of doxyfiles to build in the order of their tag file dependencies.
+ *
+ * A doxyfile depends on the doxyfiles generating (GENERATE_TAGFILE) the tag files it
+ * uses (TAGFILES). Relative tag file paths are resolved against the directory of their
+ * doxyfile, that is the working directory of doxygen. The doxyfiles on a dependency
+ * cycle cannot be built, and neither can their dependants.
+ *
+ * @author Andre Bossert
+ *
+ * @see BuildSetJob
+ */
+public class BuildSet {
+
+    /**
+     * Defines the states of the nodes of a build set.
+     */
+    public enum State {
+        WAITING, RUNNING, SUCCEEDED, FAILED, SKIPPED
+    }
+
+    /**
+     * Implements a doxyfile of the build set, with its dependencies.
+     */
+    public static class Node {
+
+        private final Doxyfile doxyfile; ///< the doxyfile to build
+        private final Set<Node> dependencies = new LinkedHashSet<Node>(); ///< the nodes generating the used tag files
+        private final Set<Node> dependants = new LinkedHashSet<Node>(); ///< the nodes using the generated tag file
+        private State state = State.WAITING; ///< the build state
+        private String reason; ///< the reason of the failure or skip, or null
+        private long duration = 0; ///< the time in milliseconds doxygen ran
+
+        private Node(Doxyfile doxyfile) {
+            this.doxyfile = doxyfile;
+        }
+
+        public Doxyfile getDoxyfile() {
+            return doxyfile;
+        }
+
+        public Collection<Node> getDependencies() {
+            return Collections.unmodifiableSet(dependencies);
+        }
+
+        public Collection<Node> getDependants() {
+            return Collections.unmodifiableSet(dependants);
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+
+        /**
+         * Retrieves the reason why the node failed or has been skipped.
+         *
+         * @return	a string containing the reason or null
+         */
+        public synchronized String getReason() {
+            return reason;
+        }
+
+        /**
+         * Retrieves the time doxygen ran to build the node.
+         *
+         * @return	a time in milliseconds
+         */
+        public synchronized long getDuration() {
+            return duration;
+        }
+
+        synchronized void setState(State state, String reason) {
+            this.state = state;
+            this.reason = reason;
+        }
+
+        synchronized void setDuration(long duration) {
+            this.duration = duration;
+        }
+
+        @Override
+        public String toString() {
+            return doxyfile.getFullPath();
+        }
+    }
+
+    private final List<Node> nodes = new ArrayList<Node>(); ///< the nodes in build order, followed by the nodes on or after a cycle
+    private final List<Node> cycle = new ArrayList<Node>(); ///< the nodes on a dependency cycle
+
+    private BuildSet() {
+    }
+
+    /**
+     * Creates the build set of the given doxyfiles.
+     *
+     * @param	doxyIFiles	the doxyfiles to build
+     *
+     * @return	a new build set
+     */
+    public static BuildSet create(Collection<IFile> doxyIFiles) {
+        BuildSet buildSet = new BuildSet();
+        Map<File, List<Node>> generators = new HashMap<File, List<Node>>();
+        Map<Node, List<File>> usedTagFiles = new HashMap<Node, List<File>>();
+        List<Node> created = new ArrayList<Node>();
+
+        // Reads the tag files of all doxyfiles.
+        for (IFile doxyIFile : doxyIFiles) {
+            Doxyfile doxyfile = new Doxyfile(doxyIFile, null);
+            Node node = new Node(doxyfile);
+            created.add(node);
+            try {
+                doxyfile.load();
+            } catch (CoreException | IOException e) {
+                Plugin.log(e);
+                continue;
+            }
+            File directory = doxyfile.getDirectory();
+            String generated = doxyfile.getEffectiveValue("GENERATE_TAGFILE");
+            if (generated != null) {
+                for (String path : Setting.splitValue(generated, new ArrayList<String>())) {
+                    File tagFile = makeAbsolute(directory, path);
+                    List<Node> tagGenerators = generators.get(tagFile);
+                    if (tagGenerators == null) {
+                        tagGenerators = new ArrayList<Node>(1);
+                        generators.put(tagFile, tagGenerators);
+                    }
+                    tagGenerators.add(node);
+                }
+            }
+            List<File> used = new ArrayList<File>();
+            String tagFiles = doxyfile.getEffectiveValue("TAGFILES");
+            if (tagFiles != null) {
+                for (String entry : Setting.splitValue(tagFiles, new ArrayList<String>())) {
+                    // An entry is either a tag file, or a tag file and the location of its documentation.
+                    int separator = entry.indexOf('=');
+                    String path = (separator >= 0) ? entry.substring(0, separator).trim() : entry;
+                    if (path.isEmpty() == false) {
+                        used.add(makeAbsolute(directory, path));
+                    }
+                }
+            }
+            usedTagFiles.put(node, used);
+        }
+
+        // Links the doxyfiles.
+        for (Map.Entry<Node, List<File>> entry : usedTagFiles.entrySet()) {
+            Node node = entry.getKey();
+            for (File tagFile : entry.getValue()) {
+                List<Node> tagGenerators = generators.get(tagFile);
+                if (tagGenerators == null) {
+                    continue;
+                }
+                if (tagGenerators.size() > 1) {
+                    Plugin.getDefault().logWarning("The tag file " + tagFile + " is generated by several doxyfiles: "
+                            + tagGenerators + ".");
+                }
+                for (Node generator : tagGenerators) {
+                    if (generator != node) {
+                        node.dependencies.add(generator);
+                        generator.dependants.add(node);
+                    }
+                }
+            }
+        }
+
+        buildSet.sort(created);
+        return buildSet;
+    }
+
+    private static File makeAbsolute(File directory, String path) {
+        File file = new File(path);
+        if (file.isAbsolute() == false && directory != null) {
+            file = new File(directory, path);
+        }
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+
+    /**
+     * Sorts the nodes in build order, and finds the nodes on a dependency cycle.
+     */
+    private void sort(List<Node> created) {
+        Map<Node, Integer> pendingDependencies = new HashMap<Node, Integer>();
+        LinkedList<Node> ready = new LinkedList<Node>();
+        for (Node node : created) {
+            pendingDependencies.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty()) {
+                ready.add(node);
+            }
+        }
+        while (ready.isEmpty() == false) {
+            Node node = ready.removeFirst();
+            nodes.add(node);
+            for (Node dependant : node.dependants) {
+                int pending = pendingDependencies.get(dependant) - 1;
+                pendingDependencies.put(dependant, pending);
+                if (pending == 0) {
+                    ready.add(dependant);
+                }
+            }
+        }
+        if (nodes.size() == created.size()) {
+            return;
+        }
+
+        // The remaining nodes are on a cycle or depend on one. Removes those without
+        // remaining dependants until only the nodes on or between cycles are left.
+        Set<Node> remaining = new LinkedHashSet<Node>(created);
+        remaining.removeAll(nodes);
+        Set<Node> onCycle = new LinkedHashSet<Node>(remaining);
+        boolean pruned = true;
+        while (pruned == true) {
+            pruned = false;
+            for (Node node : new ArrayList<Node>(onCycle)) {
+                boolean hasDependant = false;
+                for (Node dependant : node.dependants) {
+                    hasDependant = hasDependant || onCycle.contains(dependant);
+                }
+                if (hasDependant == false) {
+                    onCycle.remove(node);
+                    pruned = true;
+                }
+            }
+        }
+        cycle.addAll(onCycle);
+        for (Node node : remaining) {
+            node.setState(State.SKIPPED,
+                    onCycle.contains(node) ? "on a tag file dependency cycle" : "depends on a tag file dependency cycle");
+        }
+        nodes.addAll(remaining);
+    }
+
+    /**
+     * Retrieves the nodes of the build set, in build order. The nodes that cannot
+     * be built because of dependency cycles come last.
+     *
+     * @return	an unmodifiable list of nodes
+     */
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Retrieves the nodes on a dependency cycle.
+     *
+     * @return	an unmodifiable list of nodes, empty when there are no cycles
+     */
+    public List<Node> getCycle() {
+        return Collections.unmodifiableList(cycle);
+    }
+
+    /**
+     * Retrieves the critical path of the built nodes, that is the chain of dependencies
+     * whose doxygen durations add up to the longest time. No parallel execution can
+     * build the set faster.
+     *
+     * @return	a list of nodes in build order, empty when nothing has been built
+     */
+    public List<Node> getCriticalPath() {
+        Map<Node, Long> finishTimes = new HashMap<Node, Long>();
+        Map<Node, Node> predecessors = new HashMap<Node, Node>();
+        Node last = null;
+        for (Node node : nodes) {
+            if (node.getState() != State.SUCCEEDED) {
+                continue;
+            }
+            long start = 0;
+            for (Node dependency : node.dependencies) {
+                Long finish = finishTimes.get(dependency);
+                if (finish != null && finish > start) {
+                    start = finish;
+                    predecessors.put(node, dependency);
+                }
+            }
+            long finish = start + node.getDuration();
+            finishTimes.put(node, finish);
+            if (last == null || finish > finishTimes.get(last)) {
+                last = node;
+            }
+        }
+        LinkedList<Node> path = new LinkedList<Node>();
+        for (Node node = last; node != null; node = predecessors.get(node)) {
+            path.addFirst(node);
+        }
+        return path;
+    }
+
+    /**
+     * Retrieves a report of the build states of the nodes and of the critical path.
+     *
+     * @param	elapsedTime	the time in milliseconds the build of the set took
+     *
+     * @return	a string containing the report
+     */
+    public String getReport(long elapsedTime) {
+        StringBuilder report = new StringBuilder();
+        for (Node node : nodes) {
+            report.append(node.getState().name().toLowerCase()).append(": ").append(node);
+            if (node.getState() == State.SUCCEEDED) {
+                report.append(" (").append(formatTime(node.getDuration())).append(")");
+            } else if (node.getReason() != null) {
+                report.append(" (").append(node.getReason()).append(")");
+            }
+            report.append('\n');
+        }
+
+        List<Node> criticalPath = getCriticalPath();
+        long criticalTime = 0;
+        for (Node node : criticalPath) {
+            criticalTime += node.getDuration();
+        }
+        report.append("\nElapsed time: ").append(formatTime(elapsedTime)).append('\n');
+        report.append("Critical path: ").append(formatTime(criticalTime));
+        for (Node node : criticalPath) {
+            report.append("\n  ").append(node).append(" (").append(formatTime(node.getDuration())).append(")");
+        }
+        return report.toString();
+    }
+
+    private static String formatTime(long milliseconds) {
+        return String.format("%d.%03d s", milliseconds / 1000, milliseconds % 1000);
+    }
+
+}
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
+import eclox.core.Plugin;
+import eclox.core.doxyfiles.ResourceCollector;
+
+/**
+ * Implements the job building a build set.
+ *
+ * When given a resource, the job first collects the doxyfiles it contains and
+ * creates their build set, so the workspace and the doxyfiles are not read by the caller.
+ * The build jobs of the doxyfiles whose dependencies have been built are scheduled
+ * by the job as soon as they are not running, and the build scheduler bounds the number of them running concurrently.
+ * The dependants of a doxyfile whose build failed are skipped. Once done, the result
+ * of the job contains the report of the build set. Canceling the job cancels the
+ * running builds and skips the others, without waiting for the builds to end.
+ * The nodes keep their states, so a build set gets built once.
+ *
+ * @author Andre Bossert
+ */
+public class BuildSetJob extends Job {
+
+    /**
+     * Defines the time in milliseconds after which the wait for the builds checks the progress monitor.
+     */
+    private static final long CANCEL_CHECK_PERIOD = 500;
+
+    private final IResource root; ///< the resource to search for doxyfiles, null when the build set is given
+    private volatile BuildSet buildSet; ///< the build set, null until created
+    private int pending = 0; ///< the number of nodes neither built nor skipped yet
+    private final List<BuildSet.Node> ready = new LinkedList<BuildSet.Node>(); ///< the nodes whose dependencies have been built, waiting to be started
+    private boolean canceled = false; ///< tells if the build set has been canceled
+    private volatile String report; ///< the report of the last run, null before
+
+    /**
+     * Constructor
+     *
+     * @param	buildSet	the build set to build
+     */
+    public BuildSetJob(BuildSet buildSet) {
+        super("Doxygen Build Set [" + buildSet.getNodes().size() + " doxyfiles]");
+        this.root = null;
+        this.buildSet = buildSet;
+        setPriority(Job.BUILD);
+        setUser(true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param	root	the resource to search for doxyfiles, whose build set gets created by the job
+     */
+    public BuildSetJob(IResource root) {
+        super("Doxygen Build Set [" + root.getFullPath() + "]");
+        this.root = root;
+        setPriority(Job.BUILD);
+        setUser(true);
+    }
+
+    /**
+     * Retrieves the build set.
+     *
+     * @return	the build set, or null when the job has not created it yet
+     */
+    public BuildSet getBuildSet() {
+        return buildSet;
+    }
+
+    /**
+     * Retrieves the report of the last run.
+     *
+     * @return	a string containing the report, or null when the job has not run yet
+     */
+    public String getReport() {
+        return report;
+    }
+
+    /**
+     * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+     */
+    protected IStatus run(IProgressMonitor monitor) {
+        long startTime = System.currentTimeMillis();
+        if (buildSet == null) {
+            try {
+                buildSet = create(root);
+            } catch (CoreException e) {
+                return e.getStatus();
+            }
+            setName("Doxygen Build Set [" + buildSet.getNodes().size() + " doxyfiles]");
+            buildSetCreated(buildSet);
+        }
+        if (monitor.isCanceled()) {
+            return Status.CANCEL_STATUS;
+        }
+        List<BuildSet.Node> nodes = buildSet.getNodes();
+
+        synchronized (this) {
+            pending = 0;
+            canceled = false;
+            ready.clear();
+            for (BuildSet.Node node : nodes) {
+                if (node.getState() == BuildSet.State.WAITING) {
+                    ++pending;
+                    if (node.getDependencies().isEmpty()) {
+                        ready.add(node);
+                    }
+                }
+            }
+
+            // Starts the ready nodes and waits for the builds, canceling them when the job gets canceled.
+            int total = pending;
+            monitor.beginTask(getName(), total);
+            while (pending > 0) {
+                if (monitor.isCanceled()) {
+                    cancel(nodes);
+                    break;
+                }
+                startReady();
+                monitor.subTask((total - pending) + " of " + total + " doxyfiles done");
+                try {
+                    wait(CANCEL_CHECK_PERIOD);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel(nodes);
+                    break;
+                }
+            }
+            monitor.done();
+        }
+
+        report = buildSet.getReport(System.currentTimeMillis() - startTime);
+        return canceled ? Status.CANCEL_STATUS
+                : new Status(IStatus.OK, Plugin.getDefault().getBundle().getSymbolicName(), report);
+    }
+
+    /**
+     * Notifies that the job has created the build set, before its builds get scheduled.
+     * Called in the job, does nothing by default.
+     *
+     * @param	buildSet	the created build set
+     */
+    protected void buildSetCreated(BuildSet buildSet) {
+    }
+
+    /**
+     * Creates the build set of the doxyfiles contained in the given resource.
+     */
+    private static BuildSet create(IResource root) throws CoreException {
+        Collection<IFile> doxyIFiles = new LinkedList<IFile>();
+        for (IResource resource : ResourceCollector.run(root).getDoxyfiles()) {
+            doxyIFiles.add((IFile) resource);
+        }
+        return BuildSet.create(doxyIFiles);
+    }
+
+    /**
+     * Starts the ready nodes.
+     *
+     * The build job of a doxyfile is shared, and may be running for a build started
+     * apart. The node then stays ready until that run is over, so that the result of
+     * the node is never the one of a run started before the node. A job waiting to run
+     * has not started yet, so its next run counts, even when it gets canceled before.
+     */
+    private void startReady() {
+        for (Iterator<BuildSet.Node> i = ready.iterator(); i.hasNext();) {
+            final BuildSet.Node node = i.next();
+            final BuildJob job = BuildJob.getJob(node.getDoxyfile(), true);
+            if (job.getState() == Job.RUNNING) {
+                continue;
+            }
+            i.remove();
+            node.setState(BuildSet.State.RUNNING, null);
+            job.addJobChangeListener(new JobChangeAdapter() {
+                public void done(IJobChangeEvent event) {
+                    job.removeJobChangeListener(this);
+                    finished(node, job, event.getResult());
+                }
+            });
+            job.schedule();
+        }
+    }
+
+    /**
+     * Cancels the running builds and skips the nodes not started yet. The job does not
+     * wait for the canceled builds to end.
+     */
+    private void cancel(List<BuildSet.Node> nodes) {
+        canceled = true;
+        ready.clear();
+        for (BuildSet.Node node : nodes) {
+            if (node.getState() == BuildSet.State.RUNNING) {
+                BuildJob job = BuildJob.findJob(node.getDoxyfile());
+                if (job != null) {
+                    job.cancel();
+                }
+                resolve(node, BuildSet.State.FAILED, "canceled");
+            } else if (node.getState() == BuildSet.State.WAITING) {
+                resolve(node, BuildSet.State.SKIPPED, "build set canceled");
+            }
+        }
+    }
+
+    /**
+     * Records the result of the build of the given node, and starts or skips its dependants.
+     */
+    private synchronized void finished(BuildSet.Node node, BuildJob job, IStatus result) {
+        if (canceled == true || node.getState() != BuildSet.State.RUNNING) {
+            // The build set has been canceled meanwhile.
+            return;
+        }
+        if (result.isOK() && job.getExitValue() == 0) {
+            node.setDuration(job.getDuration());
+            resolve(node, BuildSet.State.SUCCEEDED, null);
+            for (BuildSet.Node dependant : node.getDependants()) {
+                if (dependant.getState() == BuildSet.State.WAITING && isReady(dependant)) {
+                    ready.add(dependant);
+                }
+            }
+        } else {
+            String reason;
+            if (result.getSeverity() == IStatus.CANCEL) {
+                reason = "canceled";
+            } else if (result.isOK()) {
+                reason = "doxygen exited with code " + job.getExitValue();
+            } else {
+                reason = result.getMessage();
+            }
+            resolve(node, BuildSet.State.FAILED, reason);
+            skipDependants(node, "depends on the failed " + node);
+        }
+    }
+
+    private void skipDependants(BuildSet.Node node, String reason) {
+        for (BuildSet.Node dependant : node.getDependants()) {
+            if (dependant.getState() == BuildSet.State.WAITING) {
+                resolve(dependant, BuildSet.State.SKIPPED, reason);
+                skipDependants(dependant, reason);
+            }
+        }
+    }
+
+    private static boolean isReady(BuildSet.Node node) {
+        for (BuildSet.Node dependency : node.getDependencies()) {
+            if (dependency.getState() != BuildSet.State.SUCCEEDED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resolve(BuildSet.Node node, BuildSet.State state, String reason) {
+        node.setState(state, reason);
+        --pending;
+        notifyAll();
+    }
+
+}
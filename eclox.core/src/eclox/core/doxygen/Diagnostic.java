@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+/**
+ * Implements an immutable diagnostic record, that is a warning or an error
+ * reported by doxygen about a given line of a file.
+ *
+ * @author Andre Bossert
+ *
+ * @see DiagnosticRecognizer
+ */
+public final class Diagnostic {
+
+    private final String path; ///< the path of the file, as written by doxygen
+    private final int line; ///< the line number
+    private final int severity; ///< the marker severity
+    private final String message; ///< the message, including its continuation lines
+    private final String setting; ///< the name of the obsolete setting, or null
+
+    public Diagnostic(String path, int line, int severity, String message, String setting) {
+        this.path = path;
+        this.line = line;
+        this.severity = severity;
+        this.message = message;
+        this.setting = setting;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Retrieves the severity of the diagnostic.
+     *
+     * @return	a marker severity
+     *
+     * @see Marker#toMarkerSeverity(String)
+     */
+    public int getSeverity() {
+        return severity;
+    }
+
+    /**
+     * Retrieves the message of the diagnostic. Continuation lines are separated by line feeds.
+     *
+     * @return	a string containing the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Retrieves the setting the diagnostic is about, for warnings about obsolete settings.
+     *
+     * @return	a string containing the name of the setting, or null
+     */
+    public String getSetting() {
+        return setting;
+    }
+
+    @Override
+    public String toString() {
+        return path + ":" + line + ": " + message;
+    }
+
+}
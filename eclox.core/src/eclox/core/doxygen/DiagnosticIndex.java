@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * Implements the compact store of all diagnostics of a build, whether they got a marker or not.
+ *
+ * Diagnostics are grouped by file, and their fields kept in arrays. Messages and setting
+ * names are stored once in a string table, since large builds repeat the same messages
+ * many times. The diagnostics of the locations outside the workspace are kept as well,
+ * grouped by location.
+ *
+ * @author Andre Bossert
+ */
+public class DiagnosticIndex {
+
+    /**
+     * Implements the diagnostics of a file or location.
+     */
+    private static class Entry {
+        final String path; ///< the location of the first diagnostic, as written by doxygen
+        int size = 0; ///< the number of diagnostics
+        int[] lines = new int[4]; ///< the line numbers
+        byte[] severities = new byte[4]; ///< the marker severities
+        int[] messages = new int[4]; ///< the messages, as indices in the string table
+        int[] settings = new int[4]; ///< the settings, as indices in the string table or -1
+
+        Entry(String path) {
+            this.path = path;
+        }
+
+        void add(int line, int severity, int message, int setting) {
+            if (size == lines.length) {
+                lines = Arrays.copyOf(lines, size * 2);
+                severities = Arrays.copyOf(severities, size * 2);
+                messages = Arrays.copyOf(messages, size * 2);
+                settings = Arrays.copyOf(settings, size * 2);
+            }
+            lines[size] = line;
+            severities[size] = (byte) severity;
+            messages[size] = message;
+            settings[size] = setting;
+            ++size;
+        }
+    }
+
+    private final Map<IFile, Entry> files = new LinkedHashMap<IFile, Entry>(); ///< the diagnostics by workspace file
+    private final Map<String, Entry> locations = new LinkedHashMap<String, Entry>(); ///< the diagnostics outside the workspace, by location
+    private final List<String> strings = new ArrayList<String>(); ///< the string table
+    private final Map<String, Integer> stringIndices = new HashMap<String, Integer>(); ///< the indices of the strings in the table
+    private int count = 0; ///< the number of diagnostics
+
+    /**
+     * Removes all diagnostics.
+     */
+    public synchronized void clear() {
+        files.clear();
+        locations.clear();
+        strings.clear();
+        stringIndices.clear();
+        count = 0;
+    }
+
+    /**
+     * Adds a diagnostic.
+     *
+     * @param	file		the workspace file of the diagnostic, or null when outside the workspace
+     * @param	diagnostic	a diagnostic
+     */
+    public synchronized void add(IFile file, Diagnostic diagnostic) {
+        Entry entry = (file != null) ? files.get(file) : locations.get(diagnostic.getPath());
+        if (entry == null) {
+            entry = new Entry(diagnostic.getPath());
+            if (file != null) {
+                files.put(file, entry);
+            } else {
+                locations.put(diagnostic.getPath(), entry);
+            }
+        }
+        int setting = (diagnostic.getSetting() != null) ? getStringIndex(diagnostic.getSetting()) : -1;
+        entry.add(diagnostic.getLine(), diagnostic.getSeverity(), getStringIndex(diagnostic.getMessage()), setting);
+        ++count;
+    }
+
+    /**
+     * Retrieves the number of diagnostics.
+     *
+     * @return	a diagnostic count
+     */
+    public synchronized int getDiagnosticCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves the workspace files having diagnostics, in the order of their first diagnostic.
+     *
+     * @return	an array of files, possibly empty
+     */
+    public synchronized IFile[] getFiles() {
+        return files.keySet().toArray(new IFile[files.size()]);
+    }
+
+    /**
+     * Tells if the given file has diagnostics.
+     *
+     * @param	file	a workspace file
+     *
+     * @return	true when the file has diagnostics
+     */
+    public synchronized boolean contains(IFile file) {
+        return files.containsKey(file);
+    }
+
+    /**
+     * Retrieves the diagnostics of the given workspace file.
+     *
+     * @param	file	a workspace file
+     *
+     * @return	a list of diagnostics in the order they have been reported, possibly empty
+     */
+    public synchronized List<Diagnostic> getDiagnostics(IFile file) {
+        return getDiagnostics(files.get(file), 0);
+    }
+
+    /**
+     * Retrieves the diagnostics of the given workspace file, starting at the given one.
+     *
+     * @param	file	a workspace file
+     * @param	start	the number of diagnostics of the file to skip
+     *
+     * @return	a list of diagnostics in the order they have been reported, possibly empty
+     */
+    public synchronized List<Diagnostic> getDiagnostics(IFile file, int start) {
+        return getDiagnostics(files.get(file), start);
+    }
+
+    /**
+     * Retrieves the locations outside the workspace having diagnostics.
+     *
+     * @return	an array of locations as written by doxygen, possibly empty
+     */
+    public synchronized String[] getUnresolvedLocations() {
+        return locations.keySet().toArray(new String[locations.size()]);
+    }
+
+    /**
+     * Retrieves the diagnostics of the given location outside the workspace.
+     *
+     * @param	location	a location as written by doxygen
+     *
+     * @return	a list of diagnostics in the order they have been reported, possibly empty
+     */
+    public synchronized List<Diagnostic> getDiagnostics(String location) {
+        return getDiagnostics(locations.get(location), 0);
+    }
+
+    private List<Diagnostic> getDiagnostics(Entry entry, int start) {
+        if (entry == null || start >= entry.size) {
+            return new ArrayList<Diagnostic>();
+        }
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>(entry.size - start);
+        for (int i = start; i < entry.size; ++i) {
+            String setting = (entry.settings[i] >= 0) ? strings.get(entry.settings[i]) : null;
+            diagnostics.add(new Diagnostic(entry.path, entry.lines[i], entry.severities[i],
+                    strings.get(entry.messages[i]), setting));
+        }
+        return diagnostics;
+    }
+
+    private int getStringIndex(String string) {
+        Integer index = stringIndices.get(string);
+        if (index == null) {
+            index = Integer.valueOf(strings.size());
+            strings.add(string);
+            stringIndices.put(string, index);
+        }
+        return index.intValue();
+    }
+
+}
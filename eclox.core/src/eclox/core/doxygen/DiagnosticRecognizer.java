@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.core.resources.IMarker;
+
+/**
+ * Implements the recognizer of the warnings and errors in the doxygen outputs.
+ *
+ * The recognizer is fed with the output text as it gets read, and scans each line once.
+ * It recognizes the same diagnostics as the following patterns, formerly matched against
+ * the whole log:
+ *
+ * <pre>
+ * ^(.+?):\s*(\d+)\s*:\s*(.+?)\s*:\s*(.*$(\s+^  .*$)*)
+ * (?i)^warning: Tag `(.+)' at line (\d+) of file `(.+)' has become obsolete.$
+ * </pre>
+ *
+ * That is a file, a line number, a severity and a message, followed by continuation lines
+ * starting with two spaces, or a warning about an obsolete setting. Since a diagnostic
+ * may be continued by the next lines, it is only returned once a following line,
+ * or the end of the output, has been seen.
+ *
+ * A recognizer is not thread-safe and must be fed with the outputs of a single stream.
+ *
+ * @author Andre Bossert
+ */
+public class DiagnosticRecognizer {
+
+    private static final String OBSOLETE_PREFIX = "warning: tag `"; ///< the lower case start of the obsolete setting warnings
+    private static final String OBSOLETE_LINE = "' at line "; ///< the lower case text preceding the line number of the obsolete setting warnings
+    private static final String OBSOLETE_FILE = " of file `"; ///< the lower case text preceding the file of the obsolete setting warnings
+    private static final String OBSOLETE_SUFFIX = "' has become obsolete"; ///< the lower case end of the obsolete setting warnings, before a last character
+    private static final String CONTINUATION_PREFIX = "  "; ///< the start of the continuation lines
+    private static final int MAX_LINE_NUMBER_LENGTH = 9; ///< the number of digits of the largest line number taken into account
+
+    private final StringBuilder partialLine = new StringBuilder(); ///< the received start of the current line
+    private String pendingPath; ///< the file of the diagnostic waiting for its continuation lines, null if none
+    private int pendingLine; ///< the line number of the pending diagnostic
+    private int pendingSeverity; ///< the severity of the pending diagnostic
+    private final StringBuilder pendingMessage = new StringBuilder(); ///< the message of the pending diagnostic
+    private int pendingBlankLines = 0; ///< the number of blank lines seen after the pending diagnostic
+
+    /**
+     * Scans the given output text.
+     *
+     * @param	text	a string containing output text, lines are terminated by line feeds
+     *
+     * @return	a list containing the diagnostics completed by the text, possibly empty
+     */
+    public List<Diagnostic> recognize(CharSequence text) {
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+        int start = 0;
+        for (int end = 0; end < text.length(); ++end) {
+            if (text.charAt(end) == '\n') {
+                if (partialLine.length() > 0) {
+                    partialLine.append(text, start, end);
+                    scanLine(partialLine.toString(), diagnostics);
+                    partialLine.setLength(0);
+                } else {
+                    scanLine(text.subSequence(start, end).toString(), diagnostics);
+                }
+                start = end + 1;
+            }
+        }
+        partialLine.append(text, start, text.length());
+        return diagnostics;
+    }
+
+    /**
+     * Ends the scanning of the output.
+     *
+     * @return	a list containing the last diagnostics, possibly empty
+     */
+    public List<Diagnostic> flush() {
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+        if (partialLine.length() > 0) {
+            scanLine(partialLine.toString(), diagnostics);
+            partialLine.setLength(0);
+        }
+        completePending(diagnostics);
+        return diagnostics;
+    }
+
+    private void scanLine(String line, List<Diagnostic> diagnostics) {
+        if (pendingPath != null) {
+            if (line.startsWith(CONTINUATION_PREFIX)) {
+                if (pendingMessage.length() == 0) {
+                    // An empty message is taken from the first continuation line.
+                    pendingMessage.append(line, skipSpaces(line, 0), line.length());
+                } else {
+                    for (; pendingBlankLines > 0; --pendingBlankLines) {
+                        pendingMessage.append('\n');
+                    }
+                    pendingMessage.append('\n').append(line);
+                }
+                pendingBlankLines = 0;
+                return;
+            } else if (line.trim().isEmpty()) {
+                ++pendingBlankLines;
+                return;
+            }
+            completePending(diagnostics);
+        }
+
+        Diagnostic obsolete = scanObsoleteWarning(line);
+        if (obsolete != null) {
+            diagnostics.add(obsolete);
+        } else {
+            scanProblem(line);
+        }
+    }
+
+    private void completePending(List<Diagnostic> diagnostics) {
+        if (pendingPath != null) {
+            diagnostics.add(new Diagnostic(pendingPath, pendingLine, pendingSeverity, pendingMessage.toString(), null));
+            pendingPath = null;
+            pendingMessage.setLength(0);
+        }
+        pendingBlankLines = 0;
+    }
+
+    /**
+     * Scans a line of the form "file:line:severity:message". The file is the shortest
+     * prefix followed by a line number. The found diagnostic becomes pending.
+     */
+    private void scanProblem(String line) {
+        int length = line.length();
+        for (int colon = line.indexOf(':', 1); colon >= 0; colon = line.indexOf(':', colon + 1)) {
+            int digitsStart = skipSpaces(line, colon + 1);
+            int digitsEnd = skipDigits(line, digitsStart);
+            if (digitsEnd == digitsStart || digitsEnd - digitsStart > MAX_LINE_NUMBER_LENGTH) {
+                continue;
+            }
+            int lineColon = skipSpaces(line, digitsEnd);
+            if (lineColon == length || line.charAt(lineColon) != ':') {
+                continue;
+            }
+            int severityStart = skipSpaces(line, lineColon + 1);
+            int severityColon = (severityStart < length) ? line.indexOf(':', severityStart + 1) : -1;
+            if (severityColon < 0) {
+                // Later colons would leave even less text for the severity.
+                return;
+            }
+            int severityEnd = severityColon;
+            while (severityEnd > severityStart && isSpace(line.charAt(severityEnd - 1))) {
+                --severityEnd;
+            }
+
+            pendingPath = line.substring(0, colon);
+            pendingLine = Integer.parseInt(line.substring(digitsStart, digitsEnd));
+            pendingSeverity = Marker.toMarkerSeverity(line.substring(severityStart, severityEnd));
+            pendingMessage.append(line, skipSpaces(line, severityColon + 1), length);
+            return;
+        }
+    }
+
+    /**
+     * Scans a warning about an obsolete setting. As with a greedy pattern, the setting
+     * name extends up to the last possible line number.
+     *
+     * @return	the diagnostic or null when the line is no such warning
+     */
+    private static Diagnostic scanObsoleteWarning(String line) {
+        int length = line.length();
+        int suffixStart = length - 1 - OBSOLETE_SUFFIX.length();
+        if (suffixStart < OBSOLETE_PREFIX.length()
+                || line.regionMatches(true, 0, OBSOLETE_PREFIX, 0, OBSOLETE_PREFIX.length()) == false
+                || line.regionMatches(true, suffixStart, OBSOLETE_SUFFIX, 0, OBSOLETE_SUFFIX.length()) == false) {
+            return null;
+        }
+        String lowerLine = line.toLowerCase(Locale.ENGLISH);
+        int settingStart = OBSOLETE_PREFIX.length();
+        for (int settingEnd = lowerLine.lastIndexOf(OBSOLETE_LINE, suffixStart); settingEnd > settingStart; settingEnd = lowerLine.lastIndexOf(OBSOLETE_LINE, settingEnd - 1)) {
+            int digitsStart = settingEnd + OBSOLETE_LINE.length();
+            int digitsEnd = skipDigits(line, digitsStart);
+            int fileStart = digitsEnd + OBSOLETE_FILE.length();
+            if (digitsEnd > digitsStart && digitsEnd - digitsStart <= MAX_LINE_NUMBER_LENGTH
+                    && lowerLine.startsWith(OBSOLETE_FILE, digitsEnd) && fileStart < suffixStart) {
+                return new Diagnostic(line.substring(fileStart, suffixStart),
+                        Integer.parseInt(line.substring(digitsStart, digitsEnd)), IMarker.SEVERITY_WARNING, line,
+                        line.substring(settingStart, settingEnd));
+            }
+        }
+        return null;
+    }
+
+    private static int skipSpaces(String line, int index) {
+        while (index < line.length() && isSpace(line.charAt(index))) {
+            ++index;
+        }
+        return index;
+    }
+
+    /**
+     * Tells if the given character is a white space, as matched by \s in patterns.
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int skipDigits(String line, int index) {
+        while (index < line.length() && line.charAt(index) >= '0' && line.charAt(index) <= '9') {
+            ++index;
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Implements the single resource change listener of all build jobs.
+ *
+ * The doxyfiles of the registered jobs are kept in a tree of path segments. Each
+ * resource delta is walked once, only along the branches leading to a registered
+ * doxyfile, and the jobs whose doxyfile has been removed or moved get notified.
+ * The dispatcher listens to the workspace only while jobs are registered.
+ *
+ * @author Andre Bossert
+ */
+final class JobDeltaDispatcher implements IResourceChangeListener {
+
+    /**
+     * Implements a node of the tree of registered doxyfile paths.
+     */
+    private static class Node {
+        final Map<String, Node> children = new HashMap<String, Node>(); ///< the child nodes by path segment
+        BuildJob job; ///< the job building the doxyfile at the path of the node, or null
+    }
+
+    /**
+     * Implements a change of a registered doxyfile found in a delta.
+     */
+    private static class Change {
+        final BuildJob job; ///< the job whose doxyfile changed
+        final IPath movedToPath; ///< the new path of the doxyfile, null when removed
+
+        Change(BuildJob job, IPath movedToPath) {
+            this.job = job;
+            this.movedToPath = movedToPath;
+        }
+    }
+
+    private final Node root = new Node(); ///< the node of the workspace root
+    private int jobCount = 0; ///< the number of registered jobs
+
+    /**
+     * Registers a job for the given doxyfile path.
+     *
+     * @param	path	the full path of the doxyfile built by the job
+     * @param	job		a build job
+     */
+    synchronized void add(IPath path, BuildJob job) {
+        Node node = root;
+        for (String segment : path.segments()) {
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        if (node.job == null && jobCount++ == 0) {
+            ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+        }
+        node.job = job;
+    }
+
+    /**
+     * Unregisters the job of the given doxyfile path, unless another job has been registered since.
+     *
+     * @param	path	the full path of the doxyfile built by the job
+     * @param	job		a build job
+     */
+    synchronized void remove(IPath path, BuildJob job) {
+        if (remove(root, path.segments(), 0, job) && --jobCount == 0) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+        }
+    }
+
+    private static boolean remove(Node node, String[] segments, int index, BuildJob job) {
+        if (index == segments.length) {
+            if (node.job != job) {
+                return false;
+            }
+            node.job = null;
+            return true;
+        }
+        Node child = node.children.get(segments[index]);
+        if (child == null || remove(child, segments, index + 1, job) == false) {
+            return false;
+        }
+        if (child.job == null && child.children.isEmpty()) {
+            node.children.remove(segments[index]);
+        }
+        return true;
+    }
+
+    /**
+     * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+     */
+    public void resourceChanged(IResourceChangeEvent event) {
+        IResourceDelta delta = event.getDelta();
+        if (delta == null) {
+            return;
+        }
+
+        // Collects the changes under the lock, but notifies the jobs outside of it,
+        // since they register and unregister themselves.
+        List<Change> changes = new ArrayList<Change>();
+        synchronized (this) {
+            collect(delta, root, changes);
+        }
+
+        IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+        for (Change change : changes) {
+            if (change.movedToPath != null) {
+                change.job.moved(workspaceRoot.getFile(change.movedToPath));
+            } else {
+                change.job.removed();
+            }
+        }
+    }
+
+    private static void collect(IResourceDelta delta, Node node, List<Change> changes) {
+        for (IResourceDelta childDelta : delta.getAffectedChildren()) {
+            Node child = node.children.get(childDelta.getResource().getName());
+            if (child == null) {
+                continue;
+            }
+            if (child.job != null && childDelta.getKind() == IResourceDelta.REMOVED) {
+                boolean moved = (childDelta.getFlags() & IResourceDelta.MOVED_TO) != 0;
+                changes.add(new Change(child.job, moved ? childDelta.getMovedToPath() : null));
+            }
+            if (child.children.isEmpty() == false) {
+                collect(childDelta, child, changes);
+            }
+        }
+    }
+
+}
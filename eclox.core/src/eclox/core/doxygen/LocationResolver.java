@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.filesystem.URIUtil;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+import eclox.core.Plugin;
+
+/**
+ * Implements the resolution of the file locations written by doxygen to workspace files.
+ *
+ * Resolutions are cached by location, across builds, so a location mentioned by many
+ * diagnostics is only looked up once. The locations outside the workspace are cached
+ * as well, and forgotten once a resource gets added at or above them, or the project
+ * containing them gets opened. A cached file that does not exist anymore is looked up
+ * again. The resolver listens to the workspace only while locations outside the
+ * workspace are cached.
+ *
+ * @author Andre Bossert
+ */
+final class LocationResolver implements IResourceChangeListener {
+
+    private static final LocationResolver defaultResolver = new LocationResolver(); ///< the shared resolver
+
+    private final ConcurrentHashMap<String, IFile> files = new ConcurrentHashMap<String, IFile>(); ///< the resolved files, by location
+    private final ConcurrentHashMap<String, IPath> unresolved = new ConcurrentHashMap<String, IPath>(); ///< the paths of the locations outside the workspace, by location
+    private int generation = 0; ///< the number of invalidations, resolutions started before one are not cached
+    private boolean listening = false; ///< tells if the resolver listens to the workspace
+
+    /**
+     * Retrieves the shared resolver.
+     *
+     * @return	the resolver
+     */
+    static LocationResolver getDefault() {
+        return defaultResolver;
+    }
+
+    /**
+     * Resolves the given location.
+     *
+     * @param	location	a string containing a file location, as written by doxygen
+     *
+     * @return	an existing workspace file or null if none
+     */
+    IFile resolve(String location) {
+        IFile file = files.get(location);
+        if (file != null && file.exists()) {
+            return file;
+        } else if (file == null && unresolved.containsKey(location)) {
+            return null;
+        }
+
+        int resolutionGeneration;
+        synchronized (this) {
+            resolutionGeneration = generation;
+        }
+        IPath path = new Path(location);
+        file = find(path);
+        synchronized (this) {
+            if (resolutionGeneration == generation) {
+                if (file != null) {
+                    files.put(location, file);
+                } else {
+                    files.remove(location);
+                    unresolved.put(location, path);
+                    if (listening == false) {
+                        ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+                        listening = true;
+                    }
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Forgets the cached locations outside the workspace that are at or below the given one.
+     *
+     * @param	location	a file system location, or null to forget all of them
+     */
+    synchronized void invalidate(IPath location) {
+        ++generation;
+        for (Iterator<IPath> i = unresolved.values().iterator(); i.hasNext();) {
+            if (location == null || location.isPrefixOf(i.next())) {
+                i.remove();
+            }
+        }
+        if (unresolved.isEmpty() && listening == true) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+            listening = false;
+        }
+    }
+
+    /**
+     * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+     */
+    public void resourceChanged(IResourceChangeEvent event) {
+        IResourceDelta delta = event.getDelta();
+        if (delta == null || unresolved.isEmpty()) {
+            return;
+        }
+        try {
+            delta.accept(new IResourceDeltaVisitor() {
+                public boolean visit(IResourceDelta delta) throws CoreException {
+                    if (delta.getKind() == IResourceDelta.ADDED || (delta.getFlags() & IResourceDelta.OPEN) != 0) {
+                        IPath location = delta.getResource().getLocation();
+                        if (location != null) {
+                            invalidate(location);
+                        }
+                        // Resources without a location, or below an added one, need no more checks.
+                        return false;
+                    }
+                    return true;
+                }
+            });
+        } catch (CoreException e) {
+            Plugin.log(e);
+            invalidate(null);
+        }
+    }
+
+    /**
+     * Searches for the workspace file at the given location.
+     */
+    private static IFile find(IPath location) {
+        IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+        try {
+            IFile[] files = workspaceRoot.findFilesForLocationURI(URIUtil.toURI(location));
+            for (IFile file : files) {
+                if (file.exists()) {
+                    return file;
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            // no op, because the resource cannot be found, so it's not absolute
+            // see IWorkspaceRoot
+            //if (!location.isAbsolute())
+            //    throw new IllegalArgumentException()
+            // see https://github.com/anb0s/eclox/issues/195
+        }
+        return null;
+    }
+
+}
@@ -12,6 +12,8 @@
  *     Andre Bossert - Improvement static declaration of plugin relative identifier
  *                   - fixed java.lang.IllegalArgumentException: endRule without matching beginRule
  *                     https://github.com/anb0s/eclox/issues/175
+ *                   - attributes set at once, doxyfile attribute
+ *                   - count attribute
  *
  ******************************************************************************/
 
@@ -36,6 +38,31 @@ public class Marker {
     public static final String ECLOX_DOXYGEN_NAME = Plugin.getDefault().getBundle().getSymbolicName();
     public static final String DOXYGEN_MARKER = ECLOX_DOXYGEN_NAME + ".doxygen.marker"; ///< Defines the doxygen marker type attribute name
     public static final String SETTING = DOXYGEN_MARKER + ".setting"; ///< Defines the optional attribute name that hold the name of a setting
+    public static final String DOXYFILE = DOXYGEN_MARKER + ".doxyfile"; ///< Defines the attribute name that hold the full path of the doxyfile whose build created the marker
+    public static final String COUNT = DOXYGEN_MARKER + ".count"; ///< Defines the attribute name that hold the number of diagnostics the marker stands for
+
+    static final String[] ATTRIBUTE_NAMES = { IMarker.MESSAGE, IMarker.LINE_NUMBER, IMarker.LOCATION, IMarker.PRIORITY,
+            IMarker.SEVERITY, SETTING, DOXYFILE, COUNT }; ///< Defines the names of the attributes set on creation
+
+    /**
+     * Retrieves the values of the attributes of a new marker, in the order of the attribute names.
+     *
+     * @param	file		the resource file of the marker
+     * @param	doxyfile	a string containing the full path of the built doxyfile
+     * @param	setting		a string containing the name of a setting, or null
+     * @param	line		a line number
+     * @param	message		a message explaining the problem
+     * @param	severity	a severity level
+     * @param	count		the number of diagnostics the marker stands for
+     *
+     * @return	an array containing the attribute values
+     */
+    static Object[] getAttributeValues(IFile file, String doxyfile, String setting, int line, String message, int severity,
+            int count) {
+        return new Object[] { message, Integer.valueOf(line), file.getProjectRelativePath().toPortableString(),
+                Integer.valueOf(IMarker.PRIORITY_NORMAL), Integer.valueOf(severity), setting, doxyfile,
+                Integer.valueOf(count) };
+    }
 
     /**
      * Creates a single marker for the given file.
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IPreferencesService;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+
+import eclox.core.IPreferences;
+import eclox.core.MarkerMode;
+import eclox.core.Plugin;
+
+/**
+ * Implements the selection of the diagnostics of a build that get a marker, according
+ * to the marker preferences, read once per build.
+ *
+ * The selection is incremental: each call only looks at the diagnostics added to the
+ * index since the previous call for the same file, and tells which markers to create
+ * or update. A diagnostic that got a marker keeps it until the end of the build.
+ * Only the markers of real diagnostics count against the limits, the informational
+ * markers telling that diagnostics have been left out do not.
+ *
+ * @author Andre Bossert
+ */
+final class MarkerPolicy {
+
+    /**
+     * Implements a diagnostic getting a marker, along with the diagnostics it stands for.
+     */
+    private static final class Group {
+        final Diagnostic first; ///< the first occurrence of the diagnostic
+        int count = 1; ///< the number of occurrences
+        final boolean marked; ///< tells if the diagnostic got a marker
+
+        Group(Diagnostic first, boolean marked) {
+            this.first = first;
+            this.marked = marked;
+        }
+    }
+
+    /**
+     * Implements the selection state of a file.
+     */
+    private static final class FileState {
+        int processed = 0; ///< the number of diagnostics of the file already selected from
+        int marked = 0; ///< the number of markers of real diagnostics
+        int omittedByFile = 0; ///< the number of diagnostics left out because of the file limit
+        int omittedByBuild = 0; ///< the number of diagnostics left out because of the build limit
+        final Map<String, Group> groups = new HashMap<String, Group>(); ///< the aggregated diagnostics, by identity
+        Diagnostic omission; ///< the informational diagnostic telling about the diagnostics left out, or null
+    }
+
+    private final MarkerMode mode; ///< the files receiving markers
+    private final boolean aggregate; ///< tells if identical diagnostics of a file share a marker
+    private final int fileLimit; ///< the maximum number of markers per file, 0 for no limit
+    private final int buildLimit; ///< the maximum number of markers per build, 0 for no limit
+    private final Map<IFile, FileState> files = new HashMap<IFile, FileState>(); ///< the selection states by file
+    private int marked = 0; ///< the number of markers of real diagnostics in the build
+    private int omittedByBuild = 0; ///< the number of diagnostics left out because of the build limit
+    private int reportedOmittedByBuild = 0; ///< the number of diagnostics left out because of the build limit, when last reported
+    private Diagnostic limitReached; ///< the informational diagnostic telling that the build limit has been reached, or null
+
+    MarkerPolicy(MarkerMode mode, boolean aggregate, int fileLimit, int buildLimit) {
+        this.mode = mode;
+        this.aggregate = aggregate;
+        this.fileLimit = Math.max(0, fileLimit);
+        this.buildLimit = Math.max(0, buildLimit);
+    }
+
+    /**
+     * Reads the policy from the preferences.
+     *
+     * @return	a new policy
+     */
+    static MarkerPolicy load() {
+        IPreferencesService service = Platform.getPreferencesService();
+        final String PLUGIN_ID = Plugin.getDefault().getBundle().getSymbolicName();
+        IEclipsePreferences defaultNode = DefaultScope.INSTANCE.getNode(PLUGIN_ID);
+        IEclipsePreferences instanceNode = InstanceScope.INSTANCE.getNode(PLUGIN_ID);
+        IEclipsePreferences[] nodes = new IEclipsePreferences[] { instanceNode, defaultNode };
+        return new MarkerPolicy(MarkerMode.getFromEnum(service.get(IPreferences.MARKER_MODE, "", nodes)),
+                Boolean.parseBoolean(service.get(IPreferences.MARKER_AGGREGATE, "false", nodes)),
+                parseInt(service.get(IPreferences.MARKER_LIMIT_FILE, "0", nodes)),
+                parseInt(service.get(IPreferences.MARKER_LIMIT_BUILD, "0", nodes)));
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Tells if markers are only created for the files opened in an editor.
+     */
+    boolean isLazy() {
+        return mode == MarkerMode.markerModeOpenedFiles;
+    }
+
+    /**
+     * Retrieves the maximum number of markers per build.
+     *
+     * @return	a marker count, 0 for no limit
+     */
+    int getBuildLimit() {
+        return buildLimit;
+    }
+
+    /**
+     * Retrieves the number of markers of real diagnostics selected in the build.
+     *
+     * @return	a marker count, not including the informational markers
+     */
+    synchronized int getMarkedCount() {
+        return marked;
+    }
+
+    /**
+     * Retrieves the number of diagnostics left out because of the build limit.
+     *
+     * @return	a diagnostic count
+     */
+    synchronized int getOmittedCount() {
+        return omittedByBuild;
+    }
+
+    /**
+     * Selects the markers for the diagnostics added to the given file since the last selection.
+     *
+     * The selected diagnostics are mapped to the number of diagnostics their marker stands
+     * for. New diagnostics get a marker until the limits are reached. With aggregation,
+     * further occurrences of a diagnostic having a marker select it again with its new
+     * count. When diagnostics of the file are left out because of the file limit, an
+     * informational diagnostic tells how many.
+     *
+     * @param	file	a workspace file
+     * @param	index	the diagnostics of the build
+     *
+     * @return	the selected diagnostics and their counts, in order of appearance, possibly empty
+     */
+    synchronized Map<Diagnostic, Integer> select(IFile file, DiagnosticIndex index) {
+        FileState state = files.get(file);
+        if (state == null) {
+            state = new FileState();
+            files.put(file, state);
+        }
+        List<Diagnostic> added = index.getDiagnostics(file, state.processed);
+        state.processed += added.size();
+
+        Map<Diagnostic, Integer> selected = new LinkedHashMap<Diagnostic, Integer>();
+        int omittedByFile = state.omittedByFile;
+        for (Diagnostic diagnostic : added) {
+            Group group = null;
+            String key = null;
+            if (aggregate == true) {
+                key = diagnostic.getSeverity() + "\u0000" + diagnostic.getSetting() + "\u0000" + diagnostic.getMessage();
+                group = state.groups.get(key);
+            }
+            if (group != null) {
+                ++group.count;
+                if (group.marked == true) {
+                    selected.put(group.first, Integer.valueOf(group.count));
+                } else {
+                    omit(state);
+                }
+                continue;
+            }
+
+            boolean mark = (fileLimit == 0 || state.marked < fileLimit) && (buildLimit == 0 || marked < buildLimit);
+            if (mark == true) {
+                ++state.marked;
+                ++marked;
+                selected.put(diagnostic, Integer.valueOf(1));
+            } else {
+                omit(state);
+            }
+            if (key != null) {
+                state.groups.put(key, new Group(diagnostic, mark));
+            }
+        }
+
+        if (state.omittedByFile != omittedByFile) {
+            if (state.omission == null) {
+                state.omission = new Diagnostic(added.get(0).getPath(), 1, IMarker.SEVERITY_INFO,
+                        "More doxygen diagnostics have no marker in this file because of the marker limits, see the doxygen console.",
+                        null);
+            }
+            selected.put(state.omission, Integer.valueOf(state.omittedByFile));
+        }
+        return selected;
+    }
+
+    /**
+     * Counts a diagnostic of the given file left out, because of the file limit when
+     * reached, because of the build limit otherwise.
+     */
+    private void omit(FileState state) {
+        if (fileLimit > 0 && state.marked >= fileLimit) {
+            ++state.omittedByFile;
+        } else {
+            ++state.omittedByBuild;
+            ++omittedByBuild;
+        }
+    }
+
+    /**
+     * Retrieves the single diagnostic of the build telling that the build limit has been
+     * reached, when more diagnostics have been left out since the last call.
+     *
+     * @param	path	the location the diagnostic is about, that is the doxyfile
+     *
+     * @return	the informational diagnostic, always the same in a build, or null when there is nothing new to report
+     */
+    synchronized Diagnostic getLimitReached(String path) {
+        if (omittedByBuild == reportedOmittedByBuild) {
+            return null;
+        }
+        reportedOmittedByBuild = omittedByBuild;
+        if (omittedByBuild == 0) {
+            return null;
+        }
+        if (limitReached == null) {
+            limitReached = new Diagnostic(path, 1, IMarker.SEVERITY_INFO, "The limit of " + buildLimit
+                    + " doxygen markers per build has been reached, see the doxygen console for the other diagnostics.",
+                    null);
+        }
+        return limitReached;
+    }
+
+    /**
+     * Forgets the selection of the given file, whose markers got deleted. The next
+     * selection for the file starts over from its first diagnostic.
+     *
+     * @param	file	a workspace file
+     */
+    synchronized void release(IFile file) {
+        FileState state = files.remove(file);
+        if (state != null) {
+            marked -= state.marked;
+            omittedByBuild -= state.omittedByBuild;
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
+
+/**
+ * Implements the publication of the diagnostics of the builds of a doxyfile as markers.
+ *
+ * A build publishes its diagnostics between calls to {@link #begin()} and {@link #end(IProgressMonitor)},
+ * or {@link #abort(IProgressMonitor)} when it gets canceled or fails.
+ * Each publication only gives the diagnostics selected since the previous one, or the
+ * diagnostics whose count changed. The count is kept in an attribute of the marker and is
+ * not part of the identity of the diagnostic, so updating it does not replace the marker.
+ * The markers of the previous builds are kept when the same diagnostic is published again,
+ * and only the markers of the diagnostics that disappeared get deleted at the end of the build.
+ * Each publication is a single workspace operation, limited to the marker rules of the
+ * concerned files, and sets all attributes of a created marker at once.
+ *
+ * @author Andre Bossert
+ */
+public class MarkerPublisher {
+
+    /**
+     * Implements the identity of a diagnostic in a given file.
+     */
+    private static final class Key {
+        private final int line; ///< the line number
+        private final int severity; ///< the marker severity
+        private final String message; ///< the message
+        private final String setting; ///< the setting or null
+
+        Key(int line, int severity, String message, String setting) {
+            this.line = line;
+            this.severity = severity;
+            this.message = message;
+            this.setting = setting;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object instanceof Key) {
+                Key key = (Key) object;
+                return line == key.line && severity == key.severity && message.equals(key.message)
+                        && (setting == null ? key.setting == null : setting.equals(key.setting));
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return (line * 31 + severity) * 31 + message.hashCode();
+        }
+    }
+
+    private String owner; ///< the full path of the doxyfile whose markers are published
+    private final Map<IFile, Map<Key, IMarker>> published = new HashMap<IFile, Map<Key, IMarker>>(); ///< the published markers by file
+    private final Map<IFile, Set<Key>> seen = new HashMap<IFile, Set<Key>>(); ///< the diagnostics published by the current build, by file
+    private final Map<IFile, Set<Key>> created = new HashMap<IFile, Set<Key>>(); ///< the diagnostics whose marker has been created by the current build, by file
+    private boolean restored = false; ///< tells if the markers left by a previous session have been looked up
+
+    /**
+     * Constructor
+     *
+     * @param	owner	the full path of the doxyfile whose markers are published
+     */
+    public MarkerPublisher(String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Changes the doxyfile recorded in the created markers, once it has been moved.
+     *
+     * @param	owner	the new full path of the doxyfile
+     */
+    public synchronized void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Retrieves the number of published markers.
+     *
+     * @return	a marker count
+     */
+    public synchronized int getMarkerCount() {
+        int count = 0;
+        for (Map<Key, IMarker> fileMarkers : published.values()) {
+            count += fileMarkers.size();
+        }
+        return count;
+    }
+
+    /**
+     * Begins the publication of the diagnostics of a new build. On first use, the markers
+     * created for the doxyfile in a previous session are taken over.
+     */
+    public synchronized void begin() throws CoreException {
+        if (restored == false) {
+            restored = true;
+            IMarker[] markers = ResourcesPlugin.getWorkspace().getRoot().findMarkers(Marker.DOXYGEN_MARKER, false,
+                    IResource.DEPTH_INFINITE);
+            for (IMarker marker : markers) {
+                if (owner.equals(marker.getAttribute(Marker.DOXYFILE, null)) && marker.getResource() instanceof IFile) {
+                    Key key = new Key(marker.getAttribute(IMarker.LINE_NUMBER, -1),
+                            marker.getAttribute(IMarker.SEVERITY, -1), marker.getAttribute(IMarker.MESSAGE, ""),
+                            marker.getAttribute(Marker.SETTING, null));
+                    getFileMarkers((IFile) marker.getResource()).put(key, marker);
+                }
+            }
+        }
+        seen.clear();
+        created.clear();
+    }
+
+    /**
+     * Publishes diagnostics of the current build. Markers are only created for the
+     * diagnostics that have no marker yet, the others only get their count updated.
+     *
+     * @param	diagnostics	the diagnostics selected since the last publication, with the number of diagnostics their marker stands for, by file
+     * @param	monitor		a progress monitor, or null
+     */
+    public synchronized void publish(final Map<IFile, Map<Diagnostic, Integer>> diagnostics, IProgressMonitor monitor) throws CoreException {
+        if (diagnostics.isEmpty()) {
+            return;
+        }
+        run(new IWorkspaceRunnable() {
+
+            public void run(IProgressMonitor monitor) throws CoreException {
+                for (Map.Entry<IFile, Map<Diagnostic, Integer>> entry : diagnostics.entrySet()) {
+                    IFile file = entry.getKey();
+                    if (file.exists() == false) {
+                        continue;
+                    }
+                    Map<Key, IMarker> fileMarkers = getFileMarkers(file);
+                    Set<Key> fileSeen = seen.get(file);
+                    if (fileSeen == null) {
+                        fileSeen = new HashSet<Key>();
+                        seen.put(file, fileSeen);
+                    }
+                    for (Map.Entry<Diagnostic, Integer> diagnosticEntry : entry.getValue().entrySet()) {
+                        Diagnostic diagnostic = diagnosticEntry.getKey();
+                        int count = diagnosticEntry.getValue().intValue();
+                        Key key = new Key(diagnostic.getLine(), diagnostic.getSeverity(), diagnostic.getMessage(),
+                                diagnostic.getSetting());
+                        fileSeen.add(key);
+                        IMarker marker = fileMarkers.get(key);
+                        if (marker == null || marker.exists() == false) {
+                            marker = file.createMarker(Marker.DOXYGEN_MARKER);
+                            marker.setAttributes(Marker.ATTRIBUTE_NAMES, Marker.getAttributeValues(file, owner,
+                                    diagnostic.getSetting(), diagnostic.getLine(), diagnostic.getMessage(),
+                                    diagnostic.getSeverity(), count));
+                            fileMarkers.put(key, marker);
+                            Set<Key> fileCreated = created.get(file);
+                            if (fileCreated == null) {
+                                fileCreated = new HashSet<Key>();
+                                created.put(file, fileCreated);
+                            }
+                            fileCreated.add(key);
+                        } else if (marker.getAttribute(Marker.COUNT, 1) != count) {
+                            marker.setAttribute(Marker.COUNT, count);
+                        }
+                    }
+                }
+            }
+        }, diagnostics.keySet(), monitor);
+    }
+
+    /**
+     * Ends the publication of the diagnostics of the current build, deleting the markers
+     * of the previous builds that have not been published again.
+     *
+     * @param	monitor	a progress monitor, or null
+     */
+    public synchronized void end(IProgressMonitor monitor) throws CoreException {
+        final List<IMarker> obsoleteMarkers = new ArrayList<IMarker>();
+        final Set<IFile> files = new HashSet<IFile>();
+        for (Iterator<Map.Entry<IFile, Map<Key, IMarker>>> i = published.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<IFile, Map<Key, IMarker>> entry = i.next();
+            Set<Key> fileSeen = seen.get(entry.getKey());
+            for (Iterator<Map.Entry<Key, IMarker>> j = entry.getValue().entrySet().iterator(); j.hasNext();) {
+                Map.Entry<Key, IMarker> markerEntry = j.next();
+                if (fileSeen == null || fileSeen.contains(markerEntry.getKey()) == false) {
+                    obsoleteMarkers.add(markerEntry.getValue());
+                    files.add(entry.getKey());
+                    j.remove();
+                }
+            }
+            if (entry.getValue().isEmpty()) {
+                i.remove();
+            }
+        }
+        seen.clear();
+        created.clear();
+        delete(obsoleteMarkers, files, monitor);
+    }
+
+    /**
+     * Aborts the publication of the diagnostics of the current build, that has been
+     * canceled or has failed. The markers created by the build get deleted, and the
+     * markers of the previous builds are kept as they were.
+     *
+     * @param	monitor	a progress monitor, or null
+     */
+    public synchronized void abort(IProgressMonitor monitor) throws CoreException {
+        final List<IMarker> createdMarkers = new ArrayList<IMarker>();
+        for (Map.Entry<IFile, Set<Key>> entry : created.entrySet()) {
+            Map<Key, IMarker> fileMarkers = published.get(entry.getKey());
+            if (fileMarkers == null) {
+                continue;
+            }
+            for (Key key : entry.getValue()) {
+                IMarker marker = fileMarkers.remove(key);
+                if (marker != null) {
+                    createdMarkers.add(marker);
+                }
+            }
+            if (fileMarkers.isEmpty()) {
+                published.remove(entry.getKey());
+            }
+        }
+        Set<IFile> files = new HashSet<IFile>(created.keySet());
+        seen.clear();
+        created.clear();
+        delete(createdMarkers, files, monitor);
+    }
+
+    /**
+     * Deletes the published markers of the given file.
+     *
+     * @param	file	a workspace file
+     * @param	monitor	a progress monitor, or null
+     */
+    public synchronized void remove(IFile file, IProgressMonitor monitor) throws CoreException {
+        Map<Key, IMarker> fileMarkers = published.remove(file);
+        seen.remove(file);
+        created.remove(file);
+        if (fileMarkers != null) {
+            delete(new ArrayList<IMarker>(fileMarkers.values()), Collections.singleton(file), monitor);
+        }
+    }
+
+    /**
+     * Deletes all published markers.
+     *
+     * @param	monitor	a progress monitor, or null
+     */
+    public synchronized void clear(IProgressMonitor monitor) throws CoreException {
+        List<IMarker> markers = new ArrayList<IMarker>();
+        for (Map<Key, IMarker> fileMarkers : published.values()) {
+            markers.addAll(fileMarkers.values());
+        }
+        Set<IFile> files = new HashSet<IFile>(published.keySet());
+        published.clear();
+        seen.clear();
+        created.clear();
+        delete(markers, files, monitor);
+    }
+
+    private Map<Key, IMarker> getFileMarkers(IFile file) {
+        Map<Key, IMarker> fileMarkers = published.get(file);
+        if (fileMarkers == null) {
+            fileMarkers = new HashMap<Key, IMarker>();
+            published.put(file, fileMarkers);
+        }
+        return fileMarkers;
+    }
+
+    private static void delete(final List<IMarker> markers, Collection<IFile> files, IProgressMonitor monitor) throws CoreException {
+        if (markers.isEmpty()) {
+            return;
+        }
+        run(new IWorkspaceRunnable() {
+
+            public void run(IProgressMonitor monitor) throws CoreException {
+                ResourcesPlugin.getWorkspace().deleteMarkers(markers.toArray(new IMarker[markers.size()]));
+            }
+        }, files, monitor);
+    }
+
+    /**
+     * Runs the given operation, with a rule limited to the marker rules of the given files.
+     */
+    private static void run(IWorkspaceRunnable runnable, Collection<IFile> files, IProgressMonitor monitor) throws CoreException {
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
+        ISchedulingRule rule = null;
+        for (IFile file : files) {
+            rule = MultiRule.combine(rule, ruleFactory.markerRule(file));
+        }
+        // A nested rule must be contained in the rule already held by the thread, if any.
+        // Marker changes do not need more, since marker rules are null by default.
+        ISchedulingRule currentRule = Job.getJobManager().currentRule();
+        if (rule != null && currentRule != null && currentRule.contains(rule) == false) {
+            rule = null;
+        }
+        workspace.run(runnable, rule, IWorkspace.AVOID_UPDATE, monitor);
+    }
+
+}
@@ -0,0 +1,383 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eclox.core.Plugin;
+
+/**
+ * Implements the service reading the outputs of all running doxygen processes.
+ *
+ * The outputs are read by a small shared pool of threads instead of one thread per
+ * stream. Each stream is polled for the bytes available without blocking, which are
+ * decoded incrementally and split into lines. The complete lines read by a poll are
+ * handed over at once to the consumer of the stream. Streams without output are
+ * polled less and less frequently, up to a maximum delay.
+ *
+ * Once the process has exited, the end of a stream gets read with blocking reads
+ * by a thread apart, since a child process still holding the stream open would
+ * otherwise block a thread of the pool, and the outputs of all other builds with it.
+ * The clients wait for the end of the streams with a timeout for the same reason.
+ *
+ * The maximum delay trades the latency of the output following a quiet period for
+ * the CPU used while doxygen runs without output: a second keeps an idle build
+ * down to one poll per stream and second, and delays the next lines by a second
+ * at most. The end of the process does not wait for the next poll, since the
+ * client wakes the streams up once the process has exited.
+ *
+ * @author Andre Bossert
+ */
+final class OutputPump {
+
+    /**
+     * Defines the interface of the consumers of the read lines.
+     */
+    interface IConsumer {
+
+        /**
+         * Notifies that lines have been read.
+         *
+         * @param	lines	a string containing one or more lines, each terminated by a line feed
+         */
+        void linesRead(String lines);
+    }
+
+    /**
+     * Implements the handle of a pumped stream.
+     */
+    static final class Handle {
+
+        private final CountDownLatch done = new CountDownLatch(1); ///< released once the stream has been closed
+        private volatile boolean canceled = false; ///< tells if reading should stop
+        private volatile Channel channel; ///< the channel reading the stream
+
+        /**
+         * Stops reading the stream. Lines not yet handed over get dropped.
+         */
+        void cancel() {
+            canceled = true;
+            wakeUp();
+        }
+
+        /**
+         * Polls the stream at once, instead of waiting for the delay of a stream without
+         * output. To call once the process has exited, so the rest of the stream gets read
+         * without delay.
+         */
+        void wakeUp() {
+            Channel currentChannel = channel;
+            if (currentChannel != null) {
+                currentChannel.wakeUp();
+            }
+        }
+
+        /**
+         * Waits until the stream has been read up to its end, or has been canceled.
+         */
+        void waitFor() throws InterruptedException {
+            done.await();
+        }
+
+        /**
+         * Waits until the stream has been read up to its end, or has been canceled.
+         *
+         * @return	true when the stream has been closed, false when the timeout elapsed
+         */
+        boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+            return done.await(timeout, unit);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024; ///< the size of the read chunks
+    private static final int MAX_CHUNKS_PER_POLL = 4; ///< the number of chunks read at most by a poll, so that streams get served in turn
+    private static final long MIN_IDLE_DELAY = 1; ///< the delay in milliseconds before polling again a stream without output
+    private static final long MAX_IDLE_DELAY = 1000; ///< the maximum delay in milliseconds between two polls of a stream without output
+    private static final int MAX_LINE_LENGTH = 1024 * 1024; ///< the length from which an incomplete line gets handed over
+
+    private static OutputPump defaultPump; ///< the shared pump
+
+    /**
+     * Implements the reading of a stream, run by the pool on each poll.
+     */
+    private class Channel implements Runnable {
+
+        private final Process process; ///< the process writing the stream
+        private final InputStream input; ///< the read stream
+        private final IConsumer consumer; ///< the consumer of the lines
+        private final Handle handle; ///< the handle given to the client
+        private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final byte[] buffer = new byte[BUFFER_SIZE]; ///< the buffer receiving the read bytes
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE); ///< the bytes not yet decoded
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE); ///< the decoded characters
+        private final StringBuilder lines = new StringBuilder(); ///< the decoded lines, followed by the incomplete last line
+        private boolean carriageReturn = false; ///< tells if the last decoded character was a carriage return
+        private long idleDelay = MIN_IDLE_DELAY; ///< the delay before the next poll, when there is no output
+        private ScheduledFuture<?> nextPoll; ///< the delayed next poll, null when none
+        private boolean wakeUpPending = false; ///< tells if a wake up came while a poll was running
+
+        Channel(Process process, InputStream input, IConsumer consumer, Handle handle) {
+            this.process = process;
+            this.input = input;
+            this.consumer = consumer;
+            this.handle = handle;
+        }
+
+        public void run() {
+            boolean continued = false; // tells if the reading continues in another run
+            try {
+                if (handle.canceled) {
+                    return;
+                }
+                int readCount = 0;
+                for (int chunk = 0; chunk < MAX_CHUNKS_PER_POLL; ++chunk) {
+                    int available = input.available();
+                    if (available == 0) {
+                        if (process.isAlive()) {
+                            break;
+                        }
+                        // The process has exited, but the read of the end of the stream may still
+                        // block while a child process holds the stream open, so it happens apart.
+                        deliver(false);
+                        drainer.execute(new Runnable() {
+                            public void run() {
+                                drain();
+                            }
+                        });
+                        continued = true;
+                        return;
+                    }
+                    int read = input.read(buffer, 0, Math.min(available, bytes.remaining()));
+                    if (read < 0) {
+                        decode(true);
+                        deliver(true);
+                        return;
+                    }
+                    bytes.put(buffer, 0, read);
+                    decode(false);
+                    readCount += read;
+                }
+                deliver(false);
+                if (readCount > 0) {
+                    idleDelay = MIN_IDLE_DELAY;
+                    executor.execute(this);
+                } else {
+                    synchronized (this) {
+                        if (wakeUpPending) {
+                            wakeUpPending = false;
+                            idleDelay = MIN_IDLE_DELAY;
+                            executor.execute(this);
+                        } else {
+                            nextPoll = executor.schedule(this, idleDelay, TimeUnit.MILLISECONDS);
+                            idleDelay = Math.min(idleDelay * 2, MAX_IDLE_DELAY);
+                        }
+                    }
+                }
+                continued = true;
+            } catch (IOException e) {
+                if (handle.canceled == false) {
+                    Plugin.log(e);
+                }
+            } catch (Throwable t) {
+                Plugin.log(t);
+            } finally {
+                if (continued == false) {
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Reads the stream up to its end with blocking reads, once the process has exited.
+         */
+        private void drain() {
+            try {
+                int read;
+                while (handle.canceled == false && (read = input.read(buffer, 0, bytes.remaining())) >= 0) {
+                    bytes.put(buffer, 0, read);
+                    decode(false);
+                    deliver(false);
+                }
+                decode(true);
+                deliver(true);
+            } catch (IOException e) {
+                if (handle.canceled == false) {
+                    Plugin.log(e);
+                }
+            } catch (Throwable t) {
+                Plugin.log(t);
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Runs the delayed next poll at once. A poll that already started is left alone,
+         * so the channel never gets run twice at the same time, but it will not wait
+         * before polling again.
+         */
+        synchronized void wakeUp() {
+            if (nextPoll != null && nextPoll.cancel(false)) {
+                nextPoll = null;
+                idleDelay = MIN_IDLE_DELAY;
+                executor.execute(this);
+            } else {
+                wakeUpPending = true;
+            }
+        }
+
+        /**
+         * Decodes the buffered bytes and appends the characters to the lines, turning
+         * all line terminators into line feeds.
+         */
+        private void decode(boolean endOfInput) {
+            bytes.flip();
+            while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+                append();
+            }
+            if (endOfInput) {
+                while (decoder.flush(chars).isOverflow()) {
+                    append();
+                }
+            }
+            append();
+            bytes.compact();
+        }
+
+        /**
+         * Appends the decoded characters to the lines and clears them.
+         */
+        private void append() {
+            chars.flip();
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (c == '\n') {
+                    if (carriageReturn == false) {
+                        lines.append('\n');
+                    }
+                } else if (c == '\r') {
+                    lines.append('\n');
+                } else {
+                    lines.append(c);
+                }
+                carriageReturn = (c == '\r');
+            }
+            chars.clear();
+        }
+
+        /**
+         * Hands the complete lines over to the consumer. At the end of the input,
+         * the incomplete last line gets terminated and handed over as well.
+         */
+        private void deliver(boolean endOfInput) {
+            if (endOfInput && lines.length() > 0 && lines.charAt(lines.length() - 1) != '\n') {
+                lines.append('\n');
+            }
+            int end = lines.lastIndexOf("\n") + 1;
+            if (end == 0 && lines.length() >= MAX_LINE_LENGTH) {
+                // Hands over an overlong line in parts, instead of growing the buffer without bound.
+                lines.append('\n');
+                end = lines.length();
+            }
+            if (end > 0 && handle.canceled == false) {
+                consumer.linesRead(lines.substring(0, end));
+            }
+            lines.delete(0, end);
+        }
+
+        private void close() {
+            try {
+                input.close();
+            } catch (IOException e) {
+                Plugin.log(e);
+            } finally {
+                handle.done.countDown();
+            }
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor executor; ///< the pool polling the streams
+    private final ExecutorService drainer; ///< the threads reading the ends of the streams with blocking reads
+
+    /**
+     * Retrieves the shared pump.
+     *
+     * @return	the pump instance
+     */
+    static synchronized OutputPump getDefault() {
+        if (defaultPump == null) {
+            defaultPump = new OutputPump(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+        }
+        return defaultPump;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param	threadCount	the number of threads reading the streams
+     */
+    OutputPump(int threadCount) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(threadCount, new ThreadFactory() {
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Doxygen Output Pump " + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final AtomicInteger drainerNumber = new AtomicInteger();
+        drainer = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Doxygen Output Drain " + drainerNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts reading an output stream of the given process.
+     *
+     * @param	process		the process writing to the stream
+     * @param	input		the stream to read, closed once read
+     * @param	consumer	the consumer of the read lines
+     *
+     * @return	the handle of the stream
+     */
+    Handle add(Process process, InputStream input, IConsumer consumer) {
+        Handle handle = new Handle();
+        Channel channel = new Channel(process, input, consumer, handle);
+        handle.channel = channel;
+        executor.execute(channel);
+        return handle;
+    }
+
+}
@@ -10,6 +10,7 @@
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
  *     Andre Bossert - Add ability to use Doxyfile not in project scope
+ *                   - look up the build job by file, without creating a doxyfile
  *
  ******************************************************************************/
 
@@ -29,7 +30,6 @@ import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
 import org.eclipse.jface.viewers.LabelProviderChangedEvent;
 
-import eclox.core.doxyfiles.Doxyfile;
 import eclox.core.doxygen.BuildJob;
 
 public class DoxyfileDecorator implements ILightweightLabelDecorator {
@@ -92,9 +92,8 @@ public class DoxyfileDecorator implements ILightweightLabelDecorator {
      * @see org.eclipse.jface.viewers.ILightweightLabelDecorator#decorate(java.lang.Object, org.eclipse.jface.viewers.IDecoration)
      */
     public void decorate(Object element, IDecoration decoration) {
-        if (Doxyfile.isDoxyfile(element)) {
-            Doxyfile doxyfile = new Doxyfile((IFile) element, null);
-            BuildJob job = BuildJob.findJob(doxyfile);
+        if (element instanceof IFile) {
+            BuildJob job = BuildJob.findJob((IFile) element);
             if (job != null && job.getState() == BuildJob.RUNNING) {
                 decoration.addOverlay(ImageDescriptor.createFromFile(this.getClass(), "build_co.gif"),
                         IDecoration.BOTTOM_LEFT);
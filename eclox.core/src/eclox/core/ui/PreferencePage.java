@@ -10,13 +10,18 @@
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
  *     Andre Bossert - Refactoring of deprecated API usage
+ *                   - marker volume preferences
+ *                   - maximum concurrent builds preference
  *
  ******************************************************************************/
 
 package eclox.core.ui;
 
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.jface.preference.RadioGroupFieldEditor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Label;
@@ -24,6 +29,8 @@ import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.eclipse.ui.preferences.ScopedPreferenceStore;
 
+import eclox.core.IPreferences;
+import eclox.core.MarkerMode;
 import eclox.core.Plugin;
 
 /**
@@ -65,6 +72,37 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
         doxygenLabelData.horizontalAlignment = SWT.FILL;
         doxygenLabel.setText("Choose among available doxygen versions, the one you would like to use.");
         doxygenLabel.setLayoutData(doxygenLabelData);
+
+        // Creates the build concurrency control.
+        IntegerFieldEditor maxProcessesField = new IntegerFieldEditor(IPreferences.BUILD_MAX_PROCESSES,
+                "Maximum concurrent builds (0 for automatic):", getFieldEditorParent());
+        maxProcessesField.setValidRange(0, 1024);
+        addField(maxProcessesField);
+
+        // Creates the marker volume controls.
+        int markerModeLength = MarkerMode.values().length;
+        String[][] markerModeNames = new String[markerModeLength][2];
+        for (int i = 0; i < markerModeLength; i++) {
+            markerModeNames[i][0] = MarkerMode.values()[i].getName();
+            markerModeNames[i][1] = MarkerMode.values()[i].name();
+        }
+        RadioGroupFieldEditor markerModeField = new RadioGroupFieldEditor(IPreferences.MARKER_MODE,
+                "Warning and error markers", 1, markerModeNames, getFieldEditorParent(), true);
+        addField(markerModeField);
+
+        BooleanFieldEditor aggregateField = new BooleanFieldEditor(IPreferences.MARKER_AGGREGATE,
+                "Aggregate identical messages of a file into a single marker", getFieldEditorParent());
+        addField(aggregateField);
+
+        IntegerFieldEditor fileLimitField = new IntegerFieldEditor(IPreferences.MARKER_LIMIT_FILE,
+                "Maximum markers per file (0 for no limit):", getFieldEditorParent());
+        fileLimitField.setValidRange(0, Integer.MAX_VALUE);
+        addField(fileLimitField);
+
+        IntegerFieldEditor buildLimitField = new IntegerFieldEditor(IPreferences.MARKER_LIMIT_BUILD,
+                "Maximum markers per build (0 for no limit):", getFieldEditorParent());
+        buildLimitField.setValidRange(0, Integer.MAX_VALUE);
+        addField(buildLimitField);
     }
 
 }
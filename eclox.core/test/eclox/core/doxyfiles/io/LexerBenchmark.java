@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxyfiles.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the lexer with the regular expression chain the parser used before.
+ *
+ * First, both classify random lines and must agree on the token kind and the
+ * line parts. Then, both classify a generated doxyfile with a long continued
+ * INPUT list several times, and the times are printed.
+ *
+ * Run from the eclox.core folder:
+ *
+ * <pre>
+ * javac -d /tmp/eclox-test -sourcepath src:test test/eclox/core/doxyfiles/io/LexerBenchmark.java
+ * java -cp /tmp/eclox-test eclox.core.doxyfiles.io.LexerBenchmark [random lines] [input entries] [rounds]
+ * </pre>
+ *
+ * @author Andre Bossert
+ */
+public class LexerBenchmark {
+
+    private static final Pattern commentPattern = Pattern.compile("#.*");
+    private static final Pattern emptyPattern = Pattern.compile("\\s*");
+    private static final Pattern settingAssignmentPattern = Pattern.compile("(\\w+)(\\s*)=\\s*(.*?)\\s*(\\\\)?");
+    private static final Pattern settingIncrementPattern = Pattern.compile("(\\w+)(\\s*)\\+=\\s*(.*?)\\s*(\\\\)?");
+    private static final Pattern continuedSettingAssignmentPattern = Pattern.compile("\\s*(.+?)\\s*(\\\\)?");
+    private static final Pattern includePattern = Pattern.compile("@INCLUDE\\s*=\\s*(.*)");
+    private static final Pattern includePathPattern = Pattern.compile("@INCLUDE_PATH\\s*=\\s*(.*)");
+
+    /**
+     * Characters the random lines are made of, including the line terminators '.' refuses.
+     */
+    private static final String ALPHABET = "ab_Z09 \t=+\\#@\"INCLUDE_PATH\u0085\u2028 \u00e9";
+
+    public static void main(String[] args) {
+        int randomLines = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int inputEntries = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+        int mismatches = compare(randomLines);
+        System.out.println(randomLines + " random lines, " + mismatches + " mismatches");
+
+        List<String> doxyfile = generateDoxyfile(inputEntries);
+        // Warms up both paths before measuring.
+        classifyWithPatterns(doxyfile);
+        classifyWithLexer(doxyfile);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; ++i) {
+            classifyWithPatterns(doxyfile);
+        }
+        long patternTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; ++i) {
+            classifyWithLexer(doxyfile);
+        }
+        long lexerTime = System.nanoTime() - start;
+
+        System.out.println(doxyfile.size() + " lines x " + rounds + " rounds: regular expressions "
+                + patternTime / 1000000 + " ms, lexer " + lexerTime / 1000000 + " ms");
+        if (mismatches != 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Classifies random lines with both paths.
+     *
+     * @return	the number of lines classified differently
+     */
+    private static int compare(int count) {
+        Random random = new Random(42);
+        Lexer lexer = new Lexer();
+        int mismatches = 0;
+        for (int i = 0; i < count; ++i) {
+            StringBuilder line = new StringBuilder();
+            int length = random.nextInt(24);
+            for (int j = 0; j < length; ++j) {
+                line.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            String expected = classify(line.toString());
+            String actual = describe(lexer, line.toString());
+            if (expected.equals(actual) == false) {
+                if (mismatches < 10) {
+                    System.out.println("mismatch for [" + line + "]: expected " + expected + ", got " + actual);
+                }
+                ++mismatches;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Classifies a line the way the former parser did.
+     *
+     * @return	a string describing the token kind and the line parts
+     */
+    private static String classify(String line) {
+        if (emptyPattern.matcher(line).matches()) {
+            return "EMPTY";
+        }
+        if (commentPattern.matcher(line).matches()) {
+            return "COMMENT";
+        }
+        Matcher matcher = settingAssignmentPattern.matcher(line);
+        if (matcher.matches()) {
+            return "ASSIGNMENT|" + matcher.group(1) + "|" + matcher.group(2) + "|" + matcher.group(3) + "|"
+                    + (matcher.group(4) != null);
+        }
+        matcher = settingIncrementPattern.matcher(line);
+        if (matcher.matches()) {
+            return "INCREMENT|" + matcher.group(1) + "|" + matcher.group(2) + "|" + matcher.group(3) + "|"
+                    + (matcher.group(4) != null);
+        }
+        if (includePattern.matcher(line).matches()) {
+            return "INCLUDE";
+        }
+        if (includePathPattern.matcher(line).matches()) {
+            return "INCLUDE_PATH";
+        }
+        matcher = continuedSettingAssignmentPattern.matcher(line);
+        if (matcher.matches()) {
+            return "CONTINUATION|" + matcher.group(1) + "|" + (matcher.group(2) != null);
+        }
+        return "UNKNOWN";
+    }
+
+    /**
+     * Classifies a line with the lexer.
+     *
+     * @return	a string describing the token kind and the line parts, like classify does
+     */
+    private static String describe(Lexer lexer, String line) {
+        Lexer.Token token = lexer.scan(line);
+        switch (token) {
+        case ASSIGNMENT:
+        case INCREMENT:
+            return token + "|" + lexer.getIdentifier() + "|" + lexer.getSpaces() + "|" + lexer.getValue() + "|"
+                    + lexer.isContinued();
+        case CONTINUATION:
+            return token + "|" + lexer.getValue() + "|" + lexer.isContinued();
+        default:
+            return token.toString();
+        }
+    }
+
+    private static List<String> generateDoxyfile(int inputEntries) {
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 300; ++i) {
+            lines.add("# Comment line " + i + " describing the next setting.");
+            lines.add("#");
+            lines.add("SETTING_" + i + "             = value_" + i);
+            lines.add("");
+        }
+        lines.add("@INCLUDE_PATH = ../common");
+        lines.add("@INCLUDE = common.doxyfile");
+        lines.add("INPUT                  = src/module_0/file_0.cpp \\");
+        for (int i = 1; i < inputEntries; ++i) {
+            lines.add("                         src/module_" + (i / 100) + "/file_" + i + ".cpp \\");
+        }
+        lines.add("                         src/main.cpp");
+        lines.add("FILE_PATTERNS         += *.h *.hpp");
+        return lines;
+    }
+
+    /**
+     * Classifies the lines like the former parser, retrieving the parts it stored.
+     */
+    private static int classifyWithPatterns(List<String> lines) {
+        int length = 0;
+        for (String line : lines) {
+            if (emptyPattern.matcher(line).matches() || commentPattern.matcher(line).matches()) {
+                length += line.length();
+                continue;
+            }
+            Matcher matcher = settingAssignmentPattern.matcher(line);
+            if (matcher.matches() == false) {
+                matcher = settingIncrementPattern.matcher(line);
+            }
+            if (matcher.matches()) {
+                length += matcher.group(1).length() + matcher.group(2).length() + matcher.group(3).length();
+                continue;
+            }
+            if (includePattern.matcher(line).matches() || includePathPattern.matcher(line).matches()) {
+                length += line.length();
+                continue;
+            }
+            matcher = continuedSettingAssignmentPattern.matcher(line);
+            if (matcher.matches()) {
+                length += matcher.group(1).length();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Classifies the lines with the lexer, retrieving the parts the parser stores.
+     */
+    private static int classifyWithLexer(List<String> lines) {
+        Lexer lexer = new Lexer();
+        int length = 0;
+        for (String line : lines) {
+            switch (lexer.scan(line)) {
+            case ASSIGNMENT:
+            case INCREMENT:
+                length += lexer.getIdentifier().length() + lexer.getSpaces().length() + lexer.getValue().length();
+                break;
+            case CONTINUATION:
+                length += lexer.getValue().length();
+                break;
+            default:
+                length += line.length();
+            }
+        }
+        return length;
+    }
+
+}
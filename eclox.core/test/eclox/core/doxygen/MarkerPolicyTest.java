@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+
+import eclox.core.MarkerMode;
+
+/**
+ * Checks the marker selection of a build, feeding the diagnostics over several
+ * polls of the build job.
+ *
+ * Run from the eclox.core folder, with the jars of the target platform (at least
+ * org.eclipse.core.resources, org.eclipse.core.runtime and org.eclipse.equinox.common)
+ * in the class path:
+ *
+ * <pre>
+ * javac -d /tmp/eclox-test -cp "$PLATFORM/*" -sourcepath src:test test/eclox/core/doxygen/MarkerPolicyTest.java
+ * java -cp "/tmp/eclox-test:$PLATFORM/*" eclox.core.doxygen.MarkerPolicyTest
+ * </pre>
+ *
+ * @author Andre Bossert
+ */
+public class MarkerPolicyTest {
+
+    private static int failures = 0; ///< the number of failed checks
+
+    public static void main(String[] args) {
+        testBuildLimit();
+        testFileLimit();
+        testAggregation();
+        testRelease();
+        if (failures != 0) {
+            System.out.println(failures + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("all checks passed");
+    }
+
+    /**
+     * Feeds 5 polls of 4 diagnostics in each of 3 files, with a build limit of 10 markers.
+     */
+    private static void testBuildLimit() {
+        MarkerPolicy policy = new MarkerPolicy(MarkerMode.markerModeAllFiles, false, 0, 10);
+        DiagnosticIndex index = new DiagnosticIndex();
+        IFile[] files = { createFile("a.h"), createFile("b.h"), createFile("c.h") };
+        int markers = 0;
+        int informations = 0;
+        int limitReached = 0;
+        Diagnostic limitDiagnostic = null;
+        for (int poll = 0; poll < 5; ++poll) {
+            for (IFile file : files) {
+                for (int i = 0; i < 4; ++i) {
+                    index.add(file, new Diagnostic(file.getName(), poll * 4 + i + 1, IMarker.SEVERITY_WARNING,
+                            "warning " + poll + "." + i, null));
+                }
+            }
+            for (IFile file : files) {
+                for (Diagnostic diagnostic : policy.select(file, index).keySet()) {
+                    if (diagnostic.getSeverity() == IMarker.SEVERITY_INFO) {
+                        ++informations;
+                    } else {
+                        ++markers;
+                    }
+                }
+            }
+            Diagnostic diagnostic = policy.getLimitReached("/project/Doxyfile");
+            if (diagnostic != null) {
+                check("same limit diagnostic", limitDiagnostic == null || limitDiagnostic == diagnostic);
+                limitDiagnostic = diagnostic;
+                ++limitReached;
+            }
+            check("budget never exceeded, poll " + poll, policy.getMarkedCount() <= 10);
+        }
+        check("10 markers", markers == 10);
+        check("no informational marker per file", informations == 0);
+        check("marked count", policy.getMarkedCount() == 10);
+        check("omitted count", policy.getOmittedCount() == 50);
+        check("limit reported on each poll leaving diagnostics out", limitReached == 5);
+        check("nothing new to report", policy.getLimitReached("/project/Doxyfile") == null);
+    }
+
+    /**
+     * Feeds diagnostics over the file limit, the informational diagnostic only tells the count.
+     */
+    private static void testFileLimit() {
+        MarkerPolicy policy = new MarkerPolicy(MarkerMode.markerModeAllFiles, false, 3, 0);
+        DiagnosticIndex index = new DiagnosticIndex();
+        IFile file = createFile("a.h");
+        Diagnostic information = null;
+        for (int poll = 0; poll < 3; ++poll) {
+            for (int i = 0; i < 2; ++i) {
+                index.add(file, new Diagnostic("a.h", poll * 2 + i + 1, IMarker.SEVERITY_WARNING, "warning", null));
+            }
+            for (Map.Entry<Diagnostic, Integer> entry : policy.select(file, index).entrySet()) {
+                if (entry.getKey().getSeverity() == IMarker.SEVERITY_INFO) {
+                    check("same informational diagnostic", information == null || information == entry.getKey());
+                    information = entry.getKey();
+                    check("omitted count, poll " + poll, entry.getValue().intValue() == poll * 2 - 1);
+                }
+            }
+        }
+        check("informational diagnostic", information != null);
+        check("file limit", policy.getMarkedCount() == 3);
+        check("no build limit", policy.getOmittedCount() == 0);
+        check("no more diagnostics", policy.select(file, index).isEmpty());
+    }
+
+    /**
+     * Feeds further occurrences of a diagnostic, which only update the count of its marker.
+     */
+    private static void testAggregation() {
+        MarkerPolicy policy = new MarkerPolicy(MarkerMode.markerModeAllFiles, true, 0, 2);
+        DiagnosticIndex index = new DiagnosticIndex();
+        IFile file = createFile("a.h");
+        Diagnostic first = null;
+        for (int poll = 0; poll < 4; ++poll) {
+            index.add(file, new Diagnostic("a.h", poll + 1, IMarker.SEVERITY_WARNING, "repeated", null));
+            index.add(file, new Diagnostic("a.h", poll + 1, IMarker.SEVERITY_WARNING, "unique " + poll, null));
+            Map<Diagnostic, Integer> selected = policy.select(file, index);
+            for (Map.Entry<Diagnostic, Integer> entry : selected.entrySet()) {
+                if (entry.getKey().getMessage().equals("repeated")) {
+                    check("same aggregated diagnostic", first == null || first == entry.getKey());
+                    first = entry.getKey();
+                    check("occurrences, poll " + poll, entry.getValue().intValue() == poll + 1);
+                }
+            }
+            check("only changes selected, poll " + poll, selected.size() == ((poll == 0) ? 2 : 1));
+        }
+        check("message without count", first != null && first.getMessage().equals("repeated"));
+        check("aggregated markers", policy.getMarkedCount() == 2);
+        check("unique diagnostics left out", policy.getOmittedCount() == 3);
+    }
+
+    /**
+     * Releases a file whose markers got deleted, its next selection starts over.
+     */
+    private static void testRelease() {
+        MarkerPolicy policy = new MarkerPolicy(MarkerMode.markerModeOpenedFiles, false, 0, 4);
+        DiagnosticIndex index = new DiagnosticIndex();
+        IFile a = createFile("a.h");
+        IFile b = createFile("b.h");
+        for (int i = 0; i < 3; ++i) {
+            index.add(a, new Diagnostic("a.h", i + 1, IMarker.SEVERITY_WARNING, "warning", null));
+            index.add(b, new Diagnostic("b.h", i + 1, IMarker.SEVERITY_WARNING, "warning", null));
+        }
+        policy.select(a, index);
+        policy.select(b, index);
+        check("limited before release", policy.getMarkedCount() == 4 && policy.getOmittedCount() == 2);
+        policy.release(a);
+        check("released", policy.getMarkedCount() == 1 && policy.getOmittedCount() == 2);
+        check("selected again", policy.select(a, index).size() == 3);
+        check("limited after release", policy.getMarkedCount() == 4);
+    }
+
+    private static void check(String name, boolean condition) {
+        if (condition == false) {
+            System.out.println("failed: " + name);
+            ++failures;
+        }
+    }
+
+    /**
+     * Creates a stand-in for a workspace file, only answering its name.
+     */
+    private static IFile createFile(final String name) {
+        return (IFile) Proxy.newProxyInstance(IFile.class.getClassLoader(), new Class<?>[] { IFile.class },
+                new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getName")) {
+                            return name;
+                        } else if (method.getName().equals("equals")) {
+                            return Boolean.valueOf(proxy == args[0]);
+                        } else if (method.getName().equals("hashCode")) {
+                            return Integer.valueOf(System.identityHashCode(proxy));
+                        } else if (method.getName().equals("toString")) {
+                            return name;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.core.doxygen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the outputs of many concurrent fake doxygen processes, once with a reader
+ * thread per stream like the build jobs did before, once with the output pump.
+ *
+ * The fake doxygen is this class started in another virtual machine, writing
+ * progress lines to its standard output and warnings to its standard error. The
+ * load test prints, for each mode, the wall time, the CPU time of this virtual
+ * machine, the peak number of threads and the number of lines read. The idle
+ * test starts processes writing nothing for a while and prints the CPU time the
+ * output pump used meanwhile.
+ *
+ * Run from the eclox.core folder, with the jars of the target platform (at least
+ * org.eclipse.core.runtime, org.eclipse.equinox.common and org.osgi) in the class path:
+ *
+ * <pre>
+ * javac -d /tmp/eclox-test -cp "$PLATFORM/*" -sourcepath src:test test/eclox/core/doxygen/OutputPumpLoadTest.java
+ * java -cp "/tmp/eclox-test:$PLATFORM/*" eclox.core.doxygen.OutputPumpLoadTest [processes] [stdout lines] [stderr lines] [idle seconds]
+ * </pre>
+ *
+ * @author Andre Bossert
+ */
+public class OutputPumpLoadTest {
+
+    private static final String FAKE = "fake"; ///< the first argument starting the fake doxygen
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(FAKE)) {
+            fakeDoxygen(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        int processes = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+        int outputLines = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+        int errorLines = (args.length > 2) ? Integer.parseInt(args[2]) : 2000;
+        int idleSeconds = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+        long expectedLines = (long) processes * (outputLines + errorLines + 2);
+
+        // Warms up both modes.
+        runThreads(2, 1000, 100, 0);
+        runPump(2, 1000, 100, 0);
+
+        boolean passed = true;
+        passed &= report("thread per stream", expectedLines, runThreads(processes, outputLines, errorLines, 0));
+        passed &= report("output pump", expectedLines, runPump(processes, outputLines, errorLines, 0));
+
+        // Measures an idle pump: the processes only write once they are done sleeping.
+        passed &= report("output pump, " + idleSeconds + " s idle", processes * 2L,
+                runPump(processes, 0, 0, idleSeconds));
+        if (passed == false) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Implements the fake doxygen.
+     */
+    private static void fakeDoxygen(int outputLines, int errorLines, int idleSeconds) throws InterruptedException {
+        if (idleSeconds > 0) {
+            Thread.sleep(idleSeconds * 1000L);
+        }
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        int errorStep = (errorLines > 0) ? Math.max(1, outputLines / errorLines) : Integer.MAX_VALUE;
+        int errors = 0;
+        for (int i = 0; i < outputLines; ++i) {
+            out.println("Generating docs for compound ns" + (i / 100) + "::Class" + i + "...");
+            if (i % errorStep == 0 && errors < errorLines) {
+                err.println("/src/module" + (i / 100) + "/file" + i + ".h:" + (i % 500 + 1)
+                        + ": warning: Member value" + i + " (variable) of class Class" + i + " is not documented.");
+                ++errors;
+            }
+        }
+        for (; errors < errorLines; ++errors) {
+            err.println("/src/main.cpp:" + (errors + 1) + ": warning: argument 'x' has no documentation.");
+        }
+        out.println("finished...");
+        err.println("done.");
+        out.flush();
+        err.flush();
+    }
+
+    /**
+     * Holds the measures of a run.
+     */
+    private static class Result {
+        long wallTime; ///< in milliseconds
+        long cpuTime; ///< the CPU time of this virtual machine, in milliseconds
+        int peakThreads; ///< the peak number of live threads
+        long lines; ///< the number of read lines
+    }
+
+    private static boolean report(String mode, long expectedLines, Result result) {
+        System.out.println(String.format("%-28s %6d ms wall %6d ms CPU %4d threads %8d lines", mode, result.wallTime,
+                result.cpuTime, result.peakThreads, result.lines));
+        if (result.lines != expectedLines) {
+            System.out.println("  expected " + expectedLines + " lines");
+            return false;
+        }
+        return true;
+    }
+
+    private static List<Process> startProcesses(int count, int outputLines, int errorLines, int idleSeconds)
+            throws IOException {
+        String java = System.getProperty("java.home") + "/bin/java";
+        String classPath = System.getProperty("java.class.path");
+        List<Process> processes = new ArrayList<Process>(count);
+        for (int i = 0; i < count; ++i) {
+            processes.add(new ProcessBuilder(java, "-Xshare:auto", "-XX:TieredStopAtLevel=1", "-cp", classPath,
+                    OutputPumpLoadTest.class.getName(), FAKE, String.valueOf(outputLines), String.valueOf(errorLines),
+                    String.valueOf(idleSeconds)).start());
+        }
+        return processes;
+    }
+
+    /**
+     * Reads the outputs with a thread per stream.
+     */
+    private static Result runThreads(int count, int outputLines, int errorLines, int idleSeconds) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        final AtomicLong lines = new AtomicLong();
+        long cpuStart = getProcessCpuTime();
+        long start = System.nanoTime();
+
+        List<Process> processes = startProcesses(count, outputLines, errorLines, idleSeconds);
+        List<Thread> readers = new ArrayList<Thread>();
+        for (Process process : processes) {
+            for (final InputStream input : new InputStream[] { process.getInputStream(), process.getErrorStream() }) {
+                Thread reader = new Thread(new Runnable() {
+
+                    public void run() {
+                        try {
+                            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(input));
+                            while (bufferedReader.readLine() != null) {
+                                lines.incrementAndGet();
+                            }
+                            bufferedReader.close();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        for (Process process : processes) {
+            process.waitFor();
+        }
+
+        Result result = new Result();
+        result.wallTime = (System.nanoTime() - start) / 1000000;
+        result.cpuTime = (getProcessCpuTime() - cpuStart) / 1000000;
+        result.peakThreads = threads.getPeakThreadCount();
+        result.lines = lines.get();
+        return result;
+    }
+
+    /**
+     * Reads the outputs with the output pump, like the build jobs do.
+     */
+    private static Result runPump(int count, int outputLines, int errorLines, int idleSeconds) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        final AtomicLong lines = new AtomicLong();
+        long cpuStart = getProcessCpuTime();
+        long start = System.nanoTime();
+
+        OutputPump.IConsumer consumer = new OutputPump.IConsumer() {
+
+            public void linesRead(String text) {
+                long count = 0;
+                for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1)) {
+                    ++count;
+                }
+                lines.addAndGet(count);
+            }
+        };
+        List<Process> processes = startProcesses(count, outputLines, errorLines, idleSeconds);
+        List<OutputPump.Handle> handles = new ArrayList<OutputPump.Handle>();
+        for (Process process : processes) {
+            handles.add(OutputPump.getDefault().add(process, process.getInputStream(), consumer));
+            handles.add(OutputPump.getDefault().add(process, process.getErrorStream(), consumer));
+        }
+        for (int i = 0; i < processes.size(); ++i) {
+            processes.get(i).waitFor();
+            handles.get(2 * i).wakeUp();
+            handles.get(2 * i + 1).wakeUp();
+        }
+        for (OutputPump.Handle handle : handles) {
+            handle.waitFor();
+        }
+
+        Result result = new Result();
+        result.wallTime = (System.nanoTime() - start) / 1000000;
+        result.cpuTime = (getProcessCpuTime() - cpuStart) / 1000000;
+        result.peakThreads = threads.getPeakThreadCount();
+        result.lines = lines.get();
+        return result;
+    }
+
+    /**
+     * Retrieves the CPU time used by this virtual machine.
+     *
+     * @return	a time in nanoseconds
+     */
+    private static long getProcessCpuTime() {
+        java.lang.management.OperatingSystemMXBean system = ManagementFactory.getOperatingSystemMXBean();
+        if (system instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) system).getProcessCpuTime();
+        }
+        return 0;
+    }
+
+}
@@ -11,6 +11,8 @@
  *     Guillaume Brocker - Initial API and implementation
  *     Andre Bossert - Add ability to use Doxyfile not in project scope
  *                   - Refactoring of deprecated API usage
+ *                   - Build of doxyfiles in tag file dependency order
+ *                   - Collect the doxyfiles of a build set in its job
  *
  ******************************************************************************/
 
@@ -30,14 +32,23 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
 
 import eclox.core.doxyfiles.Doxyfile;
 import eclox.core.doxygen.BuildJob;
+import eclox.core.doxygen.BuildSet;
+import eclox.core.doxygen.BuildSetJob;
 import eclox.core.doxygen.IBuildJobListener;
 import eclox.ui.console.Console;
 
@@ -120,6 +131,87 @@ public class BuildManager {
      * @param	doxyfile	the doxyfile to build
      */
     public void buildOrUpdate(Doxyfile doxyfile, boolean doBuild) {
+        if (saveEditors() == false) {
+            return;
+        }
+
+        // Retrieves the build job for the given doxyfile.
+        BuildJob job = BuildJob.getJob(doxyfile, doBuild);
+        addToHistory(job);
+
+        // Updates the console.
+        Console.show(job);
+
+        // Schedule the job to build.
+        job.schedule(1000);
+    }
+
+    /**
+     * Launches the build of all doxyfiles found in the given resource, in the order
+     * of their tag file dependencies. Once done, a report of the builds is shown.
+     *
+     * @param	root	the resource to search for doxyfiles
+     *
+     * @see		BuildSet
+     */
+    public void buildSet(IResource root) {
+        if (saveEditors() == false) {
+            return;
+        }
+
+        // The build set job collects the doxyfiles and creates the build set, then schedules the builds in order.
+        final Display display = PlatformUI.getWorkbench().getDisplay();
+        final BuildSetJob job = new BuildSetJob(root) {
+            protected void buildSetCreated(BuildSet buildSet) {
+                final List<BuildJob> jobs = new LinkedList<BuildJob>();
+                for (BuildSet.Node node : buildSet.getNodes()) {
+                    if (node.getState() == BuildSet.State.WAITING) {
+                        jobs.add(BuildJob.getJob(node.getDoxyfile(), true));
+                    }
+                }
+                display.asyncExec(new Runnable() {
+                    public void run() {
+                        showJobs(jobs);
+                    }
+                });
+            }
+        };
+        job.addJobChangeListener(new JobChangeAdapter() {
+            public void done(IJobChangeEvent event) {
+                job.removeJobChangeListener(this);
+                if (event.getResult().getSeverity() == IStatus.CANCEL || job.getReport() == null) {
+                    return;
+                }
+                display.asyncExec(new Runnable() {
+                    public void run() {
+                        IWorkbenchWindow window = PlatformUI.getWorkbench().getActiveWorkbenchWindow();
+                        Shell shell = (window != null) ? window.getShell() : display.getActiveShell();
+                        MessageDialog.openInformation(shell, job.getName(), job.getReport());
+                    }
+                });
+            }
+        });
+        job.schedule();
+    }
+
+    /**
+     * Adds the given build jobs to the history, and shows the console of the last one.
+     */
+    private void showJobs(List<BuildJob> jobs) {
+        for (BuildJob job : jobs) {
+            addToHistory(job);
+        }
+        if (jobs.isEmpty() == false) {
+            Console.show(jobs.get(jobs.size() - 1));
+        }
+    }
+
+    /**
+     * Saves the opened editors according to the auto save preference.
+     *
+     * @return	false when the user canceled the save, true otherwise
+     */
+    private boolean saveEditors() {
         // Retrieves the plug-in preferences.
         IPreferenceStore preferences = Plugin.getDefault().getPreferenceStore();
 
@@ -132,7 +224,7 @@ public class BuildManager {
 
             saved = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage().saveAllEditors(true);
             if (saved == false) {
-                return;
+                return false;
             }
         } else if (autoSave.equals(IPreferences.AUTO_SAVE_NEVER)) {
             // Nothing to perform.
@@ -141,9 +233,14 @@ public class BuildManager {
             assert (false);
             Plugin.log(autoSave + ": unsupported auto save state.");
         }
+        return true;
+    }
 
-        // Retrieves the build job for the given doxyfile.
-        BuildJob job = BuildJob.getJob(doxyfile, doBuild);
+    /**
+     * Adds the given job to the history, as the most recent one.
+     */
+    private void addToHistory(BuildJob job) {
+        IPreferenceStore preferences = Plugin.getDefault().getPreferenceStore();
 
         // Attaches a listener if applicable.
         if (jobHistory.contains(job) == false) {
@@ -158,12 +255,6 @@ public class BuildManager {
             jobHistory.remove(0);
         }
         jobHistory.add(job);
-
-        // Updates the console.
-        Console.show(job);
-
-        // Schedule the job to build.
-        job.schedule(1000);
     }
 
     /**
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - Initial API and implementation
+ *
+ ******************************************************************************/
+
+package eclox.ui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.ide.ResourceUtil;
+
+import eclox.core.doxygen.BuildJob;
+
+/**
+ * @brief	Monitors the files opened in editors and tells the build jobs about them,
+ * 			so the markers of the opened files get created when markers are only
+ * 			created for those.
+ *
+ * All methods are called in the user interface thread.
+ *
+ * @author Andre Bossert
+ */
+public class EditorMonitor implements IPartListener2, IWindowListener {
+
+    private final Map<IEditorReference, IFile> editorFiles = new HashMap<IEditorReference, IFile>(); ///< the file of each monitored editor
+    private final Map<IFile, Integer> fileEditorCounts = new HashMap<IFile, Integer>(); ///< the number of editors of each opened file
+
+    /**
+     * Starts monitoring the editors of the given workbench, including the already opened ones.
+     *
+     * @param	workbench	the workbench to monitor
+     */
+    public void start(IWorkbench workbench) {
+        workbench.addWindowListener(this);
+        for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+            windowOpened(window);
+        }
+    }
+
+    /**
+     * Stops monitoring the editors of the given workbench.
+     *
+     * @param	workbench	the monitored workbench
+     */
+    public void stop(IWorkbench workbench) {
+        workbench.removeWindowListener(this);
+        for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+            window.getPartService().removePartListener(this);
+        }
+        for (IFile file : fileEditorCounts.keySet()) {
+            BuildJob.hideMarkers(file);
+        }
+        editorFiles.clear();
+        fileEditorCounts.clear();
+    }
+
+    /**
+     * Updates the file of the given part, when it is an editor.
+     */
+    private void update(IWorkbenchPartReference partRef, boolean opened) {
+        if (partRef instanceof IEditorReference == false) {
+            return;
+        }
+        IEditorReference editorRef = (IEditorReference) partRef;
+        IFile newFile = null;
+        if (opened == true) {
+            try {
+                IEditorInput input = editorRef.getEditorInput();
+                newFile = (input != null) ? ResourceUtil.getFile(input) : null;
+            } catch (PartInitException e) {
+                Plugin.log(e);
+            }
+        }
+        IFile oldFile = (newFile != null) ? editorFiles.put(editorRef, newFile) : editorFiles.remove(editorRef);
+        if (oldFile != null && oldFile.equals(newFile)) {
+            return;
+        }
+        if (newFile != null) {
+            Integer count = fileEditorCounts.get(newFile);
+            fileEditorCounts.put(newFile, (count == null) ? 1 : count + 1);
+            if (count == null) {
+                BuildJob.showMarkers(newFile);
+            }
+        }
+        if (oldFile != null) {
+            int count = fileEditorCounts.get(oldFile) - 1;
+            if (count == 0) {
+                fileEditorCounts.remove(oldFile);
+                BuildJob.hideMarkers(oldFile);
+            } else {
+                fileEditorCounts.put(oldFile, count);
+            }
+        }
+    }
+
+    public void windowOpened(IWorkbenchWindow window) {
+        window.getPartService().addPartListener(this);
+        for (IWorkbenchPage page : window.getPages()) {
+            for (IEditorReference editorRef : page.getEditorReferences()) {
+                update(editorRef, true);
+            }
+        }
+    }
+
+    public void windowClosed(IWorkbenchWindow window) {
+        window.getPartService().removePartListener(this);
+    }
+
+    public void windowActivated(IWorkbenchWindow window) {
+    }
+
+    public void windowDeactivated(IWorkbenchWindow window) {
+    }
+
+    public void partOpened(IWorkbenchPartReference partRef) {
+        update(partRef, true);
+    }
+
+    public void partInputChanged(IWorkbenchPartReference partRef) {
+        update(partRef, true);
+    }
+
+    public void partClosed(IWorkbenchPartReference partRef) {
+        update(partRef, false);
+    }
+
+    public void partActivated(IWorkbenchPartReference partRef) {
+    }
+
+    public void partBroughtToTop(IWorkbenchPartReference partRef) {
+    }
+
+    public void partDeactivated(IWorkbenchPartReference partRef) {
+    }
+
+    public void partHidden(IWorkbenchPartReference partRef) {
+    }
+
+    public void partVisible(IWorkbenchPartReference partRef) {
+    }
+
+}
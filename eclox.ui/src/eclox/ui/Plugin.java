@@ -10,6 +10,7 @@
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
  *     Andre Bossert - Add image registry
+ *                   - editor monitor for the markers of opened files
  *
  ******************************************************************************/
 
@@ -29,6 +30,7 @@ import org.eclipse.jface.resource.ImageRegistry;
 import org.eclipse.jface.window.Window;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.dialogs.PreferencesUtil;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.Bundle;
@@ -46,6 +48,7 @@ public class Plugin extends AbstractUIPlugin {
     private static Plugin plugin; ///< The singleton instance.
     private BuildManager buildManager; ///< The managed build manager.
     private JobMonitor jobMonitor; ///< The managed job monitor.
+    private EditorMonitor editorMonitor; ///< The managed editor monitor.
 
     /**
      * Asks the user if he wants to edit doxygen configuration after a failed
@@ -89,6 +92,14 @@ public class Plugin extends AbstractUIPlugin {
 
         jobMonitor = new JobMonitor();
         Job.getJobManager().addJobChangeListener(jobMonitor);
+
+        final EditorMonitor newEditorMonitor = new EditorMonitor();
+        editorMonitor = newEditorMonitor;
+        getWorkbench().getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                newEditorMonitor.start(getWorkbench());
+            }
+        });
     }
 
     /**
@@ -101,6 +112,16 @@ public class Plugin extends AbstractUIPlugin {
         Job.getJobManager().removeJobChangeListener(jobMonitor);
         jobMonitor = null;
 
+        final EditorMonitor oldEditorMonitor = editorMonitor;
+        if (PlatformUI.isWorkbenchRunning()) {
+            getWorkbench().getDisplay().asyncExec(new Runnable() {
+                public void run() {
+                    oldEditorMonitor.stop(getWorkbench());
+                }
+            });
+        }
+        editorMonitor = null;
+
         plugin = null;
 
         super.stop(context);
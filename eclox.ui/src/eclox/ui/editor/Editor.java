@@ -13,6 +13,11 @@
  *                   - #215: add support for line separator
  *                   - #212: add support for multiple lines (lists) concatenated by backslash (\)
  *                   - #214: add support for TAG and VALUE format
+ *                   - write the serialized content through a file channel
+ *                   - listen to the coalesced change sets of the doxyfile
+ *                   - refresh the doxyfile incrementally when its file changes
+ *                   - update the pages when a refresh added or removed settings
+ *                   - skip the refresh following the editor's own save
  *
  ******************************************************************************/
 
@@ -25,6 +30,7 @@ import java.net.URI;
 import java.util.Iterator;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.core.runtime.IPath;
@@ -38,13 +44,15 @@ import org.eclipse.ui.IMemento;
 import org.eclipse.ui.IPersistableEditor;
 import org.eclipse.ui.dialogs.SaveAsDialog;
 import org.eclipse.ui.forms.editor.FormEditor;
+import org.eclipse.ui.forms.editor.IFormPage;
 import org.eclipse.ui.ide.FileStoreEditorInput;
 import org.eclipse.ui.part.FileEditorInput;
 
 import eclox.core.ListSeparateMode;
 import eclox.core.TagFormat;
 import eclox.core.doxyfiles.Doxyfile;
-import eclox.core.doxyfiles.ISettingValueListener;
+import eclox.core.doxyfiles.ChangeSet;
+import eclox.core.doxyfiles.IDoxyfileListener;
 import eclox.core.doxyfiles.Setting;
 import eclox.core.doxyfiles.io.Serializer;
 import eclox.ui.IPreferences;
@@ -61,7 +69,7 @@ import eclox.ui.LineSeparator;
  * @author willy
  *
  */
-public class Editor extends FormEditor implements ISettingValueListener, IPersistableEditor {
+public class Editor extends FormEditor implements IDoxyfileListener, IPersistableEditor {
 
     public final static String PROP_SETTING_DIRTY = "dirty"; ///< the name of the property attached to a dirty setting.
     public final static String SAVED_ACTIVE_PAGE_ID = "SavedActivePageId"; ///< Identifies the memo entry containing the identifier if the saved active page identifier.
@@ -69,30 +77,72 @@ public class Editor extends FormEditor implements ISettingValueListener, IPersis
     private Doxyfile doxyfile; ///< The doxyfile content.
     private ResourceChangeListener resourceChangeListener; ///< the resource listener that will manage the editor life-cycle
     private boolean dirty = false; ///< The dirty state of the editor
+    private boolean refreshing = false; ///< Tells if the doxyfile is being refreshed from its file
+    private boolean refreshedValues = false; ///< Tells if the last refresh changed setting values
+    private boolean refreshedStructure = false; ///< Tells if the last refresh added or removed settings
+    private long savedModificationStamp = IResource.NULL_STAMP; ///< The modification stamp of the file written by the last save
     private IMemento savedState; ///< References a saved state to restore, null otherwise.
 
     /**
      * @see org.eclipse.ui.forms.editor.FormEditor#addPages()
      */
     protected void addPages() {
+        // Restores the saved active page.
+        String savedPageId = (savedState != null) ? savedState.getString(SAVED_ACTIVE_PAGE_ID) : null;
+        addPages(savedPageId);
+    }
+
+    /**
+     * Adds the pages of the editor.
+     *
+     * @param	activePageId	the identifier of the page to activate, or null
+     */
+    private void addPages(String activePageId) {
         try {
             addPage(new eclox.ui.editor.basic.Page(this));
             addPage(new eclox.ui.editor.advanced.Page(this));
             // TODO reactivate
             //this.addPage(new SourcePage(this));
 
-            // Restores the saved active page.
-            String savedPageId = (savedState != null) ? savedState.getString(SAVED_ACTIVE_PAGE_ID) : null;
-            setActivePage(savedPageId);
+            setActivePage(activePageId);
         } catch (Throwable throwable) {
         }
     }
 
+    /**
+     * Creates the pages again, so that their parts and viewers are bound to the current
+     * settings of the doxyfile. The active page is kept.
+     */
+    private void rebuildPages() {
+        IFormPage activePage = getActivePageInstance();
+        String activePageId = (activePage != null) ? activePage.getId() : null;
+        while (getPageCount() > 0) {
+            removePage(0);
+        }
+        addPages(activePageId);
+    }
+
+    /**
+     * Refreshes the controls of the pages from the current setting values.
+     */
+    private void refreshPages() {
+        for (Object page : pages) {
+            if (page instanceof IFormPage && ((IFormPage) page).getManagedForm() != null) {
+                ((IFormPage) page).getManagedForm().refresh();
+            }
+        }
+    }
+
     private void doSave(IProgressMonitor monitor, IFile ifile, File file) {
 
         try {
             // Commits all pending changes.
-            commitPages(true);
+            doxyfile.beginTransaction();
+            try {
+                commitPages(true);
+            } finally {
+                doxyfile.commitTransaction();
+            }
 
             // get preferences
             IPreferenceStore preferences = Plugin.getDefault().getPreferenceStore();
@@ -108,16 +158,13 @@ public class Editor extends FormEditor implements ISettingValueListener, IPersis
                 } else {
                     ifile.create(serializer, true, monitor);
                 }
+                savedModificationStamp = ifile.getModificationStamp();
             } else {
                 FileOutputStream outputStream = null;
                 try {
-                    // write the inputStream to a FileOutputStream
+                    // write the encoded content to the file channel
                     outputStream = new FileOutputStream(file);
-                    int read = 0;
-                    byte[] bytes = new byte[1024];
-                    while ((read = serializer.read(bytes)) != -1) {
-                        outputStream.write(bytes, 0, read);
-                    }
+                    serializer.write(outputStream.getChannel());
                 } catch (IOException e) {
                     e.printStackTrace();
                 } finally {
@@ -133,10 +180,15 @@ public class Editor extends FormEditor implements ISettingValueListener, IPersis
             }
 
             // Clears the dirty property set on some settings.
-            Iterator<?> i = doxyfile.settingIterator();
-            while (i.hasNext()) {
-                Setting setting = (Setting) i.next();
-                setting.removeProperty(PROP_SETTING_DIRTY);
+            doxyfile.beginTransaction();
+            try {
+                Iterator<?> i = doxyfile.settingIterator();
+                while (i.hasNext()) {
+                    Setting setting = (Setting) i.next();
+                    setting.removeProperty(PROP_SETTING_DIRTY);
+                }
+            } finally {
+                doxyfile.commitTransaction();
             }
 
             // Resets the dirty flag.
@@ -212,27 +264,74 @@ public class Editor extends FormEditor implements ISettingValueListener, IPersis
     }
 
     /**
-     * @see eclox.doxyfiles.ISettingListener#settingValueChanged(eclox.doxyfiles.Setting)
+     * @see eclox.core.doxyfiles.IDoxyfileListener#doxyfileChanged(eclox.core.doxyfiles.Doxyfile, eclox.core.doxyfiles.ChangeSet)
      */
-    public void settingValueChanged(Setting setting) {
+    public void doxyfileChanged(Doxyfile doxyfile, ChangeSet changes) {
+        if (refreshing) {
+            // The pages get updated once the refresh is done.
+            refreshedStructure = refreshedStructure || changes.isStructureChanged();
+            refreshedValues = refreshedValues || changes.getValueChangedSettings().isEmpty() == false;
+            return;
+        }
+        if (changes.getValueChangedSettings().isEmpty()) {
+            return;
+        }
+
         // Updates the internal editor state.
         this.dirty = true;
         this.firePropertyChange(IEditorPart.PROP_DIRTY);
 
-        // Assigns a dynamic property to the setting.
-        setting.setProperty(PROP_SETTING_DIRTY, "yes");
+        // Assigns a dynamic property to the changed settings.
+        doxyfile.beginTransaction();
+        try {
+            for (Setting setting : changes.getValueChangedSettings()) {
+                setting.setProperty(PROP_SETTING_DIRTY, "yes");
+            }
+        } finally {
+            doxyfile.commitTransaction();
+        }
+    }
+
+    /**
+     * Refreshes the doxyfile from the content of its file, that has been changed outside
+     * of the editor. Only the changed statements get parsed again. Nothing is done while
+     * the editor holds unsaved changes, nor when the file still has the content written
+     * by the last save of the editor.
+     *
+     * When settings have been added or removed, the pages get created again, otherwise
+     * their controls get refreshed from the new values.
+     */
+    public void refreshDoxyfile() {
+        if (doxyfile == null || isDirty()) {
+            return;
+        }
+        IFile ifile = doxyfile.getIFile();
+        if (ifile != null && ifile.getModificationStamp() == savedModificationStamp) {
+            return;
+        }
+        refreshing = true;
+        refreshedValues = false;
+        refreshedStructure = false;
+        try {
+            doxyfile.refresh();
+        } catch (Throwable throwable) {
+            Plugin.log(throwable);
+        } finally {
+            refreshing = false;
+        }
+        if (refreshedStructure) {
+            rebuildPages();
+        } else if (refreshedValues) {
+            refreshPages();
+        }
     }
 
     /**
      * @see org.eclipse.ui.IWorkbenchPart#dispose()
      */
     public void dispose() {
-        // Unregisters the editor from the settings
-        Iterator<?> i = this.doxyfile.settingIterator();
-        while (i.hasNext() == true) {
-            Setting setting = (Setting) i.next();
-            setting.removeSettingListener(this);
-        }
+        // Unregisters the editor from the doxyfile
+        this.doxyfile.getEventBus().unsubscribe(this);
 
         // Un-references the doxyfile.
         this.doxyfile = null;
@@ -294,14 +393,10 @@ public class Editor extends FormEditor implements ISettingValueListener, IPersis
             resourceChangeListener = new ResourceChangeListener(this);
             ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceChangeListener);
 
-            // Parses the doxyfile and attaches to all settings.
+            // Parses the doxyfile and attaches to it.
             this.doxyfile = new Doxyfile(ifile, file);
             this.doxyfile.load();
-            Iterator<?> i = this.doxyfile.settingIterator();
-            while (i.hasNext() == true) {
-                Setting setting = (Setting) i.next();
-                setting.addSettingListener(this);
-            }
+            this.doxyfile.getEventBus().subscribe(this);
 
             // Continue initialization.
             setPartName(input.getName());
@@ -10,16 +10,17 @@
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
  *     Andre Bossert - #171: added sorting column in advanced tab
+ *                   - update the labels from the coalesced change sets of the event bus
+ *                   - release the active filter on dispose
  *
  ******************************************************************************/
 
 package eclox.ui.editor.advanced;
 
 import java.text.Collator;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
-import java.util.Set;
 
 import org.eclipse.jface.viewers.DoubleClickEvent;
 import org.eclipse.jface.viewers.IDoubleClickListener;
@@ -58,7 +59,8 @@ import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.Section;
 
 import eclox.core.doxyfiles.Doxyfile;
-import eclox.core.doxyfiles.ISettingPropertyListener;
+import eclox.core.doxyfiles.ChangeSet;
+import eclox.core.doxyfiles.IDoxyfileListener;
 import eclox.core.doxyfiles.Setting;
 import eclox.ui.editor.Editor;
 import eclox.ui.editor.advanced.filters.All;
@@ -155,26 +157,20 @@ public class MasterPart extends SectionPart implements IPartSelectionListener {
     /**
      * Implements the label provider.
      */
-    private class MyLabelProvider extends LabelProvider implements ITableLabelProvider, ISettingPropertyListener {
+    private class MyLabelProvider extends LabelProvider implements ITableLabelProvider, IDoxyfileListener {
 
         /**
-         * the set of all settings the label provider has registered to
+         * Constructor, registering the label provider on the doxyfile event bus.
          */
-        private Set<Setting> settings = new HashSet<Setting>();
+        public MyLabelProvider() {
+            doxyfile.getEventBus().subscribe(this);
+        }
 
         /**
          * @see org.eclipse.jface.viewers.IBaseLabelProvider#dispose()
          */
         public void dispose() {
-            // Walks through all settings and unregisters from the listeners
-            Iterator<Setting> i = settings.iterator();
-            while (i.hasNext() == true) {
-                Object object = i.next();
-                Setting setting = (Setting) object;
-
-                setting.removeSettingListener(this);
-            }
-            settings.clear();
+            doxyfile.getEventBus().unsubscribe(this);
 
             super.dispose();
         }
@@ -197,10 +193,6 @@ public class MasterPart extends SectionPart implements IPartSelectionListener {
             // Retrieves the setting's text.
             Setting setting = (Setting) element;
 
-            // Registers as an observer of the setting
-            setting.addSettingListener(this);
-            settings.add(setting);
-
             // Determine the text to return according to the given column index.
             if (columnIndex == TEXT_COLUMN) {
                 return setting.getTextLabel(Editor.PROP_SETTING_DIRTY);
@@ -210,15 +202,19 @@ public class MasterPart extends SectionPart implements IPartSelectionListener {
             return null;
         }
 
-        public void settingPropertyChanged(Setting setting, String property) {
-            if (property.equals(Editor.PROP_SETTING_DIRTY)) {
-                fireLabelProviderChanged(new LabelProviderChangedEvent(this, setting));
+        /**
+         * @see eclox.core.doxyfiles.IDoxyfileListener#doxyfileChanged(eclox.core.doxyfiles.Doxyfile, eclox.core.doxyfiles.ChangeSet)
+         */
+        public void doxyfileChanged(Doxyfile doxyfile, ChangeSet changes) {
+            // Collects the settings whose dirty flag changed and updates their labels at once.
+            List<Setting> changedSettings = new ArrayList<Setting>();
+            for (Setting setting : changes.getPropertyChangedSettings()) {
+                if (changes.getChangedProperties(setting).contains(Editor.PROP_SETTING_DIRTY)) {
+                    changedSettings.add(setting);
+                }
             }
-        }
-
-        public void settingPropertyRemoved(Setting setting, String property) {
-            if (property.equals(Editor.PROP_SETTING_DIRTY)) {
-                fireLabelProviderChanged(new LabelProviderChangedEvent(this, setting));
+            if (changedSettings.isEmpty() == false) {
+                fireLabelProviderChanged(new LabelProviderChangedEvent(this, changedSettings.toArray()));
             }
         }
 
@@ -555,6 +551,18 @@ public class MasterPart extends SectionPart implements IPartSelectionListener {
         super.initialize(form);
     }
 
+    /**
+     * @see org.eclipse.ui.forms.AbstractFormPart#dispose()
+     */
+    public void dispose() {
+        // Detaches the active filter from the doxyfile, the part may be created again.
+        if (activeFilter != null) {
+            activeFilter.setDoxyfile(null);
+            activeFilter = null;
+        }
+        super.dispose();
+    }
+
     /**
      * @see org.eclipse.ui.forms.AbstractFormPart#isStale()
      */
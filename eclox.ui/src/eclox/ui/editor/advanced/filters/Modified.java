@@ -8,12 +8,14 @@
  *
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
+ *     Andre Bossert - update the viewer from the coalesced change sets of the event bus
  *
  ******************************************************************************/
 
 package eclox.ui.editor.advanced.filters;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.jface.viewers.StructuredViewer;
 import org.eclipse.jface.viewers.Viewer;
@@ -22,7 +24,8 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.ui.forms.IManagedForm;
 
 import eclox.core.doxyfiles.Doxyfile;
-import eclox.core.doxyfiles.ISettingPropertyListener;
+import eclox.core.doxyfiles.ChangeSet;
+import eclox.core.doxyfiles.IDoxyfileListener;
 import eclox.core.doxyfiles.Setting;
 import eclox.ui.editor.Editor;
 
@@ -74,10 +77,10 @@ public class Modified implements IFilter {
     }
 
     /**
-     * Implements a setting property listener that will trigger
-     * the viewer refresh as soon as a setting dirty property changed.
+     * Implements a doxyfile listener that will trigger
+     * the viewer refresh as soon as setting dirty properties changed.
      */
-    private class MySettingPropertyListener implements ISettingPropertyListener {
+    private class MySettingPropertyListener implements IDoxyfileListener {
 
         /**
          * the doxyfile being listened
@@ -98,12 +101,8 @@ public class Modified implements IFilter {
 
             // References the doxyfile for later use.
             this.doxyfile = doxyfile;
-            // Attaches to all settings.
-            Iterator<?> i = doxyfile.settingIterator();
-            while (i.hasNext()) {
-                Setting setting = (Setting) i.next();
-                setting.addSettingListener(this);
-            }
+            // Attaches to the doxyfile event bus.
+            doxyfile.getEventBus().subscribe(this);
 
             // Post-condition
             assert this.doxyfile != null;
@@ -118,12 +117,8 @@ public class Modified implements IFilter {
             // Pre-condition
             assert this.doxyfile != null;
 
-            // Detaches the listener instace from all settings
-            Iterator<?> i = this.doxyfile.settingIterator();
-            while (i.hasNext()) {
-                Setting setting = (Setting) i.next();
-                setting.removeSettingListener(this);
-            }
+            // Detaches the listener instace from the doxyfile event bus
+            this.doxyfile.getEventBus().unsubscribe(this);
             // Unreferences the managed doxyfile.
             this.doxyfile = null;
 
@@ -131,18 +126,20 @@ public class Modified implements IFilter {
             assert this.doxyfile == null;
         }
 
-        public void settingPropertyChanged(Setting setting, String property) {
+        public void doxyfileChanged(Doxyfile doxyfile, ChangeSet changes) {
             // Pre-condition
             assert viewer != null;
 
-            viewer.update(setting, new String[] { Editor.PROP_SETTING_DIRTY });
-        }
-
-        public void settingPropertyRemoved(Setting setting, String property) {
-            // Pre-condition
-            assert viewer != null;
-
-            viewer.update(setting, new String[] { Editor.PROP_SETTING_DIRTY });
+            // Collects the settings whose dirty flag changed and updates them at once.
+            List<Setting> changedSettings = new ArrayList<Setting>();
+            for (Setting setting : changes.getPropertyChangedSettings()) {
+                if (changes.getChangedProperties(setting).contains(Editor.PROP_SETTING_DIRTY)) {
+                    changedSettings.add(setting);
+                }
+            }
+            if (changedSettings.isEmpty() == false) {
+                viewer.update(changedSettings.toArray(), new String[] { Editor.PROP_SETTING_DIRTY });
+            }
         }
 
     }
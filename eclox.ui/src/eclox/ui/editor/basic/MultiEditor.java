@@ -8,6 +8,7 @@
  *
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
+ *     Andre Bossert - commit the states within a doxyfile transaction
  *
  ******************************************************************************/
 
@@ -17,6 +18,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+import eclox.core.doxyfiles.Doxyfile;
 import eclox.core.doxyfiles.Setting;
 import eclox.ui.editor.editors.AbstractEditor;
 
@@ -88,19 +90,45 @@ public abstract class MultiEditor extends AbstractEditor {
         void commit() {
             Iterator<Setting> i;
 
-            i = selectedSettings.iterator();
-            while (i.hasNext()) {
-                Setting setting = (Setting) i.next();
-
-                setting.setValue(YES);
+            // Changes all settings in a single transaction, so listeners get notified once.
+            Doxyfile doxyfile = getDoxyfile();
+            if (doxyfile != null) {
+                doxyfile.beginTransaction();
             }
+            try {
+                i = selectedSettings.iterator();
+                while (i.hasNext()) {
+                    Setting setting = (Setting) i.next();
 
-            i = deselectedSettings.iterator();
-            while (i.hasNext()) {
-                Setting setting = (Setting) i.next();
+                    setting.setValue(YES);
+                }
 
-                setting.setValue(NO);
+                i = deselectedSettings.iterator();
+                while (i.hasNext()) {
+                    Setting setting = (Setting) i.next();
+
+                    setting.setValue(NO);
+                }
+            } finally {
+                if (doxyfile != null) {
+                    doxyfile.commitTransaction();
+                }
+            }
+        }
+
+        /**
+         * Retrieves the doxyfile owning the settings of the state.
+         *
+         * @return	a doxyfile or null when none
+         */
+        private Doxyfile getDoxyfile() {
+            for (Setting setting : selectedSettings) {
+                return setting.getOwner();
+            }
+            for (Setting setting : deselectedSettings) {
+                return setting.getOwner();
             }
+            return null;
         }
 
     }
@@ -8,12 +8,12 @@
  *
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
+ *     Andre Bossert - use the cached value tokens of the setting
  *
  ******************************************************************************/
 
 package eclox.ui.editor.editors;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Vector;
@@ -293,8 +293,7 @@ public abstract class ListEditor extends SettingEditor {
         assert listViewer != null;
 
         if (hasInput()) {
-            valueCompounds = new Vector<String>();
-            getInput().getSplittedValue(valueCompounds);
+            valueCompounds = new Vector<String>(getInput().getTokens());
             listViewer.setInput(valueCompounds);
 
             updateButtons();
@@ -316,10 +315,7 @@ public abstract class ListEditor extends SettingEditor {
         boolean result = false;
 
         if (hasInput()) {
-            Collection<String> values = new Vector<String>();
-
-            getInput().getSplittedValue(values);
-            result = valueCompounds.equals(values) == false;
+            result = valueCompounds.equals(getInput().getTokens()) == false;
         }
         return result;
     }
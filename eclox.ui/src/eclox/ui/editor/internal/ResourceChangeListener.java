@@ -8,6 +8,7 @@
  *
  * Contributors:
  *     Guillaume Brocker - Initial API and implementation
+ *     Andre Bossert - refresh the doxyfile when its content changes
  *
  ******************************************************************************/
 
@@ -52,9 +53,24 @@ public class ResourceChangeListener implements IResourceChangeListener {
 
         if (doxyfileDelta != null && doxyfileDelta.getKind() == IResourceDelta.REMOVED) {
             closeEditor();
+        } else if (doxyfileDelta != null && doxyfileDelta.getKind() == IResourceDelta.CHANGED
+                && (doxyfileDelta.getFlags() & IResourceDelta.CONTENT) != 0) {
+            refreshEditor();
         }
     }
 
+    /**
+     * Refreshes the doxyfile of the editor.
+     */
+    private void refreshEditor() {
+        editor.getSite().getShell().getDisplay().asyncExec(new Runnable() {
+
+            public void run() {
+                editor.refreshDoxyfile();
+            }
+        });
+    }
+
     /**
      * Closes the editor.
      */
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (C) 2019, Andre Bossert
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Andre Bossert - first implementation
+ *
+ ******************************************************************************/
+
+package eclox.ui.handlers;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.handlers.HandlerUtil;
+
+import eclox.ui.Plugin;
+import eclox.ui.action.BuildPopupActionDelegate;
+
+/**
+ * Builds all doxyfiles of the selected resource in the order of their tag file dependencies.
+ */
+public class BuildSet extends AbstractHandler {
+
+    @Override
+    public Object execute(ExecutionEvent event) throws ExecutionException {
+        IWorkbenchPart activePart = HandlerUtil.getActivePart(event);
+        IResource resource = BuildPopupActionDelegate.getDoxygenResourceRoot(HandlerUtil.getCurrentSelection(event),
+                activePart);
+        if (resource != null) {
+            try {
+                Plugin.getDefault().getBuildManager().buildSet(resource);
+            } catch (Throwable throwable) {
+                MessageDialog.openError(HandlerUtil.getActiveShell(event), "Unexpected Error", throwable.toString());
+            }
+        }
+        return null;
+    }
+
+}